@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the extraction of candidate class names and descriptor mappings from a faces-config.xml, without any jar
+ * I/O.
+ *
+ * @author  Kyle Stiemann
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class DescriptorExtractionBenchmark {
+
+	// Private Data Members
+	@Param({ "100", "1000" })
+	private int componentCount;
+	private byte[] facesConfig;
+	private XMLInputFactory xmlInputFactory;
+
+	@Benchmark
+	public List<String> candidateClassNames() throws IOException {
+		return FacesXMLUtil.getCandidateClassNames(new ByteArrayInputStream(facesConfig), xmlInputFactory);
+	}
+
+	@Benchmark
+	public Map<String, String> descriptorMappings() throws IOException {
+
+		Map<String, String> descriptorMappings = new HashMap<String, String>();
+		FacesXMLUtil.addDescriptorMappings(new ByteArrayInputStream(facesConfig), xmlInputFactory, descriptorMappings);
+
+		return descriptorMappings;
+	}
+
+	@Setup
+	public void setUp() {
+
+		facesConfig = SyntheticFacesJars.getFacesConfig("descriptors", componentCount);
+		xmlInputFactory = FacesXMLUtil.newXMLInputFactory();
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures an uncached scan of synthetic provided Faces jars, with and without class verification, and with the
+ * annotation scan and descriptor index enabled as they are by default.
+ *
+ * @author  Kyle Stiemann
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class FacesJarScanBenchmark {
+
+	// Private Data Members
+	@Param({ "4000" })
+	private int classCount;
+	@Param({ "1000" })
+	private int classSize;
+	@Param({ "10" })
+	private int descriptorCount;
+	private File directory;
+	private Set<File> facesJars;
+	@Param({ "4" })
+	private int jarCount;
+	private Log log;
+	@Param({ "1", "4" })
+	private int scanThreads;
+
+	@Benchmark
+	public Set<String> scan() {
+		return getClassNames(false);
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+
+		directory = Files.createTempDirectory(LiferayFacesOSGiPluginMojo.PLUGIN_ARTIFACT_ID).toFile();
+		facesJars = new LinkedHashSet<File>();
+
+		for (int i = 0; i < jarCount; i++) {
+			facesJars.add(SyntheticFacesJars.createFacesJar(directory, "jar" + i, classCount, classSize,
+					descriptorCount));
+		}
+
+		log = new SystemStreamLog();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		SyntheticFacesJars.delete(directory);
+	}
+
+	@Benchmark
+	public Set<String> verifiedScan() {
+		return getClassNames(true);
+	}
+
+	private Set<String> getClassNames(boolean verifyFacesConfigClassNames) {
+
+		Map<String, String> annotatedClassNames = new HashMap<String, String>();
+		Map<String, String> descriptorMappings = new HashMap<String, String>();
+
+		return FacesXMLUtil.getClassNames(facesJars, log, scanThreads, verifyFacesConfigClassNames,
+				Collections.<FacesJarScanResultCache>emptyList(), null, annotatedClassNames, descriptorMappings);
+	}
+}
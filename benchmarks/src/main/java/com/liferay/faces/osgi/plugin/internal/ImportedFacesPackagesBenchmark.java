@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the generation of the ImportedFacesPackages byte code for the number of imported classes, with the classes
+ * in a linked hash set or in a {@link PackageTrie}.
+ *
+ * @author  Kyle Stiemann
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class ImportedFacesPackagesBenchmark {
+
+	// Private Data Members
+	private Set<String> classNames;
+	@Param({ "10", "1000", "50000" })
+	private int importCount;
+	@Param({ "false", "true" })
+	private boolean packageTrie;
+
+	@Benchmark
+	public byte[] modifiedByteCode() throws IOException {
+		return ImportedFacesPackagesByteCodeUtil.getModifiedByteCode(classNames);
+	}
+
+	@Setup
+	public void setUp() {
+		classNames = SyntheticFacesJars.getClassNames("imports", importCount);
+
+		if (packageTrie) {
+			classNames = new PackageTrie(classNames);
+		}
+	}
+}
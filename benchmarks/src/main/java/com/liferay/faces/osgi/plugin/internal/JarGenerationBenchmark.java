@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures writing the import jar end to end, including the byte code generation, the manifest with the
+ * Import-Package header, the Faces annotation and descriptor indexes, the hashing and the move into place.
+ *
+ * @author  Kyle Stiemann
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class JarGenerationBenchmark {
+
+	// Private Data Members
+	private Set<String> classNames;
+	private File directory;
+	@Param({ "10", "1000", "50000" })
+	private int importCount;
+	private Map<String, byte[]> resources;
+
+	@Benchmark
+	public File importJar() throws IOException {
+		return JarGeneratorUtil.generateImportJar(directory, Collections.<String>emptySet(), classNames,
+				JarGeneratorUtil.DEFAULT_DIGEST_ALGORITHM, JarGeneratorUtil.DEFAULT_OUTPUT_TIMESTAMP, true, resources);
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+
+		directory = Files.createTempDirectory(LiferayFacesOSGiPluginMojo.PLUGIN_ARTIFACT_ID).toFile();
+		classNames = SyntheticFacesJars.getClassNames("imports", importCount);
+
+		Map<String, String> annotatedClassNames = new HashMap<String, String>();
+		Map<String, String> descriptorMappings = new HashMap<String, String>();
+
+		for (String className : classNames) {
+
+			annotatedClassNames.put(className, "javax.faces.component.FacesComponent");
+			descriptorMappings.put(FacesDescriptorIndex.getKey(FacesDescriptorIndex.COMPONENT, className), className);
+		}
+
+		resources = new HashMap<String, byte[]>();
+		resources.put(FacesAnnotationUtil.FACES_ANNOTATION_INDEX_PATH,
+			FacesAnnotationUtil.getFacesAnnotationIndex(annotatedClassNames));
+		resources.put(ClassFileUtil.getClassFilePath(FacesDescriptorIndex.class),
+			ClassFileUtil.getClassBytes(FacesDescriptorIndex.class));
+		resources.put(FacesDescriptorIndex.FACES_DESCRIPTOR_INDEX_PATH,
+			FacesDescriptorIndex.toByteArray(descriptorMappings));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		SyntheticFacesJars.delete(directory);
+	}
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+
+/**
+ * Generates provided Faces jars of a configurable size, class entry count and descriptor count for the benchmarks.
+ *
+ * <p>Each jar contains the class entries, spread over packages of {@link #CLASSES_PER_PACKAGE} classes, one
+ * faces-config.xml that declares a component for every class, and the requested number of *.taglib.xml descriptors
+ * that declare tags for those components between them. Every tenth class is annotated with {@code @FacesComponent},
+ * and every twentieth component class that is declared by the descriptors does not exist in the jar, so that class
+ * verification has to resolve class names that are missing from their own jar.</p>
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class SyntheticFacesJars {
+
+	// Package-Private Constants
+	/* package-private */ static final int CLASSES_PER_PACKAGE = 20;
+
+	// Private Constants
+	private static final String FACES_COMPONENT_DESCRIPTOR = "Ljavax/faces/component/FacesComponent;";
+	private static final String NAMESPACE_PREFIX = "http://example.com/synthetic/";
+
+	private SyntheticFacesJars() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Creates the jar in the directory and returns it. The class entries are padded with a string constant so that
+	 * each of them is roughly classSize bytes.
+	 */
+	/* package-private */ static File createFacesJar(File directory, String name, int classCount, int classSize,
+		int descriptorCount) throws IOException {
+
+		File facesJar = new File(directory, name + ".jar");
+		OutputStream outputStream = null;
+
+		try {
+
+			outputStream = new FileOutputStream(facesJar);
+
+			JarOutputStream jarOutputStream = new JarOutputStream(outputStream);
+			String padding = getPadding(classSize);
+
+			for (int i = 0; i < classCount; i++) {
+
+				String internalClassName = getClassName(name, i).replace('.', '/');
+				jarOutputStream.putNextEntry(new JarEntry(internalClassName + ".class"));
+				jarOutputStream.write(getClassBytes(internalClassName, padding, (i % 10) == 0));
+				jarOutputStream.closeEntry();
+			}
+
+			jarOutputStream.putNextEntry(new JarEntry("META-INF/faces-config.xml"));
+			jarOutputStream.write(getFacesConfig(name, classCount));
+			jarOutputStream.closeEntry();
+
+			for (int i = 0; i < descriptorCount; i++) {
+
+				jarOutputStream.putNextEntry(new JarEntry("META-INF/" + name + "-" + i + ".taglib.xml"));
+				jarOutputStream.write(getTaglib(name, i, (i * classCount) / descriptorCount,
+						((i + 1) * classCount) / descriptorCount));
+				jarOutputStream.closeEntry();
+			}
+
+			jarOutputStream.finish();
+		}
+		finally {
+			CloseableUtil.close(outputStream);
+		}
+
+		return facesJar;
+	}
+
+	/* package-private */ static void delete(File directory) throws IOException {
+
+		Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+
+					Files.delete(dir);
+
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+
+					Files.delete(file);
+
+					return FileVisitResult.CONTINUE;
+				}
+			});
+	}
+
+	/**
+	 * Returns the names of classes to import, spread over packages of {@link #CLASSES_PER_PACKAGE} classes like the
+	 * classes of a real Faces jar. The classes do not need to exist.
+	 */
+	/* package-private */ static Set<String> getClassNames(String name, int classCount) {
+
+		Set<String> classNames = new LinkedHashSet<String>(classCount * 4 / 3 + 1);
+
+		for (int i = 0; i < classCount; i++) {
+			classNames.add(getClassName(name, i));
+		}
+
+		return classNames;
+	}
+
+	/**
+	 * Returns a faces-config.xml that declares a component for each of the classes.
+	 */
+	/* package-private */ static byte[] getFacesConfig(String name, int classCount) {
+
+		StringBuilder facesConfig = new StringBuilder();
+		facesConfig.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		facesConfig.append("<faces-config xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" version=\"2.2\">\n");
+
+		for (int i = 0; i < classCount; i++) {
+
+			facesConfig.append("\t<component>\n");
+			facesConfig.append("\t\t<component-type>").append(getComponentType(name, i)).append(
+				"</component-type>\n");
+			facesConfig.append("\t\t<component-class>").append(getDeclaredClassName(name, i)).append(
+				"</component-class>\n");
+			facesConfig.append("\t</component>\n");
+		}
+
+		facesConfig.append("\t<render-kit>\n");
+
+		for (int i = 0; i < classCount; i += CLASSES_PER_PACKAGE) {
+
+			facesConfig.append("\t\t<renderer>\n");
+			facesConfig.append("\t\t\t<component-family>").append(getComponentType(name, i)).append(
+				"</component-family>\n");
+			facesConfig.append("\t\t\t<renderer-type>").append(getComponentType(name, i)).append(
+				"Renderer</renderer-type>\n");
+			facesConfig.append("\t\t\t<renderer-class>").append(getClassName(name, i)).append(
+				"Renderer</renderer-class>\n");
+			facesConfig.append("\t\t</renderer>\n");
+		}
+
+		facesConfig.append("\t</render-kit>\n");
+		facesConfig.append("</faces-config>\n");
+
+		return facesConfig.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String getClassName(String name, int i) {
+		return "com.example.synthetic." + name + ".p" + (i / CLASSES_PER_PACKAGE) + ".Synthetic" + i;
+	}
+
+	private static byte[] getClassBytes(String internalClassName, String padding, boolean facesComponent) {
+
+		ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalClassName, null,
+			"java/lang/Object", null);
+
+		if (facesComponent) {
+			classWriter.visitAnnotation(FACES_COMPONENT_DESCRIPTOR, true).visitEnd();
+		}
+
+		MethodVisitor methodVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		methodVisitor.visitCode();
+		methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		methodVisitor.visitInsn(Opcodes.RETURN);
+		methodVisitor.visitMaxs(0, 0);
+		methodVisitor.visitEnd();
+		methodVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "toString", "()Ljava/lang/String;", null, null);
+		methodVisitor.visitCode();
+		methodVisitor.visitLdcInsn(padding);
+		methodVisitor.visitInsn(Opcodes.ARETURN);
+		methodVisitor.visitMaxs(0, 0);
+		methodVisitor.visitEnd();
+		classWriter.visitEnd();
+
+		return classWriter.toByteArray();
+	}
+
+	private static String getComponentType(String name, int i) {
+		return "com.example.synthetic." + name + ".Component" + i;
+	}
+
+	/**
+	 * Returns the component class name declared for the class, which does not exist for every twentieth class.
+	 */
+	private static String getDeclaredClassName(String name, int i) {
+
+		String className = getClassName(name, i);
+
+		if ((i % 20) == 19) {
+			className = className + "Missing";
+		}
+
+		return className;
+	}
+
+	private static String getPadding(int classSize) {
+
+		char[] padding = new char[Math.max(0, classSize - 300)];
+		Arrays.fill(padding, 'x');
+
+		return new String(padding);
+	}
+
+	/**
+	 * Returns a *.taglib.xml that declares a tag for each of the classes from start (inclusive) to end (exclusive). The
+	 * tags of every tenth class also declare the class as their handler class.
+	 */
+	private static byte[] getTaglib(String name, int descriptorIndex, int start, int end) {
+
+		StringBuilder taglib = new StringBuilder();
+		taglib.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		taglib.append("<facelet-taglib xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" version=\"2.2\">\n");
+		taglib.append("\t<namespace>").append(NAMESPACE_PREFIX).append(name).append('/').append(descriptorIndex)
+			.append("</namespace>\n");
+
+		for (int i = start; i < end; i++) {
+
+			taglib.append("\t<tag>\n");
+			taglib.append("\t\t<tag-name>synthetic").append(i).append("</tag-name>\n");
+			taglib.append("\t\t<component>\n");
+			taglib.append("\t\t\t<component-type>").append(getComponentType(name, i)).append("</component-type>\n");
+
+			if ((i % 10) == 0) {
+				taglib.append("\t\t\t<handler-class>").append(getDeclaredClassName(name, i)).append(
+					"</handler-class>\n");
+			}
+
+			taglib.append("\t\t</component>\n");
+			taglib.append("\t</tag>\n");
+		}
+
+		taglib.append("</facelet-taglib>\n");
+
+		return taglib.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,781 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.ServletContainerInitializer;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DefaultDependencyResolutionRequest;
+import org.apache.maven.project.DependencyResolutionException;
+import org.apache.maven.project.DependencyResolutionResult;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectDependenciesResolver;
+
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+
+/**
+ * The parameters shared by the goals that generate an import jar, and the generation of the import jar from the
+ * {@link ImportJarConfiguration} that a goal's parameters describe.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ abstract class AbstractLiferayFacesOSGiPluginMojo extends AbstractMojo {
+
+	// Package-Private Constants
+	/* package-private */ static final String META_INF = "META-INF/";
+	/* package-private */ static final String META_INF_SERVICES = META_INF + "services/";
+	/* package-private */ static final String FACES_CONFIG_XML = "faces-config.xml";
+	/* package-private */ static final String META_INF_FACES_CONFIG_XML = META_INF + FACES_CONFIG_XML;
+	/* package-private */ static final String PLUGIN_ARTIFACT_ID = "com.liferay.faces.osgi.plugin";
+	/* package-private */ static final String PROJECT_BUILD_DIRECTORY_PROPERTY = "${project.build.directory}";
+	/* package-private */ static final String SERVLET_CONTAINER_INITIALIZER_FILE_PATH = META_INF_SERVICES +
+		"javax.servlet.ServletContainerInitializer";
+
+
+	// Private Data Members
+	@Parameter(defaultValue = "${project.build.finalName}", required = true)
+	private String buildFinalName;
+
+	@Component
+	private BuildContext buildContext;
+
+	/**
+	 * The JSON file in which the durations and counts of the phases of the build are reported. No report is written if
+	 * it is not set.
+	 */
+	@Parameter(defaultValue = PROJECT_BUILD_DIRECTORY_PROPERTY + "/" + PLUGIN_ARTIFACT_ID + "/build-report.json")
+	private File buildReportFile;
+
+	/**
+	 * The memory-mapped index of the classes of all provided jars, which is used to verify class names that are not
+	 * found in the jar that references them. The index is only rebuilt when the provided jars change.
+	 */
+	@Parameter(defaultValue = PROJECT_BUILD_DIRECTORY_PROPERTY + "/" + PLUGIN_ARTIFACT_ID + "/class-name-index.bin")
+	private File classNameIndexFile;
+
+	/**
+	 * The maximum number of scan results that the daemon scan cache (see {@link #useDaemonScanCache}) keeps strongly
+	 * referenced. Less recently used results are only kept until the JVM runs low on memory.
+	 */
+	@Parameter(defaultValue = "" + DaemonScanCache.DEFAULT_MAX_SIZE)
+	private int daemonScanCacheSize;
+
+	/**
+	 * The artifacts that are never scanned, as groupId[:artifactId[:classifier]] patterns in which * matches any
+	 * characters and omitted segments match any value. Excluded artifacts are rejected before their files are opened,
+	 * so they are not used to verify the class names found in other jars either.
+	 */
+	@Parameter
+	private List<String> excludes;
+
+	/**
+	 * The digest algorithm used to hash the generated jar. The hash is part of the name of the jar.
+	 */
+	@Parameter(defaultValue = JarGeneratorUtil.DEFAULT_DIGEST_ALGORITHM)
+	private String importJarDigestAlgorithm;
+
+	/**
+	 * The file in which the fingerprint of the inputs of the generated jar is recorded. The jar is not regenerated
+	 * while the fingerprint is unchanged.
+	 */
+	@Parameter(defaultValue = PROJECT_BUILD_DIRECTORY_PROPERTY + "/" + PLUGIN_ARTIFACT_ID + "/import-jar.fingerprint")
+	private File importJarFingerprintFile;
+
+	/**
+	 * The artifacts that are scanned, as groupId[:artifactId[:classifier]] patterns in which * matches any characters
+	 * and omitted segments match any value. Every artifact of an accepted scope (see {@link #scopes}) is scanned if it
+	 * is not set.
+	 */
+	@Parameter
+	private List<String> includes;
+
+	/**
+	 * Whether the manifest of the generated jar contains an Import-Package header for the packages of the imported
+	 * classes.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean importPackageHeader;
+
+	/**
+	 * The manifest fragment in which the Import-Package header for the packages of the imported classes is written, so
+	 * that it can be merged into the manifest of the WAR (for example as the manifestFile of the maven-war-plugin
+	 * archive configuration). No fragment is written if it is not set.
+	 */
+	@Parameter
+	private File importPackageManifestFile;
+
+	/**
+	 * Whether the provided jars are scanned in low-memory mode, in which the memory used by the scan does not grow with
+	 * the size of the descriptors or the number of classes in the provided jars, at the cost of inflating each
+	 * descriptor once per parse and spilling the class name index to disk. Unless {@link #scanThreads} is set, the
+	 * jars are scanned by a single thread, so that only one class or descriptor is inflated at a time.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean lowMemory;
+
+	/**
+	 * The file in which the provided jars whose scan found nothing to import are recorded, so that they are not opened
+	 * again until they change.
+	 */
+	@Parameter(defaultValue = PROJECT_BUILD_DIRECTORY_PROPERTY + "/" + PLUGIN_ARTIFACT_ID + "/negative-scan-cache.bin")
+	private File negativeScanCacheFile;
+
+	@Parameter(defaultValue = PROJECT_BUILD_DIRECTORY_PROPERTY, required = true)
+	private File outputDirectory;
+
+	/**
+	 * The timestamp of the entries of the generated jar, either as an ISO-8601 date-time with an offset or as a
+	 * number of seconds since the epoch. Setting it makes the generated jar reproducible (see {@link #reproducible}).
+	 */
+	@Parameter(defaultValue = "${project.build.outputTimestamp}")
+	private String outputTimestamp;
+
+	@Parameter(defaultValue = "${plugin}", readonly = true)
+	private PluginDescriptor plugin;
+
+	/**
+	 * Whether the classes of the web application that the initializers of the generated jar handle are found at build
+	 * time. The initializers are then started by a single composite initializer with the classes that match their
+	 * HandlesTypes annotations, so the container does not scan the web application for them. Initializers whose class
+	 * is not found in the web application or the provided jars are still registered as usual. The web application
+	 * consists of the classes of the project and its compile and runtime jars. The goals only resolve the compile
+	 * dependencies, so the runtime dependencies are only resolved when this is enabled.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean precomputeHandlesTypes;
+
+	@Parameter(defaultValue = "${project}", required = true)
+	private MavenProject project;
+
+	@Component
+	private ProjectDependenciesResolver projectDependenciesResolver;
+
+	/**
+	 * Whether the generated jar is reproducible, so that the same inputs always produce a byte-identical jar. The
+	 * imported classes are sorted and the entries of the jar are stamped with {@link #outputTimestamp}, or with
+	 * 1980-02-01T00:00:00Z if it is not set.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean reproducible;
+
+	@Parameter(defaultValue = "${session}", readonly = true)
+	private MavenSession session;
+
+	/**
+	 * Whether the classes of the provided jars are scanned for Faces annotations such as {@code @FacesComponent}. The
+	 * packages of the annotated classes are imported, and an index of the annotated classes is added to the generated
+	 * jar. Disabled by default, since every class of every provided jar has to be inflated, including the classes of
+	 * jars without descriptors.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean scanFacesAnnotations;
+
+	/**
+	 * Whether the components, converters, validators, behaviors, renderers and tags declared by the descriptors of the
+	 * provided jars are written to a binary index in the generated jar, which can be looked up at runtime through
+	 * {@link FacesDescriptorIndex}. Disabled by default, since the descriptors are parsed a second time to build the
+	 * index and the index is only useful to code that looks it up.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean indexFacesDescriptors;
+
+	/**
+	 * The file in which the class names extracted from each provided jar are cached between builds. The entries of jars
+	 * that are no longer provided are dropped when the file is written.
+	 */
+	@Parameter(defaultValue = PROJECT_BUILD_DIRECTORY_PROPERTY + "/" + PLUGIN_ARTIFACT_ID + "/scan-cache.bin")
+	private File scanCacheFile;
+
+	/**
+	 * The number of threads used to scan the provided Faces jars. A value less than 1 uses one thread per available
+	 * processor, or a single thread in {@link #lowMemory} mode.
+	 */
+	@Parameter(defaultValue = "0")
+	private int scanThreads;
+
+	/**
+	 * The scopes of the jar artifacts that are scanned. Only provided artifacts are scanned if it is not set.
+	 */
+	@Parameter
+	private List<String> scopes;
+
+	/**
+	 * Whether the class names extracted from each provided jar are cached in {@link #scanCacheFile} so that unchanged
+	 * jars are not rescanned.
+	 */
+	@Parameter(defaultValue = "true")
+	private boolean useScanCache;
+
+	/**
+	 * Whether the provided jars whose scan found nothing to import are recorded in {@link #negativeScanCacheFile}, so
+	 * that unchanged jars are rejected by their size and last modified time without being opened or hashed.
+	 */
+	@Parameter(defaultValue = "true")
+	private boolean useNegativeScanCache;
+
+	/**
+	 * Whether the scan result of each provided jar is kept in memory for as long as the plugin is loaded. A build
+	 * daemon such as mvnd keeps the plugin loaded between builds, so unchanged jars are not scanned again by later
+	 * builds of any project.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean useDaemonScanCache;
+
+	/**
+	 * Whether the scan result of each provided jar is shared with the other modules of the reactor build, so that each
+	 * jar is only scanned once per build.
+	 */
+	@Parameter(defaultValue = "true")
+	private boolean useSessionScanCache;
+
+	/**
+	 * Whether the class names found in faces-config.xml files are verified to exist in their jar in the same way as the
+	 * class names found in *.taglib.xml files.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean verifyFacesConfigClassNames;
+
+	/**
+	 * Scans the provided jars, generates the import jar in the WEB-INF/lib directory of the exploded WAR unless it is
+	 * up to date, and returns the import jar.
+	 *
+	 * @param  facesJarArtifactIds  The groupId:artifactId:version of each provided jar, keyed by its file.
+	 */
+	/* package-private */ static File generateImportJar(ImportJarConfiguration configuration,
+		Map<File, String> facesJarArtifactIds, BuildReport buildReport, Log log) throws MojoExecutionException {
+
+		Set<File> facesJars = facesJarArtifactIds.keySet();
+		MavenProject project = configuration.project;
+		buildReport.setProjectId(project.getGroupId() + ":" + project.getArtifactId() + ":" + project.getVersion());
+
+		try {
+
+			Set<String> defaultServletContainerInitializerClassNames = ServletContainerInitializerUtil
+				.getDefaultClassNames();
+			String scanConfiguration = configuration.getScanConfiguration();
+			List<FacesJarScanResultCache> facesJarScanResultCaches = new ArrayList<FacesJarScanResultCache>();
+			NegativeScanCache negativeScanCache = null;
+
+			// The negative scan cache only compares file stamps, so it is consulted before the caches that may hash.
+			if (configuration.useNegativeScanCache) {
+
+				negativeScanCache = NegativeScanCache.load(configuration.negativeScanCacheFile, scanConfiguration, log);
+				facesJarScanResultCaches.add(negativeScanCache);
+			}
+
+			DaemonScanCache daemonScanCache = null;
+			long daemonScanCacheHits = 0;
+			long daemonScanCacheMisses = 0;
+
+			if (configuration.useDaemonScanCache) {
+
+				daemonScanCache = DaemonScanCache.getInstance();
+				daemonScanCache.setMaxSize(configuration.daemonScanCacheSize);
+				daemonScanCacheHits = daemonScanCache.getHits();
+				daemonScanCacheMisses = daemonScanCache.getMisses();
+				facesJarScanResultCaches.add(daemonScanCache.getView(scanConfiguration));
+			}
+
+			SessionScanCache sessionScanCache = null;
+			SessionScanCache.View sessionScanCacheView = null;
+
+			if (configuration.useSessionScanCache && (configuration.session != null)) {
+
+				sessionScanCache = SessionScanCache.getInstance(configuration.session);
+				sessionScanCacheView = sessionScanCache.getView(facesJarArtifactIds, scanConfiguration);
+				facesJarScanResultCaches.add(sessionScanCacheView);
+			}
+
+			FacesJarScanCache facesJarScanCache = null;
+
+			if (configuration.useScanCache) {
+
+				facesJarScanCache = FacesJarScanCache.load(configuration.scanCacheFile, scanConfiguration, log);
+				facesJarScanResultCaches.add(facesJarScanCache);
+			}
+
+			Map<String, String> annotatedClassNames = null;
+
+			if (configuration.scanFacesAnnotations) {
+				annotatedClassNames = new HashMap<String, String>();
+			}
+
+			Map<String, String> descriptorMappings = null;
+
+			if (configuration.indexFacesDescriptors) {
+				descriptorMappings = new HashMap<String, String>();
+			}
+
+			long scanStart = System.nanoTime();
+			Set<String> importedClasses = FacesXMLUtil.getClassNames(facesJars, log, configuration.getScanThreads(),
+					configuration.verifyFacesConfigClassNames, facesJarScanResultCaches,
+					configuration.classNameIndexFile, annotatedClassNames, descriptorMappings, buildReport,
+					configuration.lowMemory);
+			buildReport.setScanDuration(System.nanoTime() - scanStart);
+
+			Set<String> servletContainerInitializerClassNames = defaultServletContainerInitializerClassNames;
+			Set<String> additionalClassesToImport = importedClasses;
+			Map<String, Set<String>> handledClassNames = null;
+
+			if (configuration.precomputeHandlesTypes) {
+
+				List<File> webApplicationFiles = ServletContainerInitializerUtil.getWebApplicationFiles(new File(
+							project.getBuild().getOutputDirectory()), getWebApplicationArtifacts(configuration));
+				handledClassNames = ServletContainerInitializerUtil.getHandledClassNames(
+						defaultServletContainerInitializerClassNames, webApplicationFiles, facesJars);
+
+				if (!handledClassNames.isEmpty()) {
+
+					// The packages of the initializers started by the composite initializer are still imported.
+					servletContainerInitializerClassNames = new LinkedHashSet<String>();
+					servletContainerInitializerClassNames.add(CompositeServletContainerInitializer.class.getName());
+					additionalClassesToImport = new PackageTrie(importedClasses);
+					additionalClassesToImport.add(ServletContainerInitializer.class.getName());
+
+					for (String servletContainerInitializerClassName : defaultServletContainerInitializerClassNames) {
+
+						if (handledClassNames.containsKey(servletContainerInitializerClassName)) {
+							additionalClassesToImport.add(servletContainerInitializerClassName);
+						}
+						else {
+							servletContainerInitializerClassNames.add(servletContainerInitializerClassName);
+						}
+					}
+				}
+			}
+
+			Set<String> classesToImport = new PackageTrie(defaultServletContainerInitializerClassNames);
+			classesToImport.addAll(additionalClassesToImport);
+			buildReport.add(BuildReport.Count.CLASSES_KEPT, importedClasses.size());
+			buildReport.add(BuildReport.Count.PACKAGES,
+				ImportedFacesPackagesByteCodeUtil.getPackageNames(classesToImport).size());
+
+			if (negativeScanCache != null) {
+
+				log.info("Negative scan cache: " + negativeScanCache.getHits() +
+					" jars without Faces content skipped (" + negativeScanCache.getSize() + " recorded).");
+
+				try {
+					negativeScanCache.save();
+				}
+				catch (IOException e) {
+					log.warn("Failed to save negative scan cache " + configuration.negativeScanCacheFile + ".", e);
+				}
+			}
+
+			if (daemonScanCache != null) {
+				log.info("Daemon scan cache: " + (daemonScanCache.getHits() - daemonScanCacheHits) + " hits, " +
+					(daemonScanCache.getMisses() - daemonScanCacheMisses) + " misses (" + daemonScanCache.getSize() +
+					" results, " + daemonScanCache.getSoftSize() + " softly referenced).");
+			}
+
+			if (sessionScanCacheView != null) {
+				log.info("Session scan cache: " + sessionScanCacheView.getHits() + " hits, " +
+					sessionScanCacheView.getMisses() + " misses (" + sessionScanCache.getHits() + " hits, " +
+					sessionScanCache.getMisses() + " misses in this build).");
+			}
+
+			if (facesJarScanCache != null) {
+
+				try {
+					facesJarScanCache.save();
+				}
+				catch (IOException e) {
+					log.warn("Failed to save scan cache " + configuration.scanCacheFile + ".", e);
+				}
+			}
+
+			if (configuration.importPackageManifestFile != null) {
+				JarGeneratorUtil.writeImportPackageManifestFragment(configuration.importPackageManifestFile,
+					JarGeneratorUtil.getImportPackageHeader(classesToImport));
+			}
+
+			Long outputTimestamp = getOutputTimestamp(configuration);
+			String fingerprint = JarGeneratorUtil.getFingerprint(getPluginVersion(configuration.plugin), facesJars,
+					servletContainerInitializerClassNames, additionalClassesToImport,
+					scanConfiguration + ",importJarDigestAlgorithm=" + configuration.importJarDigestAlgorithm +
+					",outputTimestamp=" + outputTimestamp + ",importPackageHeader=" +
+					configuration.importPackageHeader + ",handledClassNames=" + handledClassNames);
+			File warLibDirectory = configuration.getWarLibDirectory();
+			File importJar = JarGeneratorUtil.getUpToDateImportJar(configuration.importJarFingerprintFile,
+					fingerprint, facesJars, warLibDirectory);
+
+			if (importJar != null) {
+
+				log.info("Import jar " + importJar.getName() + " is up to date.");
+				buildReport.setUpToDate(true);
+				writeBuildReport(configuration.buildReportFile, buildReport, log);
+
+				return importJar;
+			}
+
+			Map<String, byte[]> resources = new HashMap<String, byte[]>();
+
+			if (annotatedClassNames != null) {
+				resources.put(FacesAnnotationUtil.FACES_ANNOTATION_INDEX_PATH,
+					FacesAnnotationUtil.getFacesAnnotationIndex(annotatedClassNames));
+			}
+
+			if (descriptorMappings != null) {
+
+				resources.put(ClassFileUtil.getClassFilePath(FacesDescriptorIndex.class),
+					ClassFileUtil.getClassBytes(FacesDescriptorIndex.class));
+				resources.put(FacesDescriptorIndex.FACES_DESCRIPTOR_INDEX_PATH,
+					FacesDescriptorIndex.toByteArray(descriptorMappings));
+			}
+
+			if ((handledClassNames != null) && !handledClassNames.isEmpty()) {
+
+				resources.put(ClassFileUtil.getClassFilePath(CompositeServletContainerInitializer.class),
+					ClassFileUtil.getClassBytes(CompositeServletContainerInitializer.class));
+				resources.put(CompositeServletContainerInitializer.SERVLET_CONTAINER_INITIALIZER_INDEX_PATH,
+					CompositeServletContainerInitializer.toByteArray(handledClassNames));
+			}
+
+			importJar = JarGeneratorUtil.generateImportJar(warLibDirectory, servletContainerInitializerClassNames,
+					additionalClassesToImport, configuration.importJarDigestAlgorithm, outputTimestamp,
+					configuration.importPackageHeader, resources, buildReport);
+			JarGeneratorUtil.writeFingerprint(configuration.importJarFingerprintFile, fingerprint, importJar,
+				facesJars);
+
+			if (configuration.buildContext != null) {
+				configuration.buildContext.refresh(importJar);
+			}
+
+			writeBuildReport(configuration.buildReportFile, buildReport, log);
+
+			return importJar;
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Failed to generate import JAR.", e);
+		}
+	}
+
+	/**
+	 * Returns the groupId:artifactId:version of each provided jar that is accepted by the include, exclude and scope
+	 * filters, keyed by its file.
+	 */
+	/* package-private */ static Map<File, String> getFacesJarArtifactIds(ImportJarConfiguration configuration,
+		BuildReport buildReport, Log log) throws MojoExecutionException {
+
+		long artifactCollectionStart = System.nanoTime();
+		ArtifactFilter artifactFilter;
+
+		try {
+			artifactFilter = new ArtifactFilter(configuration.includes, configuration.excludes, configuration.scopes);
+		}
+		catch (IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+
+		Map<File, String> facesJarArtifactIds = new HashMap<File, String>();
+		Set<Artifact> artifacts = configuration.project.getArtifacts();
+		int rejectedArtifacts = 0;
+
+		for (Artifact artifact : artifacts) {
+
+			String type = artifact.getType();
+
+			if (!"jar".equalsIgnoreCase(type)) {
+				continue;
+			}
+
+			// Rejected artifacts are skipped before their files are touched. The file of a reactor module that has not
+			// been packaged is its target/classes directory.
+			if (!artifactFilter.accept(artifact)) {
+				rejectedArtifacts++;
+			}
+			else if (artifact.getFile() != null) {
+				facesJarArtifactIds.put(artifact.getFile(),
+					artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion());
+			}
+		}
+
+		buildReport.addDuration(BuildReport.Phase.ARTIFACT_COLLECTION, artifactCollectionStart);
+
+		if (log.isDebugEnabled()) {
+			log.debug("Rejected " + rejectedArtifacts + " jar artifacts by their coordinates or scope.");
+		}
+
+		return facesJarArtifactIds;
+	}
+
+	/**
+	 * Returns the compile and runtime artifacts of the project, which are packaged in the WEB-INF/lib directory of the
+	 * WAR. The goals only resolve the compile dependencies, so the dependencies are resolved again with the runtime
+	 * scope, and only when the HandlesTypes classes are precomputed.
+	 */
+	private static List<Artifact> getWebApplicationArtifacts(ImportJarConfiguration configuration)
+		throws MojoExecutionException {
+
+		MavenProject project = configuration.project;
+		DefaultDependencyResolutionRequest dependencyResolutionRequest = new DefaultDependencyResolutionRequest(project,
+				configuration.session.getRepositorySession());
+		dependencyResolutionRequest.setResolutionFilter((DependencyNode dependencyNode,
+				List<DependencyNode> parentDependencyNodes) -> {
+
+				Dependency dependency = dependencyNode.getDependency();
+
+				return (dependency == null) || Artifact.SCOPE_COMPILE.equals(dependency.getScope()) ||
+					Artifact.SCOPE_RUNTIME.equals(dependency.getScope());
+			});
+
+		try {
+
+			DependencyResolutionResult dependencyResolutionResult = configuration.projectDependenciesResolver.resolve(
+					dependencyResolutionRequest);
+			List<Artifact> artifacts = new ArrayList<Artifact>();
+
+			for (Dependency dependency : dependencyResolutionResult.getDependencies()) {
+
+				Artifact artifact = RepositoryUtils.toArtifact(dependency.getArtifact());
+				artifact.setScope(dependency.getScope());
+				artifacts.add(artifact);
+			}
+
+			return artifacts;
+		}
+		catch (DependencyResolutionException e) {
+			throw new MojoExecutionException("Failed to resolve the runtime dependencies of " + project.getId() + ".",
+				e);
+		}
+	}
+
+	/**
+	 * Scans the provided jars that are not in the session scan cache yet and caches their results, so that {@link
+	 * #generateImportJar(ImportJarConfiguration, Map, BuildReport, Log)} finds every one of them in the session scan
+	 * cache. The results are released with the session.
+	 *
+	 * @param  facesJarArtifactIds  The groupId:artifactId:version of each provided jar, keyed by its file.
+	 */
+	/* package-private */ static void scanFacesJars(ImportJarConfiguration configuration,
+		Map<File, String> facesJarArtifactIds, Log log) {
+
+		SessionScanCache sessionScanCache = SessionScanCache.getInstance(configuration.session);
+		List<FacesJarScanResultCache> facesJarScanResultCaches = Collections.<FacesJarScanResultCache>singletonList(
+				sessionScanCache.getView(facesJarArtifactIds, configuration.getScanConfiguration()));
+		FacesXMLUtil.scanFacesJars(facesJarArtifactIds.keySet(), log, configuration.getScanThreads(),
+			configuration.verifyFacesConfigClassNames, facesJarScanResultCaches, configuration.scanFacesAnnotations,
+			configuration.indexFacesDescriptors, new BuildReport(), configuration.lowMemory);
+	}
+
+	private static Long getOutputTimestamp(ImportJarConfiguration configuration) throws MojoExecutionException {
+
+		Long outputTimestamp;
+
+		try {
+			outputTimestamp = JarGeneratorUtil.parseOutputTimestamp(configuration.outputTimestamp);
+		}
+		catch (IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+
+		if ((outputTimestamp == null) && configuration.reproducible) {
+			outputTimestamp = JarGeneratorUtil.DEFAULT_OUTPUT_TIMESTAMP;
+		}
+
+		return outputTimestamp;
+	}
+
+	private static String getPluginVersion(PluginDescriptor plugin) {
+
+		if (plugin == null) {
+			return null;
+		}
+
+		String pluginVersion = plugin.getVersion();
+		Artifact pluginArtifact = plugin.getPluginArtifact();
+
+		// A rebuilt SNAPSHOT of the plugin may generate a different jar without changing its version.
+		if ((pluginArtifact != null) && (pluginArtifact.getFile() != null)) {
+
+			File pluginFile = pluginArtifact.getFile();
+			pluginVersion = pluginVersion + "|" + pluginFile.length() + "|" + pluginFile.lastModified();
+		}
+
+		return pluginVersion;
+	}
+
+	private static void writeBuildReport(File buildReportFile, BuildReport buildReport, Log log) {
+
+		buildReport.end();
+		log.info(buildReport.getSummary());
+
+		if (buildReportFile != null) {
+
+			try {
+				buildReport.write(buildReportFile);
+			}
+			catch (IOException e) {
+				log.warn("Failed to write build report " + buildReportFile + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the inputs of the import jar of this goal's project as described by its parameters.
+	 */
+	/* package-private */ final ImportJarConfiguration getImportJarConfiguration() {
+		return new ImportJarConfiguration(this);
+	}
+
+	/**
+	 * The project, files and settings from which the import jar of a project is generated, copied from the parameters
+	 * of a goal that was configured for that project.
+	 */
+	/* package-private */ static final class ImportJarConfiguration {
+
+		// Private Final Data Members
+		private final BuildContext buildContext;
+		private final File buildReportFile;
+		private final File classNameIndexFile;
+		private final int daemonScanCacheSize;
+		private final List<String> excludes;
+		private final String importJarDigestAlgorithm;
+		private final File importJarFingerprintFile;
+		private final List<String> includes;
+		private final boolean importPackageHeader;
+		private final File importPackageManifestFile;
+		private final boolean indexFacesDescriptors;
+		private final boolean lowMemory;
+		private final File negativeScanCacheFile;
+		private final String outputTimestamp;
+		private final PluginDescriptor plugin;
+		private final boolean precomputeHandlesTypes;
+		private final MavenProject project;
+		private final ProjectDependenciesResolver projectDependenciesResolver;
+		private final boolean reproducible;
+		private final boolean scanFacesAnnotations;
+		private final File scanCacheFile;
+		private final int scanThreads;
+		private final List<String> scopes;
+		private final MavenSession session;
+		private final boolean useDaemonScanCache;
+		private final boolean useNegativeScanCache;
+		private final boolean useScanCache;
+		private final boolean useSessionScanCache;
+		private final boolean verifyFacesConfigClassNames;
+		private final File warLibDirectory;
+
+		private ImportJarConfiguration(AbstractLiferayFacesOSGiPluginMojo mojo) {
+
+			this.buildContext = mojo.buildContext;
+			this.buildReportFile = mojo.buildReportFile;
+			this.classNameIndexFile = mojo.classNameIndexFile;
+			this.daemonScanCacheSize = mojo.daemonScanCacheSize;
+			this.excludes = mojo.excludes;
+			this.importJarDigestAlgorithm = mojo.importJarDigestAlgorithm;
+			this.importJarFingerprintFile = mojo.importJarFingerprintFile;
+			this.includes = mojo.includes;
+			this.importPackageHeader = mojo.importPackageHeader;
+			this.importPackageManifestFile = mojo.importPackageManifestFile;
+			this.indexFacesDescriptors = mojo.indexFacesDescriptors;
+			this.lowMemory = mojo.lowMemory;
+			this.negativeScanCacheFile = mojo.negativeScanCacheFile;
+			this.outputTimestamp = mojo.outputTimestamp;
+			this.plugin = mojo.plugin;
+			this.precomputeHandlesTypes = mojo.precomputeHandlesTypes;
+			this.project = mojo.project;
+			this.projectDependenciesResolver = mojo.projectDependenciesResolver;
+			this.reproducible = mojo.reproducible;
+			this.scanFacesAnnotations = mojo.scanFacesAnnotations;
+			this.scanCacheFile = mojo.scanCacheFile;
+			this.scanThreads = mojo.scanThreads;
+			this.scopes = mojo.scopes;
+			this.session = mojo.session;
+			this.useDaemonScanCache = mojo.useDaemonScanCache;
+			this.useNegativeScanCache = mojo.useNegativeScanCache;
+			this.useScanCache = mojo.useScanCache;
+			this.useSessionScanCache = mojo.useSessionScanCache;
+			this.verifyFacesConfigClassNames = mojo.verifyFacesConfigClassNames;
+
+			// Add JAR to maven-war-plugin config
+			String warFolderName = mojo.buildFinalName.replaceFirst(".war$", "");
+			String warLibDirectoryPath = JarGeneratorUtil.getFilePath(mojo.outputDirectory.toString(), warFolderName,
+					"WEB-INF", "lib");
+			this.warLibDirectory = new File(warLibDirectoryPath);
+		}
+
+		/* package-private */ BuildContext getBuildContext() {
+			return buildContext;
+		}
+
+		/* package-private */ File getImportJarFingerprintFile() {
+			return importJarFingerprintFile;
+		}
+
+		/* package-private */ MavenProject getProject() {
+			return project;
+		}
+
+		/**
+		 * Returns the scan configuration, since results scanned with a different configuration may differ.
+		 */
+		/* package-private */ String getScanConfiguration() {
+			return "verifyFacesConfigClassNames=" + verifyFacesConfigClassNames + ",scanFacesAnnotations=" +
+				scanFacesAnnotations + ",indexFacesDescriptors=" + indexFacesDescriptors;
+		}
+
+		/**
+		 * Returns the number of threads used to scan the provided jars as described by the scanThreads parameter.
+		 */
+		/* package-private */ int getScanThreads() {
+
+			int scanThreads = this.scanThreads;
+
+			if (scanThreads < 1) {
+				scanThreads = lowMemory ? 1 : Runtime.getRuntime().availableProcessors();
+			}
+
+			return scanThreads;
+		}
+
+		/**
+		 * Returns the WEB-INF/lib directory of the exploded WAR, in which the import jar is generated.
+		 */
+		/* package-private */ File getWarLibDirectory() {
+			return warLibDirectory;
+		}
+
+		/* package-private */ boolean isPrecomputeHandlesTypes() {
+			return precomputeHandlesTypes;
+		}
+
+		/* package-private */ boolean isUseSessionScanCache() {
+			return useSessionScanCache && (session != null);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.Artifact;
+
+
+/**
+ * Selects the artifacts whose files are scanned from their coordinates and scope alone, so that rejected artifacts
+ * are never opened. Include and exclude patterns have the form groupId[:artifactId[:classifier]], in which * matches
+ * any characters of a segment and omitted segments match any value. An artifact is accepted if its scope is one of the
+ * accepted scopes, it matches an include pattern (or no include patterns are configured) and it matches no exclude
+ * pattern.
+ *
+ * <p>Each list of patterns is compiled into a set of the patterns without wildcards, which is checked with a single
+ * lookup, and one regular expression that matches the remaining patterns.</p>
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class ArtifactFilter {
+
+	// Private Final Data Members
+	private final PatternMatcher excludes;
+	private final PatternMatcher includes;
+	private final Set<String> scopes;
+
+	/**
+	 * @param  includes  The include patterns, or null to include every artifact.
+	 * @param  excludes  The exclude patterns, or null to exclude no artifact.
+	 * @param  scopes    The accepted scopes, or null to only accept provided artifacts.
+	 *
+	 * @throws  IllegalArgumentException  if a pattern is empty or has more than three segments.
+	 */
+	/* package-private */ ArtifactFilter(List<String> includes, List<String> excludes, List<String> scopes) {
+
+		if ((includes == null) || includes.isEmpty()) {
+			this.includes = null;
+		}
+		else {
+			this.includes = new PatternMatcher(includes);
+		}
+
+		if (excludes == null) {
+			excludes = Collections.emptyList();
+		}
+
+		this.excludes = new PatternMatcher(excludes);
+
+		if ((scopes == null) || scopes.isEmpty()) {
+			scopes = Collections.singletonList(Artifact.SCOPE_PROVIDED);
+		}
+
+		this.scopes = new HashSet<String>();
+
+		for (String scope : scopes) {
+			this.scopes.add(scope.trim().toLowerCase(Locale.ENGLISH));
+		}
+	}
+
+	private static String getCoordinates(String groupId, String artifactId, String classifier) {
+
+		if (classifier == null) {
+			classifier = "";
+		}
+
+		return groupId + ":" + artifactId + ":" + classifier;
+	}
+
+	/* package-private */ boolean accept(Artifact artifact) {
+		return accept(artifact.getGroupId(), artifact.getArtifactId(), artifact.getClassifier(), artifact.getScope());
+	}
+
+	/**
+	 * Returns true if the artifact is accepted. The classifier may be null if the artifact has no classifier, in which
+	 * case it only matches patterns whose classifier is omitted or matches an empty string.
+	 */
+	/* package-private */ boolean accept(String groupId, String artifactId, String classifier, String scope) {
+
+		if ((scope == null) || !scopes.contains(scope.toLowerCase(Locale.ENGLISH))) {
+			return false;
+		}
+
+		String coordinates = getCoordinates(groupId, artifactId, classifier);
+
+		return ((includes == null) || includes.matches(coordinates)) && !excludes.matches(coordinates);
+	}
+
+	private static final class PatternMatcher {
+
+		// Private Final Data Members
+		private final Set<String> exactCoordinates = new HashSet<String>();
+		private final Pattern pattern;
+
+		private PatternMatcher(List<String> patterns) {
+
+			List<String> regexes = new ArrayList<String>();
+
+			for (String pattern : patterns) {
+
+				String[] segments = pattern.trim().split(":", -1);
+
+				if ((segments.length > 3) || segments[0].isEmpty()) {
+					throw new IllegalArgumentException("Invalid artifact pattern " + pattern +
+						". Expected groupId[:artifactId[:classifier]].");
+				}
+
+				if ((segments.length == 3) && (pattern.indexOf('*') < 0)) {
+					exactCoordinates.add(getCoordinates(segments[0].trim(), segments[1].trim(), segments[2].trim()));
+				}
+				else {
+
+					StringBuilder regex = new StringBuilder("(?:");
+
+					for (int i = 0; i < 3; i++) {
+
+						if (i > 0) {
+							regex.append(':');
+						}
+
+						if (i < segments.length) {
+							regex.append(toRegex(segments[i].trim()));
+						}
+						else {
+							regex.append("[^:]*");
+						}
+					}
+
+					regexes.add(regex.append(')').toString());
+				}
+			}
+
+			if (regexes.isEmpty()) {
+				this.pattern = null;
+			}
+			else {
+				this.pattern = Pattern.compile(String.join("|", regexes));
+			}
+		}
+
+		private static String toRegex(String segment) {
+
+			StringBuilder regex = new StringBuilder();
+			int start = 0;
+			int wildcard;
+
+			while ((wildcard = segment.indexOf('*', start)) >= 0) {
+
+				if (wildcard > start) {
+					regex.append(Pattern.quote(segment.substring(start, wildcard)));
+				}
+
+				regex.append("[^:]*");
+				start = wildcard + 1;
+			}
+
+			if (start < segment.length()) {
+				regex.append(Pattern.quote(segment.substring(start)));
+			}
+
+			return regex.toString();
+		}
+
+		private boolean matches(String coordinates) {
+			return exactCoordinates.contains(coordinates) ||
+				((pattern != null) && pattern.matcher(coordinates).matches());
+		}
+	}
+}
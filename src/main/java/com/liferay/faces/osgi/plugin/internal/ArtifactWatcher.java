@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Watches the files of provided artifacts for changes with a {@link WatchService}. The parent directory of each jar is
+ * watched for changes of the jar, and each directory artifact (such as the target/classes directory of a reactor
+ * module) is watched recursively, including the directories that are created in it later. Changes of other files in
+ * the watched directories are ignored.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class ArtifactWatcher implements Closeable {
+
+	// Private Final Data Members
+	private final Collection<File> artifactFiles;
+	private final Map<WatchKey, File> directoryArtifacts = new HashMap<WatchKey, File>();
+	private final Map<Path, File> jarArtifacts = new HashMap<Path, File>();
+	private final Map<WatchKey, Path> watchedDirectories = new HashMap<WatchKey, Path>();
+	private final WatchService watchService;
+
+	// Private Data Members
+	private long firstChangeNanoTime;
+
+	private ArtifactWatcher(Collection<File> artifactFiles, WatchService watchService) {
+
+		this.artifactFiles = artifactFiles;
+		this.watchService = watchService;
+	}
+
+	/**
+	 * Returns a watcher of the artifact files. The files that do not exist are not watched.
+	 */
+	/* package-private */ static ArtifactWatcher open(Collection<File> artifactFiles) throws IOException {
+
+		WatchService watchService = FileSystems.getDefault().newWatchService();
+		ArtifactWatcher artifactWatcher = new ArtifactWatcher(artifactFiles, watchService);
+
+		try {
+
+			Set<Path> jarDirectories = new LinkedHashSet<Path>();
+
+			for (File artifactFile : artifactFiles) {
+
+				if (artifactFile.isDirectory()) {
+					artifactWatcher.registerDirectoryArtifact(artifactFile.toPath().toAbsolutePath(), artifactFile);
+				}
+				else if (artifactFile.isFile()) {
+
+					Path jarPath = artifactFile.toPath().toAbsolutePath();
+					artifactWatcher.jarArtifacts.put(jarPath, artifactFile);
+					jarDirectories.add(jarPath.getParent());
+				}
+			}
+
+			for (Path jarDirectory : jarDirectories) {
+				artifactWatcher.register(jarDirectory);
+			}
+		}
+		catch (IOException e) {
+
+			CloseableUtil.close(artifactWatcher);
+			throw e;
+		}
+
+		return artifactWatcher;
+	}
+
+	/**
+	 * Blocks until at least one artifact changed and no further change was seen for debounceMillis, and returns the
+	 * changed artifacts, so that a burst of changes (such as a jar that is copied in several writes) is reported once.
+	 * Every artifact is reported as changed if events were lost.
+	 *
+	 * @throws  java.nio.file.ClosedWatchServiceException  if the watcher is closed while waiting.
+	 */
+	/* package-private */ Set<File> awaitChanges(long debounceMillis) throws InterruptedException {
+
+		Set<File> changedArtifacts = new LinkedHashSet<File>();
+
+		while (changedArtifacts.isEmpty()) {
+
+			WatchKey watchKey = watchService.take();
+			firstChangeNanoTime = System.nanoTime();
+
+			while (watchKey != null) {
+
+				addChangedArtifacts(watchKey, changedArtifacts);
+				watchKey = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		return changedArtifacts;
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	/**
+	 * Returns the {@link System#nanoTime()} at which the first change of the changes last returned by {@link
+	 * #awaitChanges(long)} was seen.
+	 */
+	/* package-private */ long getFirstChangeNanoTime() {
+		return firstChangeNanoTime;
+	}
+
+	private void addChangedArtifacts(WatchKey watchKey, Set<File> changedArtifacts) {
+
+		Path directory = watchedDirectories.get(watchKey);
+		File directoryArtifact = directoryArtifacts.get(watchKey);
+
+		for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+
+			if (watchEvent.kind() == StandardWatchEventKinds.OVERFLOW) {
+
+				changedArtifacts.addAll(artifactFiles);
+
+				continue;
+			}
+
+			if (directory == null) {
+				continue;
+			}
+
+			Path path = directory.resolve((Path) watchEvent.context());
+
+			if (directoryArtifact != null) {
+
+				changedArtifacts.add(directoryArtifact);
+
+				if ((watchEvent.kind() == StandardWatchEventKinds.ENTRY_CREATE) && Files.isDirectory(path)) {
+
+					try {
+						registerDirectoryArtifact(path, directoryArtifact);
+					}
+					catch (IOException e) {
+						// The new directory is not watched, but the change was seen, so the artifact is rescanned.
+					}
+				}
+			}
+			else {
+
+				File jarArtifact = jarArtifacts.get(path);
+
+				if (jarArtifact != null) {
+					changedArtifacts.add(jarArtifact);
+				}
+			}
+		}
+
+		if (!watchKey.reset()) {
+
+			watchedDirectories.remove(watchKey);
+
+			if (directoryArtifact != null) {
+
+				directoryArtifacts.remove(watchKey);
+				changedArtifacts.add(directoryArtifact);
+			}
+		}
+	}
+
+	private WatchKey register(Path directory) throws IOException {
+
+		WatchKey watchKey = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+		watchedDirectories.put(watchKey, directory);
+
+		return watchKey;
+	}
+
+	private void registerDirectoryArtifact(Path directory, File directoryArtifact) throws IOException {
+
+		List<Path> directories = new ArrayList<Path>();
+
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+
+					directories.add(dir);
+
+					return FileVisitResult.CONTINUE;
+				}
+			});
+
+		for (Path dir : directories) {
+			directoryArtifacts.put(register(dir), directoryArtifact);
+		}
+	}
+}
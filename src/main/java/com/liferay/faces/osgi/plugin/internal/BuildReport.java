@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Records the duration of each phase of a build and the number of items processed by it. Phases and counts may be
+ * recorded concurrently by the scan threads, in which case the durations of a phase are summed over the threads and
+ * may exceed the duration of the build.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class BuildReport {
+
+	// Private Constants
+	private static final int VERSION = 1;
+
+	// Private Final Data Members
+	private final LongAdder[] counts;
+	private final LongAdder[] durations;
+	private final long start;
+
+	// Private Data Members
+	private volatile long duration = -1;
+	private volatile String projectId;
+	private volatile long scanDuration;
+	private volatile boolean upToDate;
+
+	/* package-private */ BuildReport() {
+
+		this.counts = newLongAdders(Count.values().length);
+		this.durations = newLongAdders(Phase.values().length);
+		this.start = System.nanoTime();
+	}
+
+	private static String getMillis(long nanos) {
+		return String.format(Locale.ENGLISH, "%.3f", nanos / 1000000.0);
+	}
+
+	private static LongAdder[] newLongAdders(int length) {
+
+		LongAdder[] longAdders = new LongAdder[length];
+
+		for (int i = 0; i < length; i++) {
+			longAdders[i] = new LongAdder();
+		}
+
+		return longAdders;
+	}
+
+	/* package-private */ void add(Count count, long value) {
+		counts[count.ordinal()].add(value);
+	}
+
+	/**
+	 * Adds the time that passed since the start, as returned by {@link System#nanoTime()}, to the duration of the phase
+	 * and returns it.
+	 */
+	/* package-private */ long addDuration(Phase phase, long start) {
+
+		long duration = System.nanoTime() - start;
+		addDurationNanos(phase, duration);
+
+		return duration;
+	}
+
+	/* package-private */ void addDurationNanos(Phase phase, long duration) {
+		durations[phase.ordinal()].add(duration);
+	}
+
+	/**
+	 * Marks the end of the build. The duration of the build is the time that passed since this report was created.
+	 */
+	/* package-private */ void end() {
+		duration = System.nanoTime() - start;
+	}
+
+	/* package-private */ long getCount(Count count) {
+		return counts[count.ordinal()].sum();
+	}
+
+	/* package-private */ long getDuration(Phase phase) {
+		return durations[phase.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the report as a JSON object with the durations (in milliseconds) of the build, the scan and each phase,
+	 * the counts, and the throughput of the scan.
+	 */
+	/* package-private */ String getJSON() {
+
+		long duration = getDurationNanos();
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("\t\"version\": ").append(VERSION).append(",\n");
+		json.append("\t\"project\": ");
+
+		if (projectId == null) {
+			json.append("null");
+		}
+		else {
+			json.append('"').append(projectId.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+		}
+
+		json.append(",\n");
+		json.append("\t\"timestamp\": \"").append(Instant.now()).append("\",\n");
+		json.append("\t\"upToDate\": ").append(upToDate).append(",\n");
+		json.append("\t\"durationMillis\": ").append(getMillis(duration)).append(",\n");
+		json.append("\t\"scanMillis\": ").append(getMillis(scanDuration)).append(",\n");
+		json.append("\t\"phaseMillis\": {\n");
+
+		Phase[] phases = Phase.values();
+
+		for (int i = 0; i < phases.length; i++) {
+
+			json.append("\t\t\"").append(phases[i].jsonName).append("\": ").append(getMillis(getDuration(phases[i])));
+			json.append((i < (phases.length - 1)) ? ",\n" : "\n");
+		}
+
+		json.append("\t},\n");
+		json.append("\t\"counts\": {\n");
+
+		Count[] counts = Count.values();
+
+		for (int i = 0; i < counts.length; i++) {
+
+			json.append("\t\t\"").append(counts[i].jsonName).append("\": ").append(getCount(counts[i]));
+			json.append((i < (counts.length - 1)) ? ",\n" : "\n");
+		}
+
+		json.append("\t},\n");
+		json.append("\t\"throughput\": {\n");
+		json.append("\t\t\"entriesPerSecond\": ").append(getPerSecond(Count.ENTRIES_INSPECTED)).append(",\n");
+		json.append("\t\t\"bytesInflatedPerSecond\": ").append(getPerSecond(Count.BYTES_INFLATED)).append("\n");
+		json.append("\t}\n");
+		json.append("}\n");
+
+		return json.toString();
+	}
+
+	/**
+	 * Returns a one-line summary of the report.
+	 */
+	/* package-private */ String getSummary() {
+
+		StringBuilder summary = new StringBuilder();
+		summary.append(upToDate ? "Checked import jar" : "Generated import jar");
+		summary.append(" in ").append(TimeUnit.NANOSECONDS.toMillis(getDurationNanos())).append(" ms: ");
+		summary.append(getCount(Count.JARS)).append(" jars (").append(getCount(Count.CACHED_JARS)).append(
+			" cached), ");
+		summary.append(getCount(Count.ENTRIES_INSPECTED)).append(" entries, ");
+		summary.append(getCount(Count.BYTES_INFLATED)).append(" bytes inflated, ");
+		summary.append(getCount(Count.CANDIDATES)).append(" candidates, ");
+		summary.append(getCount(Count.CLASSES_KEPT)).append(" classes and ");
+		summary.append(getCount(Count.PACKAGES)).append(" packages imported; scan took ");
+		summary.append(TimeUnit.NANOSECONDS.toMillis(scanDuration)).append(" ms.");
+
+		return summary.toString();
+	}
+
+	/* package-private */ void setProjectId(String projectId) {
+		this.projectId = projectId;
+	}
+
+	/**
+	 * Sets the wall-clock duration, in nanoseconds, of the scan of the provided jars, which the throughput is based on.
+	 */
+	/* package-private */ void setScanDuration(long scanDuration) {
+		this.scanDuration = scanDuration;
+	}
+
+	/* package-private */ void setUpToDate(boolean upToDate) {
+		this.upToDate = upToDate;
+	}
+
+	/* package-private */ void write(File reportFile) throws IOException {
+
+		File reportDirectory = reportFile.getParentFile();
+
+		if (reportDirectory != null) {
+			reportDirectory.mkdirs();
+		}
+
+		Files.write(reportFile.toPath(), getJSON().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private long getDurationNanos() {
+
+		long duration = this.duration;
+
+		if (duration < 0) {
+			duration = System.nanoTime() - start;
+		}
+
+		return duration;
+	}
+
+	private long getPerSecond(Count count) {
+
+		if (scanDuration <= 0) {
+			return 0;
+		}
+
+		return (long) (getCount(count) / (scanDuration / 1000000000.0));
+	}
+
+	/* package-private */ enum Count {
+
+		/**
+		 * The number of provided jars, including the jars whose scan result was cached.
+		 */
+		JARS("jars"),
+
+		/**
+		 * The number of provided jars whose scan result was cached.
+		 */
+		CACHED_JARS("cachedJars"),
+
+		/**
+		 * The number of entries of the scanned jars.
+		 */
+		ENTRIES_INSPECTED("entriesInspected"),
+
+		/**
+		 * The number of bytes of class and descriptor entries that were read from the scanned jars.
+		 */
+		BYTES_INFLATED("bytesInflated"),
+
+		/**
+		 * The number of candidate class names found in the descriptors of the scanned jars.
+		 */
+		CANDIDATES("candidates"),
+
+		/**
+		 * The number of classes whose packages are imported.
+		 */
+		CLASSES_KEPT("classesKept"),
+
+		/**
+		 * The number of packages that are imported.
+		 */
+		PACKAGES("packages");
+
+		// Private Final Data Members
+		private final String jsonName;
+
+		Count(String jsonName) {
+			this.jsonName = jsonName;
+		}
+	}
+
+	/* package-private */ enum Phase {
+
+		/**
+		 * Selecting the provided jars from the artifacts of the project.
+		 */
+		ARTIFACT_COLLECTION("artifactCollection"),
+
+		/**
+		 * Opening the provided jars.
+		 */
+		JAR_OPEN("jarOpen"),
+
+		/**
+		 * Enumerating the entries of the provided jars, excluding the annotation scan.
+		 */
+		ENTRY_ENUMERATION("entryEnumeration"),
+
+		/**
+		 * Reading the classes of the provided jars and scanning them for Faces annotations.
+		 */
+		ANNOTATION_SCAN("annotationScan"),
+
+		/**
+		 * Reading and parsing the descriptors of the provided jars, excluding the candidate filtering.
+		 */
+		XML_PARSE("xmlParse"),
+
+		/**
+		 * Selecting the candidate class names from the text of the descriptors.
+		 */
+		CANDIDATE_FILTERING("candidateFiltering"),
+
+		/**
+		 * Verifying that the candidate class names exist in their own jar or in another provided jar.
+		 */
+		VERIFICATION("verification"),
+
+		/**
+		 * Generating the byte code of the ImportedFacesPackages class.
+		 */
+		BYTECODE_GENERATION("bytecodeGeneration"),
+
+		/**
+		 * Writing the import jar, excluding the byte code generation and the hashing.
+		 */
+		JAR_WRITE("jarWrite"),
+
+		/**
+		 * Hashing the content of the import jar.
+		 */
+		HASHING("hashing");
+
+		// Private Final Data Members
+		private final String jsonName;
+
+		Phase(String jsonName) {
+			this.jsonName = jsonName;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.bind.DatatypeConverter;
+
+
+/**
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class ChecksumUtil {
+
+	// Private Constants
+	private static final String CHECKSUM_ALGORITHM = "SHA-1";
+
+	private ChecksumUtil() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns the hexadecimal SHA-1 checksum of the file's content. The checksum of a directory is the checksum of the
+	 * relative paths and the content of the regular files in it, in the order of their paths.
+	 */
+	/* package-private */ static String getChecksum(File file) throws IOException {
+
+		MessageDigest messageDigest = newMessageDigest(CHECKSUM_ALGORITHM);
+		byte[] data = new byte[(1024 * 64)];
+
+		if (file.isDirectory()) {
+
+			Path directory = file.toPath();
+			List<String> relativePaths = new ArrayList<String>();
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+					@Override
+					public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+
+						if (attrs.isRegularFile()) {
+							relativePaths.add(directory.relativize(path).toString().replace(File.separatorChar, '/'));
+						}
+
+						return FileVisitResult.CONTINUE;
+					}
+				});
+
+			Collections.sort(relativePaths);
+
+			for (String relativePath : relativePaths) {
+
+				messageDigest.update(relativePath.getBytes(StandardCharsets.UTF_8));
+				messageDigest.update((byte) 0);
+				update(messageDigest, directory.resolve(relativePath).toFile(), data);
+			}
+		}
+		else {
+			update(messageDigest, file, data);
+		}
+
+		return DatatypeConverter.printHexBinary(messageDigest.digest());
+	}
+
+	/**
+	 * Returns the hexadecimal SHA-1 checksum of the strings. Each string is followed by a line feed, so the checksum
+	 * depends on where each string ends.
+	 */
+	/* package-private */ static String getChecksum(Collection<String> strings) {
+
+		MessageDigest messageDigest;
+
+		try {
+			messageDigest = newMessageDigest(CHECKSUM_ALGORITHM);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		for (String string : strings) {
+
+			messageDigest.update(string.getBytes(StandardCharsets.UTF_8));
+			messageDigest.update((byte) '\n');
+		}
+
+		return DatatypeConverter.printHexBinary(messageDigest.digest());
+	}
+
+	/* package-private */ static MessageDigest newMessageDigest(String algorithm) throws IOException {
+
+		try {
+			return MessageDigest.getInstance(algorithm);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException("Unsupported digest algorithm " + algorithm + ".", e);
+		}
+	}
+
+	private static void update(MessageDigest messageDigest, File file, byte[] data) throws IOException {
+
+		InputStream inputStream = null;
+
+		try {
+
+			inputStream = new FileInputStream(file);
+
+			int lengthRead = inputStream.read(data, 0, data.length);
+
+			while (lengthRead > -1) {
+
+				messageDigest.update(data, 0, lengthRead);
+				lengthRead = inputStream.read(data, 0, data.length);
+			}
+		}
+		finally {
+			CloseableUtil.close(inputStream);
+		}
+	}
+}
@@ -36,25 +36,37 @@ import java.io.InputStream;
 			String classFileName = getClassFileName(clazz);
 			inputStream = clazz.getResourceAsStream(classFileName);
 
-			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+			return getBytes(inputStream);
+		}
+		finally {
+			CloseableUtil.close(inputStream);
+		}
+	}
 
-			byte[] data = new byte[(1024 * 16)];
-			int lengthRead = inputStream.read(data, 0, data.length);
+	/* package-private */ static byte[] getBytes(InputStream inputStream) throws IOException {
 
-			while (lengthRead > -1) {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 
-				byteArrayOutputStream.write(data, 0, lengthRead);
-				lengthRead = inputStream.read(data, 0, data.length);
-			}
+		byte[] data = new byte[(1024 * 16)];
+		int lengthRead = inputStream.read(data, 0, data.length);
 
-			return byteArrayOutputStream.toByteArray();
-		}
-		finally {
-			CloseableUtil.close(inputStream);
+		while (lengthRead > -1) {
+
+			byteArrayOutputStream.write(data, 0, lengthRead);
+			lengthRead = inputStream.read(data, 0, data.length);
 		}
+
+		return byteArrayOutputStream.toByteArray();
 	}
 
 	/* package-private */ static String getClassFileName(Class<?> clazz) {
 		return clazz.getSimpleName() + ".class";
 	}
+
+	/**
+	 * Returns the path of the class file of the top-level class within its jar.
+	 */
+	/* package-private */ static String getClassFilePath(Class<?> clazz) {
+		return clazz.getPackage().getName().replace(".", "/") + "/" + getClassFileName(clazz);
+	}
 }
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * A sorted index of the internal names (for example {@code com/liferay/faces/Foo$Bar}) of the classes contained in a
+ * jar. Class names are verified with a binary search against the index, so no class is ever loaded.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class ClassNameIndex {
+
+	// Private Constants
+	private static final String CLASS_FILE_EXTENSION = ".class";
+	private static final Map<String, Boolean> PLUGIN_CLASS_RESOURCES = new ConcurrentHashMap<String, Boolean>();
+
+	// Private Final Data Members
+	private final String[] internalClassNames;
+
+	/* package-private */ ClassNameIndex(Collection<String> internalClassNames) {
+
+		this.internalClassNames = internalClassNames.toArray(new String[internalClassNames.size()]);
+		Arrays.sort(this.internalClassNames);
+	}
+
+	/**
+	 * Returns the internal class name of a jar entry or null if the entry is not a class file. Entries under META-INF,
+	 * such as multi-release versions and module-info.class, are ignored.
+	 */
+	/* package-private */ static String getInternalClassName(String jarEntryName) {
+
+		if (jarEntryName.endsWith(CLASS_FILE_EXTENSION) &&
+				!jarEntryName.startsWith(LiferayFacesOSGiPluginMojo.META_INF)) {
+			return jarEntryName.substring(0, jarEntryName.length() - CLASS_FILE_EXTENSION.length());
+		}
+
+		return null;
+	}
+
+	/* package-private */ static String getInternalClassNameOfClassName(String className) {
+		return className.replace('.', '/');
+	}
+
+	/**
+	 * Returns true if the class is visible to the plugin's class loader, which was the parent of the class loaders
+	 * previously used to verify class names. Only the class file resource is looked up, so the class is never loaded.
+	 */
+	/* package-private */ static boolean isPluginClass(String className) {
+
+		Boolean pluginClass = PLUGIN_CLASS_RESOURCES.get(className);
+
+		if (pluginClass == null) {
+
+			ClassLoader classLoader = ClassNameIndex.class.getClassLoader();
+			pluginClass = classLoader.getResource(getInternalClassNameOfClassName(className) + CLASS_FILE_EXTENSION) !=
+				null;
+			PLUGIN_CLASS_RESOURCES.put(className, pluginClass);
+		}
+
+		return pluginClass;
+	}
+
+	/* package-private */ boolean contains(String className) {
+		return Arrays.binarySearch(internalClassNames, getInternalClassNameOfClassName(className)) > -1;
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.servlet.ServletContainerInitializer;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+
+
+/**
+ * A {@link ServletContainerInitializer} that starts the initializers of the import jar with the classes matching their
+ * {@link javax.servlet.annotation.HandlesTypes} annotations, which were found by the plugin at build time. This class
+ * has no HandlesTypes annotation and is the only initializer registered for the precomputed initializers, so the
+ * container does not scan the classes of the web application for them. The class is added to the generated jar along
+ * with the index of the initializers and their classes.
+ *
+ * @author  Kyle Stiemann
+ */
+public final class CompositeServletContainerInitializer implements ServletContainerInitializer {
+
+	// Package-Private Constants
+	/* package-private */ static final String SERVLET_CONTAINER_INITIALIZER_INDEX_PATH =
+		"META-INF/com.liferay.faces.osgi.plugin/servlet-container-initializers.index";
+
+	// Private Constants
+	private static final int MAGIC_NUMBER = 0x4C465343;
+	private static final int VERSION = 1;
+
+	/**
+	 * Reads an index that was written by {@link #toByteArray(Map)}. The stream is not closed.
+	 */
+	public static Map<String, List<String>> read(InputStream inputStream) throws IOException {
+
+		DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream));
+
+		if ((dataInputStream.readInt() != MAGIC_NUMBER) || (dataInputStream.readInt() != VERSION)) {
+			throw new IOException("Unsupported ServletContainerInitializer index.");
+		}
+
+		int size = dataInputStream.readInt();
+		Map<String, List<String>> handledClassNames = new LinkedHashMap<String, List<String>>();
+
+		for (int i = 0; i < size; i++) {
+
+			String servletContainerInitializerClassName = dataInputStream.readUTF();
+			int classNamesSize = dataInputStream.readInt();
+			List<String> classNames = new ArrayList<String>(classNamesSize);
+
+			for (int j = 0; j < classNamesSize; j++) {
+				classNames.add(dataInputStream.readUTF());
+			}
+
+			handledClassNames.put(servletContainerInitializerClassName, classNames);
+		}
+
+		return handledClassNames;
+	}
+
+	/**
+	 * Returns the serialized form of the names of the classes handled by each initializer. The initializers are written
+	 * in iteration order, since they are started in that order, and the class names are written in sorted order, so the
+	 * same classes always produce the same bytes.
+	 */
+	/* package-private */ static byte[] toByteArray(Map<String, Set<String>> handledClassNames) {
+
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+
+		try {
+
+			dataOutputStream.writeInt(MAGIC_NUMBER);
+			dataOutputStream.writeInt(VERSION);
+			dataOutputStream.writeInt(handledClassNames.size());
+
+			for (Map.Entry<String, Set<String>> entry : handledClassNames.entrySet()) {
+
+				Set<String> classNames = new TreeSet<String>(entry.getValue());
+				dataOutputStream.writeUTF(entry.getKey());
+				dataOutputStream.writeInt(classNames.size());
+
+				for (String className : classNames) {
+					dataOutputStream.writeUTF(className);
+				}
+			}
+
+			dataOutputStream.flush();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	/**
+	 * Starts each initializer of the index with the handled classes that can be loaded by the class loader of the web
+	 * application, or with null if there are none, as the container would.
+	 */
+	@Override
+	public void onStartup(Set<Class<?>> classes, ServletContext servletContext) throws ServletException {
+
+		InputStream inputStream = CompositeServletContainerInitializer.class.getClassLoader().getResourceAsStream(
+				SERVLET_CONTAINER_INITIALIZER_INDEX_PATH);
+
+		if (inputStream == null) {
+			return;
+		}
+
+		Map<String, List<String>> handledClassNames;
+
+		try {
+			handledClassNames = read(inputStream);
+		}
+		catch (IOException e) {
+			throw new ServletException("Failed to read " + SERVLET_CONTAINER_INITIALIZER_INDEX_PATH + ".", e);
+		}
+		finally {
+
+			try {
+				inputStream.close();
+			}
+			catch (IOException e) {
+				// Do nothing.
+			}
+		}
+
+		ClassLoader classLoader = servletContext.getClassLoader();
+
+		if (classLoader == null) {
+			classLoader = CompositeServletContainerInitializer.class.getClassLoader();
+		}
+
+		for (Map.Entry<String, List<String>> entry : handledClassNames.entrySet()) {
+
+			String servletContainerInitializerClassName = entry.getKey();
+			ServletContainerInitializer servletContainerInitializer;
+
+			try {
+
+				// Exceptions thrown by the constructor are wrapped in an InvocationTargetException.
+				Class<?> servletContainerInitializerClass = classLoader.loadClass(servletContainerInitializerClassName);
+				servletContainerInitializer = (ServletContainerInitializer) servletContainerInitializerClass
+					.getDeclaredConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException e) {
+				throw new ServletException("Failed to create " + servletContainerInitializerClassName + ".", e);
+			}
+
+			Set<Class<?>> handledClasses = new LinkedHashSet<Class<?>>();
+
+			for (String handledClassName : entry.getValue()) {
+
+				try {
+					handledClasses.add(classLoader.loadClass(handledClassName));
+				}
+				catch (ClassNotFoundException | LinkageError e) {
+					servletContext.log("Unable to load " + handledClassName + " for " +
+						servletContainerInitializerClassName + ".", e);
+				}
+			}
+
+			if (handledClasses.isEmpty()) {
+				handledClasses = null;
+			}
+
+			servletContainerInitializer.onStartup(handledClasses, servletContext);
+		}
+	}
+}
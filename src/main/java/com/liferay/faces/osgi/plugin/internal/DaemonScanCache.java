@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A cache of {@link FacesJarScanResult}s that lives as long as the plugin's class loader. A build daemon such as mvnd
+ * keeps the class loader of the plugin between builds, so the provided jars that did not change since a previous build
+ * of any project are not scanned again.
+ *
+ * <p>Results are keyed by the path of the jar and the scan configuration, and are validated with the size and last
+ * modified time of the jar. The checksum of the jar is only computed when they changed, and the result is kept if the
+ * content of the jar did not change. The most recently used results are strongly referenced up to the maximum size of
+ * the cache. Less recently used results are only softly referenced, so they are kept until the JVM runs low on memory.
+ * </p>
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class DaemonScanCache {
+
+	// Package-Private Constants
+	/* package-private */ static final int DEFAULT_MAX_SIZE = 512;
+
+	// Private Constants
+	private static final DaemonScanCache INSTANCE = new DaemonScanCache();
+
+	// Private Final Data Members
+	private final Map<String, CacheEntry> cacheEntries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+
+			// serialVersionUID
+			private static final long serialVersionUID = 6385211570402716381L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldestEntry) {
+
+				if (size() > maxSize) {
+
+					softCacheEntries.put(eldestEntry.getKey(),
+						new SoftCacheEntry(eldestEntry.getKey(), eldestEntry.getValue(), referenceQueue));
+
+					return true;
+				}
+
+				return false;
+			}
+		};
+	private final ReferenceQueue<CacheEntry> referenceQueue = new ReferenceQueue<CacheEntry>();
+	private final Map<String, SoftCacheEntry> softCacheEntries = new HashMap<String, SoftCacheEntry>();
+
+	// Private Data Members
+	private long hits;
+	private int maxSize = DEFAULT_MAX_SIZE;
+	private long misses;
+
+	private DaemonScanCache() {
+		// Instances are obtained through getInstance().
+	}
+
+	/**
+	 * Returns the cache of the JVM. The class is unique per plugin class realm, so plugins of different versions never
+	 * share a cache.
+	 */
+	/* package-private */ static DaemonScanCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Removes all the results from the cache.
+	 */
+	/* package-private */ synchronized void clear() {
+
+		cacheEntries.clear();
+		softCacheEntries.clear();
+		expungeClearedEntries();
+	}
+
+	/* package-private */ synchronized long getHits() {
+		return hits;
+	}
+
+	/* package-private */ synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of strongly referenced results.
+	 */
+	/* package-private */ synchronized int getSize() {
+		return cacheEntries.size();
+	}
+
+	/**
+	 * Returns the number of softly referenced results, including the results that were already reclaimed but not yet
+	 * expunged.
+	 */
+	/* package-private */ synchronized int getSoftSize() {
+		return softCacheEntries.size();
+	}
+
+	/**
+	 * Returns a view of the cache for the scan configuration, since results scanned with a different configuration may
+	 * differ.
+	 */
+	/* package-private */ FacesJarScanResultCache getView(String configuration) {
+		return new View(configuration);
+	}
+
+	/**
+	 * Sets the maximum number of strongly referenced results. The eldest results are demoted to soft references when
+	 * the cache is used next.
+	 */
+	/* package-private */ synchronized void setMaxSize(int maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+	}
+
+	private synchronized FacesJarScanResult get(String key, File facesJar) {
+
+		expungeClearedEntries();
+
+		CacheEntry cacheEntry = cacheEntries.get(key);
+
+		if (cacheEntry == null) {
+
+			SoftCacheEntry softCacheEntry = softCacheEntries.remove(key);
+
+			if (softCacheEntry != null) {
+				cacheEntry = softCacheEntry.get();
+			}
+		}
+
+		if (cacheEntry != null) {
+
+			FileStamp fileStamp = FileStamp.get(facesJar);
+
+			if ((cacheEntry.size != fileStamp.getSize()) || (cacheEntry.lastModified != fileStamp.getLastModified())) {
+
+				String checksum = null;
+
+				try {
+					checksum = cacheEntry.facesJarScanResult.getChecksum(fileStamp);
+				}
+				catch (IOException e) {
+					// The jar will be rescanned and the error will be reported then.
+				}
+
+				if (cacheEntry.checksum.equals(checksum)) {
+					cacheEntry = new CacheEntry(fileStamp, checksum, cacheEntry.facesJarScanResult);
+				}
+				else {
+					cacheEntry = null;
+				}
+			}
+		}
+
+		if (cacheEntry == null) {
+
+			cacheEntries.remove(key);
+			misses++;
+
+			return null;
+		}
+
+		// Promotes the result to the most recently used, strongly referenced result.
+		cacheEntries.put(key, cacheEntry);
+		hits++;
+
+		return cacheEntry.facesJarScanResult;
+	}
+
+	/**
+	 * Returns the checksum of the entry of the key if it was recorded with the same stamp, or null otherwise.
+	 */
+	private synchronized String getChecksum(String key, FileStamp fileStamp) {
+
+		CacheEntry cacheEntry = cacheEntries.get(key);
+
+		if (cacheEntry == null) {
+
+			SoftCacheEntry softCacheEntry = softCacheEntries.get(key);
+
+			if (softCacheEntry != null) {
+				cacheEntry = softCacheEntry.get();
+			}
+		}
+
+		if ((cacheEntry == null) || (cacheEntry.size != fileStamp.getSize()) ||
+				(cacheEntry.lastModified != fileStamp.getLastModified())) {
+			return null;
+		}
+
+		return cacheEntry.checksum;
+	}
+
+	private synchronized void put(String key, CacheEntry cacheEntry) {
+
+		expungeClearedEntries();
+		softCacheEntries.remove(key);
+		cacheEntries.put(key, cacheEntry);
+	}
+
+	private void expungeClearedEntries() {
+
+		Reference<? extends CacheEntry> reference = referenceQueue.poll();
+
+		while (reference != null) {
+
+			SoftCacheEntry softCacheEntry = (SoftCacheEntry) reference;
+			softCacheEntries.remove(softCacheEntry.key, softCacheEntry);
+			reference = referenceQueue.poll();
+		}
+
+		// Demote the eldest results if the maximum size was lowered.
+		Iterator<Map.Entry<String, CacheEntry>> iterator = cacheEntries.entrySet().iterator();
+
+		while ((cacheEntries.size() > maxSize) && iterator.hasNext()) {
+
+			Map.Entry<String, CacheEntry> eldestEntry = iterator.next();
+			softCacheEntries.put(eldestEntry.getKey(),
+				new SoftCacheEntry(eldestEntry.getKey(), eldestEntry.getValue(), referenceQueue));
+			iterator.remove();
+		}
+	}
+
+	private static final class CacheEntry {
+
+		// Private Final Data Members
+		private final String checksum;
+		private final FacesJarScanResult facesJarScanResult;
+		private final long lastModified;
+		private final long size;
+
+		private CacheEntry(FileStamp fileStamp, String checksum, FacesJarScanResult facesJarScanResult) {
+
+			this.size = fileStamp.getSize();
+			this.lastModified = fileStamp.getLastModified();
+			this.checksum = checksum;
+			this.facesJarScanResult = facesJarScanResult;
+		}
+	}
+
+	private static final class SoftCacheEntry extends SoftReference<CacheEntry> {
+
+		// Private Final Data Members
+		private final String key;
+
+		private SoftCacheEntry(String key, CacheEntry cacheEntry, ReferenceQueue<CacheEntry> referenceQueue) {
+
+			super(cacheEntry, referenceQueue);
+			this.key = key;
+		}
+	}
+
+	private final class View implements FacesJarScanResultCache {
+
+		// Private Final Data Members
+		private final String configuration;
+
+		private View(String configuration) {
+			this.configuration = configuration;
+		}
+
+		@Override
+		public FacesJarScanResult get(File facesJar) {
+			return DaemonScanCache.this.get(getKey(facesJar), facesJar);
+		}
+
+		@Override
+		public void put(FacesJarScanResult facesJarScanResult) throws IOException {
+
+			// Read the size and last modified time before hashing so that a concurrent modification invalidates the
+			// entry.
+			File facesJar = facesJarScanResult.getFacesJar();
+			FileStamp fileStamp = FileStamp.get(facesJar);
+			String key = getKey(facesJar);
+
+			// A result that another cache found for an unchanged jar reuses the checksum of the recorded entry.
+			String checksum = getChecksum(key, fileStamp);
+
+			if (checksum == null) {
+				checksum = facesJarScanResult.getChecksum(fileStamp);
+			}
+
+			DaemonScanCache.this.put(key, new CacheEntry(fileStamp, checksum, facesJarScanResult));
+		}
+
+		private String getKey(File facesJar) {
+			return facesJar.getAbsolutePath() + "|" + configuration;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+
+/**
+ * Finds the classes that are annotated with a Faces annotation such as {@code @FacesComponent}, so that their packages
+ * are imported and the runtime does not need to scan the provided jars for them.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class FacesAnnotationUtil {
+
+	// Package-Private Constants
+	/* package-private */ static final String FACES_ANNOTATION_INDEX_PATH = LiferayFacesOSGiPluginMojo.META_INF +
+		LiferayFacesOSGiPluginMojo.PLUGIN_ARTIFACT_ID + "/faces-annotations.index";
+
+	// Private Constants
+	private static final Map<String, String> FACES_ANNOTATION_CLASS_NAMES;
+	private static final byte[] FACES_PACKAGE_DESCRIPTOR_PREFIX = "Ljavax/faces/".getBytes(StandardCharsets.UTF_8);
+
+	static {
+
+		Map<String, String> facesAnnotationClassNames = new HashMap<String, String>();
+
+		for (String facesAnnotationClassName :
+				Arrays.asList("javax.faces.component.FacesComponent", "javax.faces.component.behavior.FacesBehavior",
+					"javax.faces.convert.FacesConverter", "javax.faces.render.FacesBehaviorRenderer",
+					"javax.faces.render.FacesRenderer", "javax.faces.validator.FacesValidator")) {
+			facesAnnotationClassNames.put(Type.getObjectType(facesAnnotationClassName.replace('.', '/'))
+				.getDescriptor(), facesAnnotationClassName);
+		}
+
+		FACES_ANNOTATION_CLASS_NAMES = Collections.unmodifiableMap(facesAnnotationClassNames);
+	}
+
+	private FacesAnnotationUtil() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns the name of the Faces annotation of the class, or null if the class is not annotated with a Faces
+	 * annotation. Classes whose constant pool does not mention the javax.faces package are rejected without being
+	 * parsed, and only the class header and annotations of the other classes are read since their code is skipped.
+	 *
+	 * @throws  IllegalArgumentException  if the class file cannot be parsed.
+	 */
+	/* package-private */ static String getFacesAnnotationClassName(byte[] classBytes) {
+
+		if (!contains(classBytes, FACES_PACKAGE_DESCRIPTOR_PREFIX)) {
+			return null;
+		}
+
+		FacesAnnotationClassVisitorImpl facesAnnotationClassVisitorImpl = new FacesAnnotationClassVisitorImpl();
+		new ClassReader(classBytes).accept(facesAnnotationClassVisitorImpl,
+			ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+		return facesAnnotationClassVisitorImpl.facesAnnotationClassName;
+	}
+
+	private static boolean contains(byte[] bytes, byte[] subsequence) {
+
+		int end = bytes.length - subsequence.length;
+
+		for (int i = 0; i <= end; i++) {
+
+			int j = 0;
+
+			while ((j < subsequence.length) && (bytes[i + j] == subsequence[j])) {
+				j++;
+			}
+
+			if (j == subsequence.length) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the content of the Faces annotation index resource for the annotated classes, which maps each class name
+	 * to the name of its Faces annotation. For each Faces annotation that is used, the index contains a line with the
+	 * name of the annotation prefixed with <code>@</code>, followed by one line for each class name annotated with it.
+	 * The annotations and class names are sorted, so the same classes always produce the same index.
+	 */
+	/* package-private */ static byte[] getFacesAnnotationIndex(Map<String, String> annotatedClassNames) {
+
+		Map<String, Set<String>> classNamesByAnnotation = new TreeMap<String, Set<String>>();
+
+		for (Map.Entry<String, String> annotatedClassName : annotatedClassNames.entrySet()) {
+
+			Set<String> classNames = classNamesByAnnotation.get(annotatedClassName.getValue());
+
+			if (classNames == null) {
+
+				classNames = new TreeSet<String>();
+				classNamesByAnnotation.put(annotatedClassName.getValue(), classNames);
+			}
+
+			classNames.add(annotatedClassName.getKey());
+		}
+
+		StringBuilder facesAnnotationIndex = new StringBuilder();
+
+		for (Map.Entry<String, Set<String>> entry : classNamesByAnnotation.entrySet()) {
+
+			facesAnnotationIndex.append('@').append(entry.getKey()).append('\n');
+
+			for (String className : entry.getValue()) {
+				facesAnnotationIndex.append(className).append('\n');
+			}
+		}
+
+		return facesAnnotationIndex.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static final class FacesAnnotationClassVisitorImpl extends ClassVisitor {
+
+		// Private Data Members
+		private String facesAnnotationClassName;
+
+		private FacesAnnotationClassVisitorImpl() {
+			super(Opcodes.ASM5);
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+
+			if (visible && (facesAnnotationClassName == null)) {
+				facesAnnotationClassName = FACES_ANNOTATION_CLASS_NAMES.get(descriptor);
+			}
+
+			return null;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * The entries of a provided Faces jar or of an exploded Faces jar directory, such as the target/classes directory of
+ * another module of the reactor. Entries are identified by their index and named like jar entries, with '/' separators
+ * relative to the root of the jar or directory.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ interface FacesArchive extends Closeable {
+
+	/**
+	 * Returns the entries of the *.class files outside META-INF.
+	 */
+	int[] getClassEntries() throws IOException;
+
+	/**
+	 * Returns the entries of the META-INF/faces-config.xml, META-INF/**.faces-config.xml and META-INF/**.taglib.xml
+	 * descriptors.
+	 */
+	int[] getDescriptorEntries() throws IOException;
+
+	/**
+	 * Returns the number of entries that were inspected to find the descriptor and class entries so far.
+	 */
+	long getInspectedEntryCount();
+
+	byte[] getBytes(int entry) throws IOException;
+
+	/**
+	 * Returns a stream of the content of the entry, which is read in chunks instead of being held in memory as a
+	 * whole.
+	 */
+	InputStream getInputStream(int entry) throws IOException;
+
+	String getName(int entry);
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * An index of the components, converters, validators, behaviors, renderers and tags declared by the faces-config.xml
+ * and *.taglib.xml files of the provided Faces jars. The index is built by the plugin and added to the generated jar
+ * along with this class, so that it can be loaded at runtime with a single read instead of parsing every descriptor.
+ *
+ * @author  Kyle Stiemann
+ */
+public final class FacesDescriptorIndex {
+
+	// Package-Private Constants
+	/* package-private */ static final String BEHAVIOR = "behavior";
+	/* package-private */ static final String COMPONENT = "component";
+	/* package-private */ static final String CONVERTER = "converter";
+	/* package-private */ static final String CONVERTER_FOR_CLASS = "converter-for-class";
+	/* package-private */ static final String DEFAULT_RENDER_KIT_ID = "HTML_BASIC";
+	/* package-private */ static final String FACES_DESCRIPTOR_INDEX_PATH = "META-INF/com.liferay.faces.osgi.plugin/" +
+		"faces-descriptors.index";
+	/* package-private */ static final String RENDERER = "renderer";
+	/* package-private */ static final String TAG_COMPONENT_TYPE = "tag-component-type";
+	/* package-private */ static final String TAG_HANDLER = "tag-handler";
+	/* package-private */ static final String TAG_RENDERER_TYPE = "tag-renderer-type";
+	/* package-private */ static final String VALIDATOR = "validator";
+
+	// Private Constants
+	private static final int MAGIC_NUMBER = 0x4C464449;
+	private static final int VERSION = 1;
+
+	// Private Final Data Members
+	private final Map<String, String> mappings;
+
+	// Private Data Members
+	private static FacesDescriptorIndex instance;
+
+	private FacesDescriptorIndex(Map<String, String> mappings) {
+		this.mappings = Collections.unmodifiableMap(mappings);
+	}
+
+	/**
+	 * Returns the index contained in the jar of this class, or an empty index if the jar does not contain a readable
+	 * index. The index is read on first use.
+	 */
+	public static synchronized FacesDescriptorIndex getInstance() {
+
+		if (instance == null) {
+
+			FacesDescriptorIndex facesDescriptorIndex = new FacesDescriptorIndex(new HashMap<String, String>());
+			InputStream inputStream = FacesDescriptorIndex.class.getClassLoader().getResourceAsStream(
+					FACES_DESCRIPTOR_INDEX_PATH);
+
+			if (inputStream != null) {
+
+				try {
+					facesDescriptorIndex = read(inputStream);
+				}
+				catch (IOException e) {
+					// An unreadable index is treated as an empty index, so descriptors are parsed as usual.
+				}
+				finally {
+
+					try {
+						inputStream.close();
+					}
+					catch (IOException e) {
+						// Do nothing.
+					}
+				}
+			}
+
+			instance = facesDescriptorIndex;
+		}
+
+		return instance;
+	}
+
+	/* package-private */ static String getKey(String category, String... keyParts) {
+
+		StringBuilder key = new StringBuilder(category);
+
+		for (String keyPart : keyParts) {
+			key.append(':').append(keyPart);
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * Reads an index that was written by {@link #toByteArray(Map)}. The stream is not closed.
+	 */
+	public static FacesDescriptorIndex read(InputStream inputStream) throws IOException {
+
+		DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream));
+
+		if ((dataInputStream.readInt() != MAGIC_NUMBER) || (dataInputStream.readInt() != VERSION)) {
+			throw new IOException("Unsupported Faces descriptor index.");
+		}
+
+		int size = dataInputStream.readInt();
+		Map<String, String> mappings = new HashMap<String, String>((size * 4 / 3) + 1);
+
+		for (int i = 0; i < size; i++) {
+			mappings.put(dataInputStream.readUTF(), dataInputStream.readUTF());
+		}
+
+		return new FacesDescriptorIndex(mappings);
+	}
+
+	/**
+	 * Returns the serialized form of the mappings, which map keys returned by {@link #getKey(String, String...)} to
+	 * values. The mappings are written in sorted order, so the same mappings always produce the same bytes.
+	 */
+	/* package-private */ static byte[] toByteArray(Map<String, String> mappings) {
+
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+
+		try {
+
+			dataOutputStream.writeInt(MAGIC_NUMBER);
+			dataOutputStream.writeInt(VERSION);
+			dataOutputStream.writeInt(mappings.size());
+
+			for (Map.Entry<String, String> mapping : new TreeMap<String, String>(mappings).entrySet()) {
+
+				dataOutputStream.writeUTF(mapping.getKey());
+				dataOutputStream.writeUTF(mapping.getValue());
+			}
+
+			dataOutputStream.flush();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	public String getBehaviorClassName(String behaviorId) {
+		return mappings.get(getKey(BEHAVIOR, behaviorId));
+	}
+
+	public String getComponentClassName(String componentType) {
+		return mappings.get(getKey(COMPONENT, componentType));
+	}
+
+	public String getConverterClassName(String converterId) {
+		return mappings.get(getKey(CONVERTER, converterId));
+	}
+
+	public String getConverterClassNameForClass(String forClassName) {
+		return mappings.get(getKey(CONVERTER_FOR_CLASS, forClassName));
+	}
+
+	public String getRendererClassName(String componentFamily, String rendererType) {
+		return getRendererClassName(DEFAULT_RENDER_KIT_ID, componentFamily, rendererType);
+	}
+
+	public String getRendererClassName(String renderKitId, String componentFamily, String rendererType) {
+		return mappings.get(getKey(RENDERER, renderKitId, componentFamily, rendererType));
+	}
+
+	/**
+	 * Returns the class name of the component of the tag, which is resolved through the component type of the tag.
+	 */
+	public String getTagComponentClassName(String namespace, String tagName) {
+
+		String componentType = getTagComponentType(namespace, tagName);
+
+		if (componentType == null) {
+			return null;
+		}
+
+		return getComponentClassName(componentType);
+	}
+
+	public String getTagComponentType(String namespace, String tagName) {
+		return mappings.get(getKey(TAG_COMPONENT_TYPE, namespace, tagName));
+	}
+
+	public String getTagHandlerClassName(String namespace, String tagName) {
+		return mappings.get(getKey(TAG_HANDLER, namespace, tagName));
+	}
+
+	public String getTagRendererType(String namespace, String tagName) {
+		return mappings.get(getKey(TAG_RENDERER_TYPE, namespace, tagName));
+	}
+
+	public String getValidatorClassName(String validatorId) {
+		return mappings.get(getKey(VALIDATOR, validatorId));
+	}
+
+	public boolean isEmpty() {
+		return mappings.isEmpty();
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * The entries of an exploded Faces jar directory, such as the target/classes directory that another module of the
+ * reactor resolves to before it is packaged. The directory is walked in parallel with one fork-join task per
+ * subdirectory. The descriptors are found by walking META-INF only, and the rest of the directory is only walked when
+ * the class entries are requested, so a directory without descriptors is rejected after walking its META-INF unless
+ * Faces annotations are scanned. Symbolic links are not followed.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class FacesDirectoryArchive implements FacesArchive {
+
+	// Private Constants
+	private static final String CLASS_FILE_EXTENSION = ".class";
+	private static final String FACES_CONFIG_XML_EXTENSION = "." + LiferayFacesOSGiPluginMojo.FACES_CONFIG_XML;
+	private static final String META_INF_DIRECTORY_NAME = "META-INF";
+	private static final String TAGLIB_XML_EXTENSION = ".taglib.xml";
+
+	// Private Final Data Members
+	private final Path directory;
+	private final LongAdder inspectedEntryCount;
+	private final List<String> names;
+
+	private FacesDirectoryArchive(Path directory) {
+
+		this.directory = directory;
+		this.inspectedEntryCount = new LongAdder();
+		this.names = new ArrayList<String>();
+	}
+
+	/* package-private */ static FacesDirectoryArchive open(File facesJarDirectory) throws IOException {
+
+		if (!facesJarDirectory.isDirectory()) {
+			throw new NoSuchFileException(facesJarDirectory.getPath(), null, "Not a directory.");
+		}
+
+		return new FacesDirectoryArchive(facesJarDirectory.toPath());
+	}
+
+	private static boolean isDescriptor(String name) {
+		return LiferayFacesOSGiPluginMojo.META_INF_FACES_CONFIG_XML.equals(name) ||
+			name.endsWith(FACES_CONFIG_XML_EXTENSION) || name.endsWith(TAGLIB_XML_EXTENSION);
+	}
+
+	@Override
+	public void close() {
+		// no-op
+	}
+
+	@Override
+	public byte[] getBytes(int entry) throws IOException {
+		return Files.readAllBytes(directory.resolve(names.get(entry)));
+	}
+
+	@Override
+	public int[] getClassEntries() throws IOException {
+		return walk(directory, "", true);
+	}
+
+	@Override
+	public int[] getDescriptorEntries() throws IOException {
+
+		Path metaInfDirectory = directory.resolve(META_INF_DIRECTORY_NAME);
+
+		if (!Files.isDirectory(metaInfDirectory, LinkOption.NOFOLLOW_LINKS)) {
+			return new int[0];
+		}
+
+		return walk(metaInfDirectory, LiferayFacesOSGiPluginMojo.META_INF, false);
+	}
+
+	/**
+	 * Returns the number of files and directories that were visited so far.
+	 */
+	@Override
+	public long getInspectedEntryCount() {
+		return inspectedEntryCount.sum();
+	}
+
+	@Override
+	public InputStream getInputStream(int entry) throws IOException {
+		return Files.newInputStream(directory.resolve(names.get(entry)));
+	}
+
+	@Override
+	public String getName(int entry) {
+		return names.get(entry);
+	}
+
+	/**
+	 * Walks the directory in parallel and returns the new entries of the class files (or the descriptors) that it
+	 * contains. The entries are sorted by name so that the entries (and the first declaration of each descriptor
+	 * mapping) do not depend on the order in which the file system lists the files.
+	 */
+	private int[] walk(Path walkDirectory, String prefix, boolean classFiles) throws IOException {
+
+		List<String> walkedNames;
+
+		try {
+			walkedNames = new WalkTask(walkDirectory, prefix, classFiles).invoke();
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		Collections.sort(walkedNames);
+
+		int[] entries = new int[walkedNames.size()];
+
+		for (int i = 0; i < entries.length; i++) {
+
+			entries[i] = names.size();
+			names.add(walkedNames.get(i));
+		}
+
+		return entries;
+	}
+
+	private final class WalkTask extends RecursiveTask<List<String>> {
+
+		// serialVersionUID
+		private static final long serialVersionUID = 5104398217431528713L;
+
+		// Private Final Data Members
+		private final boolean classFiles;
+		private final Path walkDirectory;
+		private final String prefix;
+
+		private WalkTask(Path walkDirectory, String prefix, boolean classFiles) {
+
+			this.walkDirectory = walkDirectory;
+			this.prefix = prefix;
+			this.classFiles = classFiles;
+		}
+
+		@Override
+		protected List<String> compute() {
+
+			List<String> walkedNames = new ArrayList<String>();
+			List<WalkTask> walkTasks = new ArrayList<WalkTask>();
+			DirectoryStream<Path> directoryStream = null;
+
+			try {
+
+				directoryStream = Files.newDirectoryStream(walkDirectory);
+
+				for (Path path : directoryStream) {
+
+					inspectedEntryCount.increment();
+
+					String name = prefix + path.getFileName().toString();
+					BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+							LinkOption.NOFOLLOW_LINKS);
+
+					if (attributes.isDirectory()) {
+
+						// META-INF only contains descriptors, multi-release versions and module-info.class.
+						if (!classFiles || !LiferayFacesOSGiPluginMojo.META_INF.equals(name + "/")) {
+
+							WalkTask walkTask = new WalkTask(path, name + "/", classFiles);
+							walkTask.fork();
+							walkTasks.add(walkTask);
+						}
+					}
+					else if (attributes.isRegularFile() &&
+							(classFiles ? name.endsWith(CLASS_FILE_EXTENSION) : isDescriptor(name))) {
+						walkedNames.add(name);
+					}
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			finally {
+				CloseableUtil.close(directoryStream);
+			}
+
+			for (WalkTask walkTask : walkTasks) {
+				walkedNames.addAll(walkTask.join());
+			}
+
+			return walkedNames;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * The entries of a provided Faces jar. Only the central directory of the jar is mapped, and the descriptor and class
+ * entries are selected by comparing the bytes of their names, so no entry name is decoded unless it is requested.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class FacesJarArchive implements FacesArchive {
+
+	// Private Constants
+	private static final int BUFFER_SIZE = 8192;
+	private static final byte[] CLASS_FILE_EXTENSION = ".class".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] FACES_CONFIG_XML_EXTENSION = ("." + LiferayFacesOSGiPluginMojo.FACES_CONFIG_XML)
+		.getBytes(StandardCharsets.UTF_8);
+	private static final byte[] META_INF = LiferayFacesOSGiPluginMojo.META_INF.getBytes(StandardCharsets.UTF_8);
+	private static final byte[] META_INF_FACES_CONFIG_XML = LiferayFacesOSGiPluginMojo.META_INF_FACES_CONFIG_XML
+		.getBytes(StandardCharsets.UTF_8);
+	private static final byte[] TAGLIB_XML_EXTENSION = ".taglib.xml".getBytes(StandardCharsets.UTF_8);
+
+	// Private Final Data Members
+	private final ZipCentralDirectory zipCentralDirectory;
+
+	private FacesJarArchive(ZipCentralDirectory zipCentralDirectory) {
+		this.zipCentralDirectory = zipCentralDirectory;
+	}
+
+	/* package-private */ static FacesJarArchive open(File facesJar) throws IOException {
+		return new FacesJarArchive(ZipCentralDirectory.open(facesJar));
+	}
+
+	@Override
+	public void close() throws IOException {
+		zipCentralDirectory.close();
+	}
+
+	@Override
+	public byte[] getBytes(int entry) throws IOException {
+		return zipCentralDirectory.getBytes(entry);
+	}
+
+	@Override
+	public int[] getClassEntries() {
+
+		int entryCount = zipCentralDirectory.getEntryCount();
+		int[] classEntries = new int[entryCount];
+		int classEntryCount = 0;
+
+		for (int entry = 0; entry < entryCount; entry++) {
+
+			if (zipCentralDirectory.nameEndsWith(entry, CLASS_FILE_EXTENSION) &&
+					!zipCentralDirectory.nameStartsWith(entry, META_INF)) {
+				classEntries[classEntryCount++] = entry;
+			}
+		}
+
+		return Arrays.copyOf(classEntries, classEntryCount);
+	}
+
+	@Override
+	public int[] getDescriptorEntries() {
+
+		int entryCount = zipCentralDirectory.getEntryCount();
+		int[] descriptorEntries = new int[entryCount];
+		int descriptorEntryCount = 0;
+
+		for (int entry = 0; entry < entryCount; entry++) {
+
+			if (zipCentralDirectory.nameEquals(entry, META_INF_FACES_CONFIG_XML) ||
+					(zipCentralDirectory.nameStartsWith(entry, META_INF) &&
+						(zipCentralDirectory.nameEndsWith(entry, FACES_CONFIG_XML_EXTENSION) ||
+							zipCentralDirectory.nameEndsWith(entry, TAGLIB_XML_EXTENSION)))) {
+				descriptorEntries[descriptorEntryCount++] = entry;
+			}
+		}
+
+		return Arrays.copyOf(descriptorEntries, descriptorEntryCount);
+	}
+
+	/**
+	 * Returns the number of entries of the jar, since all of them are inspected to find the descriptors.
+	 */
+	@Override
+	public long getInspectedEntryCount() {
+		return zipCentralDirectory.getEntryCount();
+	}
+
+	@Override
+	public InputStream getInputStream(int entry) throws IOException {
+		return zipCentralDirectory.getInputStream(entry, BUFFER_SIZE);
+	}
+
+	@Override
+	public String getName(int entry) {
+		return zipCentralDirectory.getName(entry);
+	}
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+
+
+/**
+ * A persistent cache of the {@link FacesJarScanResult} of each Faces jar. Entries are keyed by the jar's absolute
+ * path and validated by its size and last modified time. If either has changed, the jar's content hash is compared to
+ * the cached hash before the entry is discarded, so a jar that was merely touched is not rescanned. The whole cache is
+ * discarded if it was written with a different scan configuration. Entries of the jars that were neither looked up
+ * nor added since the cache was loaded, such as removed jars or superseded versions of a jar, are dropped when the
+ * cache is saved.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class FacesJarScanCache implements FacesJarScanResultCache {
+
+	// Private Constants
+	private static final int MAGIC_NUMBER = 0x4C464F50;
+	private static final int VERSION = 5;
+
+	// Private Final Data Members
+	private final File cacheFile;
+	private final Map<String, CacheEntry> cacheEntries;
+	private final String configuration;
+	private final Set<String> usedPaths = new HashSet<String>();
+
+	// Private Data Members
+	private boolean modified;
+
+	private FacesJarScanCache(File cacheFile, String configuration, Map<String, CacheEntry> cacheEntries) {
+
+		this.cacheFile = cacheFile;
+		this.configuration = configuration;
+		this.cacheEntries = cacheEntries;
+	}
+
+	/* package-private */ static FacesJarScanCache load(File cacheFile, String configuration, Log log) {
+
+		Map<String, CacheEntry> cacheEntries = new LinkedHashMap<String, CacheEntry>();
+
+		if (cacheFile.isFile()) {
+
+			DataInputStream dataInputStream = null;
+
+			try {
+
+				dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+
+				if ((dataInputStream.readInt() == MAGIC_NUMBER) && (dataInputStream.readInt() == VERSION) &&
+						configuration.equals(dataInputStream.readUTF())) {
+
+					int cacheEntriesSize = dataInputStream.readInt();
+
+					for (int i = 0; i < cacheEntriesSize; i++) {
+
+						String path = dataInputStream.readUTF();
+						long size = dataInputStream.readLong();
+						long lastModified = dataInputStream.readLong();
+						String contentHash = dataInputStream.readUTF();
+						Set<String> classNames = readStrings(dataInputStream, new PackageTrie());
+						Set<String> unresolvedClassNames = readStrings(dataInputStream, new HashSet<String>());
+						Map<String, String> annotatedClassNames = readStringMap(dataInputStream);
+						Map<String, String> descriptorMappings = readStringMap(dataInputStream);
+						FacesJarScanResult facesJarScanResult = new FacesJarScanResult(new File(path), classNames,
+								unresolvedClassNames, annotatedClassNames, descriptorMappings, true);
+						facesJarScanResult.setChecksum(new FileStamp(size, lastModified), contentHash);
+						cacheEntries.put(path, new CacheEntry(size, lastModified, contentHash, facesJarScanResult));
+					}
+				}
+			}
+			catch (IOException e) {
+
+				cacheEntries.clear();
+
+				if (log != null) {
+					log.warn("Failed to read scan cache " + cacheFile + ". All Faces jars will be rescanned.", e);
+				}
+			}
+			finally {
+				CloseableUtil.close(dataInputStream);
+			}
+		}
+
+		return new FacesJarScanCache(cacheFile, configuration, cacheEntries);
+	}
+
+	private static Map<String, String> readStringMap(DataInputStream dataInputStream) throws IOException {
+
+		Map<String, String> stringMap = new LinkedHashMap<String, String>();
+		int size = dataInputStream.readInt();
+
+		for (int i = 0; i < size; i++) {
+			stringMap.put(dataInputStream.readUTF(), dataInputStream.readUTF());
+		}
+
+		return stringMap;
+	}
+
+	private static Set<String> readStrings(DataInputStream dataInputStream, Set<String> strings) throws IOException {
+
+		int size = dataInputStream.readInt();
+
+		for (int i = 0; i < size; i++) {
+			strings.add(dataInputStream.readUTF());
+		}
+
+		return strings;
+	}
+
+	private static void writeStringMap(DataOutputStream dataOutputStream, Map<String, String> stringMap)
+		throws IOException {
+
+		dataOutputStream.writeInt(stringMap.size());
+
+		for (Map.Entry<String, String> entry : stringMap.entrySet()) {
+
+			dataOutputStream.writeUTF(entry.getKey());
+			dataOutputStream.writeUTF(entry.getValue());
+		}
+	}
+
+	private static void writeStrings(DataOutputStream dataOutputStream, Set<String> strings) throws IOException {
+
+		dataOutputStream.writeInt(strings.size());
+
+		for (String string : strings) {
+			dataOutputStream.writeUTF(string);
+		}
+	}
+
+	@Override
+	public synchronized FacesJarScanResult get(File facesJar) {
+
+		String path = facesJar.getAbsolutePath();
+		CacheEntry cacheEntry = cacheEntries.get(path);
+		usedPaths.add(path);
+
+		if (cacheEntry == null) {
+			return null;
+		}
+
+		FileStamp fileStamp = FileStamp.get(facesJar);
+		long size = fileStamp.getSize();
+		long lastModified = fileStamp.getLastModified();
+
+		if ((cacheEntry.size != size) || (cacheEntry.lastModified != lastModified)) {
+
+			String contentHash = null;
+
+			try {
+				contentHash = cacheEntry.facesJarScanResult.getChecksum(fileStamp);
+			}
+			catch (IOException e) {
+				// The jar will be rescanned and the error will be reported then.
+			}
+
+			if (!cacheEntry.contentHash.equals(contentHash)) {
+
+				cacheEntries.remove(path);
+				modified = true;
+
+				return null;
+			}
+
+			cacheEntries.put(path, new CacheEntry(size, lastModified, contentHash, cacheEntry.facesJarScanResult));
+			modified = true;
+		}
+
+		return cacheEntry.facesJarScanResult;
+	}
+
+	@Override
+	public synchronized void put(FacesJarScanResult facesJarScanResult) throws IOException {
+
+		// Read the size and last modified time before hashing so that a concurrent modification invalidates the entry.
+		File facesJar = facesJarScanResult.getFacesJar();
+		FileStamp fileStamp = FileStamp.get(facesJar);
+		CacheEntry cacheEntry = cacheEntries.get(facesJar.getAbsolutePath());
+		usedPaths.add(facesJar.getAbsolutePath());
+
+		// A result that another cache found for an unchanged jar is already recorded, so the jar is not hashed and the
+		// cache is not rewritten.
+		if ((cacheEntry != null) && (cacheEntry.size == fileStamp.getSize()) &&
+				(cacheEntry.lastModified == fileStamp.getLastModified())) {
+
+			facesJarScanResult.setChecksum(fileStamp, cacheEntry.contentHash);
+
+			return;
+		}
+
+		String contentHash = facesJarScanResult.getChecksum(fileStamp);
+		cacheEntries.put(facesJar.getAbsolutePath(),
+			new CacheEntry(fileStamp.getSize(), fileStamp.getLastModified(), contentHash, facesJarScanResult));
+		modified = true;
+	}
+
+	/**
+	 * Drops the entries of the jars that were not used since the cache was loaded, then writes the cache to a temporary
+	 * file and moves it over the cache file so that an interrupted build never leaves a partially written cache behind.
+	 */
+	/* package-private */ synchronized void save() throws IOException {
+
+		if (cacheEntries.keySet().retainAll(usedPaths)) {
+			modified = true;
+		}
+
+		if (!modified) {
+			return;
+		}
+
+		File cacheDirectory = cacheFile.getParentFile();
+		cacheDirectory.mkdirs();
+
+		Path temporaryCacheFilePath = Files.createTempFile(cacheDirectory.toPath(), cacheFile.getName(), ".tmp");
+		DataOutputStream dataOutputStream = null;
+
+		try {
+
+			dataOutputStream = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(temporaryCacheFilePath.toFile())));
+			dataOutputStream.writeInt(MAGIC_NUMBER);
+			dataOutputStream.writeInt(VERSION);
+			dataOutputStream.writeUTF(configuration);
+			dataOutputStream.writeInt(cacheEntries.size());
+
+			for (Map.Entry<String, CacheEntry> entry : cacheEntries.entrySet()) {
+
+				CacheEntry cacheEntry = entry.getValue();
+				dataOutputStream.writeUTF(entry.getKey());
+				dataOutputStream.writeLong(cacheEntry.size);
+				dataOutputStream.writeLong(cacheEntry.lastModified);
+				dataOutputStream.writeUTF(cacheEntry.contentHash);
+				writeStrings(dataOutputStream, cacheEntry.facesJarScanResult.getClassNames());
+				writeStrings(dataOutputStream, cacheEntry.facesJarScanResult.getUnresolvedClassNames());
+				writeStringMap(dataOutputStream, cacheEntry.facesJarScanResult.getAnnotatedClassNames());
+				writeStringMap(dataOutputStream, cacheEntry.facesJarScanResult.getDescriptorMappings());
+			}
+
+			dataOutputStream.close();
+			dataOutputStream = null;
+			Files.move(temporaryCacheFilePath, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			modified = false;
+		}
+		finally {
+
+			CloseableUtil.close(dataOutputStream);
+			Files.deleteIfExists(temporaryCacheFilePath);
+		}
+	}
+
+	private static final class CacheEntry {
+
+		// Private Final Data Members
+		private final String contentHash;
+		private final FacesJarScanResult facesJarScanResult;
+		private final long lastModified;
+		private final long size;
+
+		private CacheEntry(long size, long lastModified, String contentHash, FacesJarScanResult facesJarScanResult) {
+
+			this.size = size;
+			this.lastModified = lastModified;
+			this.contentHash = contentHash;
+			this.facesJarScanResult = facesJarScanResult;
+		}
+	}
+}
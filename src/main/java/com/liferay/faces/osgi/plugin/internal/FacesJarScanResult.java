@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * The result of scanning a single Faces jar.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class FacesJarScanResult {
+
+	// Private Final Data Members
+	private final Map<String, String> annotatedClassNames;
+	private final PackageTrie classNames;
+	private final boolean complete;
+	private final Map<String, String> descriptorMappings;
+	private final File facesJar;
+	private final Set<String> unresolvedClassNames;
+
+	// Private Data Members
+	private String checksum;
+	private FileStamp checksumFileStamp;
+
+	/* package-private */ FacesJarScanResult(File facesJar, Set<String> classNames, Set<String> unresolvedClassNames,
+		Map<String, String> annotatedClassNames, Map<String, String> descriptorMappings, boolean complete) {
+
+		if (!(classNames instanceof PackageTrie)) {
+			classNames = new PackageTrie(classNames);
+		}
+
+		this.facesJar = facesJar;
+		this.classNames = (PackageTrie) classNames;
+		this.unresolvedClassNames = Collections.unmodifiableSet(unresolvedClassNames);
+		this.annotatedClassNames = Collections.unmodifiableMap(annotatedClassNames);
+
+		if (descriptorMappings == null) {
+			descriptorMappings = Collections.emptyMap();
+		}
+
+		this.descriptorMappings = Collections.unmodifiableMap(descriptorMappings);
+		this.complete = complete;
+	}
+
+	/**
+	 * Returns the names of the classes of the jar that are annotated with a Faces annotation, mapped to the name of the
+	 * annotation, in the order in which they were found. The map is empty if annotations were not scanned.
+	 */
+	/* package-private */ Map<String, String> getAnnotatedClassNames() {
+		return annotatedClassNames;
+	}
+
+	/**
+	 * Adds the class names extracted from the jar, including the unresolved class names, to the trie package by
+	 * package.
+	 */
+	/* package-private */ void addClassNames(PackageTrie classNames) {
+		classNames.addAll(this.classNames);
+	}
+
+	/**
+	 * Returns the checksum of the jar with the stamp that the caller read before calling this method, so that a
+	 * concurrent modification of the jar invalidates the cache entries that record them. The checksum is only computed
+	 * if it was not already computed or recorded for the same stamp, so every cache reuses a single checksum of each
+	 * version of the jar.
+	 */
+	/* package-private */ synchronized String getChecksum(FileStamp fileStamp) throws IOException {
+
+		if ((checksum == null) || !fileStamp.equals(checksumFileStamp)) {
+
+			checksum = ChecksumUtil.getChecksum(facesJar);
+			checksumFileStamp = fileStamp;
+		}
+
+		return checksum;
+	}
+
+	/**
+	 * Returns the class names extracted from the jar in the iteration order of a {@link PackageTrie}, including the
+	 * unresolved class names.
+	 */
+	/* package-private */ Set<String> getClassNames() {
+		return Collections.unmodifiableSet(classNames);
+	}
+
+	/**
+	 * Returns the descriptor mappings of the jar, keyed as described by {@link FacesDescriptorIndex}. The map is empty
+	 * if descriptors were not indexed.
+	 */
+	/* package-private */ Map<String, String> getDescriptorMappings() {
+		return descriptorMappings;
+	}
+
+	/* package-private */ File getFacesJar() {
+		return facesJar;
+	}
+
+	/**
+	 * Returns the class names that needed verification but were neither found in the jar nor visible to the plugin's
+	 * class loader. They are only imported if they are found in another Faces jar.
+	 */
+	/* package-private */ Set<String> getUnresolvedClassNames() {
+		return unresolvedClassNames;
+	}
+
+	/**
+	 * Records a checksum of the jar with the stamp that was read before it was computed, so that {@link
+	 * #getChecksum(FileStamp)} does not compute it again.
+	 */
+	/* package-private */ synchronized void setChecksum(FileStamp fileStamp, String checksum) {
+
+		this.checksumFileStamp = fileStamp;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Returns false if the jar or one of its descriptors could not be read, in which case the result must not be
+	 * cached.
+	 */
+	/* package-private */ boolean isComplete() {
+		return complete;
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+
+
+/**
+ * A cache of {@link FacesJarScanResult}s. Implementations must be safe to call from multiple threads.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ interface FacesJarScanResultCache {
+
+	/**
+	 * Returns the cached scan result of the jar or null if the jar has not been cached or has changed since it was
+	 * cached.
+	 */
+	FacesJarScanResult get(File facesJar);
+
+	/**
+	 * Caches the complete scan result of a jar.
+	 */
+	void put(FacesJarScanResult facesJarScanResult) throws IOException;
+}
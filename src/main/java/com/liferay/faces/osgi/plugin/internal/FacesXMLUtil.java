@@ -13,156 +13,1142 @@
  */
 package com.liferay.faces.osgi.plugin.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
 
 import javax.lang.model.SourceVersion;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathException;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.maven.plugin.logging.Log;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import org.xml.sax.SAXException;
-
 
 /**
  * @author  Kyle Stiemann
  */
 /* package-private */ final class FacesXMLUtil {
 
+	// Package-Private Constants
+	/* package-private */ static final int LOW_MEMORY_MAX_BUFFERED_CLASS_NAMES = 65536;
+	/* package-private */ static final int MAX_BUFFERED_CLASS_NAMES = 262144;
+
 	private FacesXMLUtil() {
 		throw new AssertionError();
 	}
 
-	/* package-private */ static Set<String> getClassNames(Set<File> facesJars, Log log) throws ParserConfigurationException,
-		XPathException {
+	/* package-private */ static Set<String> getClassNames(Set<File> facesJars, Log log) {
+		return getClassNames(facesJars, log, 1);
+	}
 
-		Set<String> classNames = new HashSet<String>();
+	/* package-private */ static Set<String> getClassNames(Set<File> facesJars, Log log, int scanThreads) {
+		return getClassNames(facesJars, log, scanThreads, false, Collections.emptyList(), null, null, null);
+	}
 
-		if (!facesJars.isEmpty()) {
+	/**
+	 * Returns the names of the classes referenced by the faces-config.xml and *.taglib.xml files of the Faces jars.
+	 * Jars found in one of the scan caches are not opened at all. The caches are searched in order, and a result found
+	 * in one cache is added to the preceding caches. When more than one scan thread is specified, the remaining jars
+	 * are scanned in parallel in a {@link ForkJoinPool}, and each thread uses its own parser. The results of each jar
+	 * are always merged in iteration order of the Faces jars, so the returned set is identical to the one returned by a
+	 * sequential, uncached scan. The returned set is a {@link PackageTrie}, which can be merged into another trie
+	 * package by package.
+	 *
+	 * <p>The class names found in *.taglib.xml files, and in faces-config.xml files if verifyFacesConfigClassNames is
+	 * true, are only returned if one of the Faces jars or the plugin's class loader contains the class. Class names
+	 * that are not found in their own jar are verified against a {@link MappedClassNameIndex} of all the Faces jars,
+	 * which is stored in the class name index file and only rebuilt when the Faces jars change. If the class name index
+	 * file is null, a temporary file is used.</p>
+	 *
+	 * <p>If the annotated class names map is not null, the class files of the Faces jars are also scanned for Faces
+	 * annotations. The annotated classes are added to the returned class names and to the map, which maps each class
+	 * name to the name of its Faces annotation. If the descriptor mappings map is not null, the components, converters,
+	 * validators, behaviors, renderers and tags declared by the descriptors are added to it as described by {@link
+	 * FacesDescriptorIndex}. The first declaration in iteration order of the Faces jars wins. The scan caches must only
+	 * contain results of the same kind of scan.</p>
+	 */
+	/* package-private */ static Set<String> getClassNames(Set<File> facesJars, Log log, int scanThreads,
+		boolean verifyFacesConfigClassNames, List<FacesJarScanResultCache> facesJarScanResultCaches,
+		File classNameIndexFile, Map<String, String> annotatedClassNames, Map<String, String> descriptorMappings) {
+		return getClassNames(facesJars, log, scanThreads, verifyFacesConfigClassNames, facesJarScanResultCaches,
+				classNameIndexFile, annotatedClassNames, descriptorMappings, new BuildReport());
+	}
 
-			DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-			XPathFactory xpathFactory = XPathFactory.newInstance();
-			XPath xPath = xpathFactory.newXPath();
-			XPathExpression xPathExpression = xPath.compile("//*[count(./*) = 0][normalize-space(text())]");
+	/**
+	 * Returns the names of the classes referenced by the Faces jars as described by {@link #getClassNames(Set, Log,
+	 * int, boolean, List, File, Map, Map)}, and records the phases and counts of the scan in the build report.
+	 */
+	/* package-private */ static Set<String> getClassNames(Set<File> facesJars, Log log, int scanThreads,
+		boolean verifyFacesConfigClassNames, List<FacesJarScanResultCache> facesJarScanResultCaches,
+		File classNameIndexFile, Map<String, String> annotatedClassNames, Map<String, String> descriptorMappings,
+		BuildReport buildReport) {
+		return getClassNames(facesJars, log, scanThreads, verifyFacesConfigClassNames, facesJarScanResultCaches,
+				classNameIndexFile, annotatedClassNames, descriptorMappings, buildReport, false);
+	}
 
-			for (File facesJar : facesJars) {
+	/**
+	 * Returns the names of the classes referenced by the Faces jars as described by {@link #getClassNames(Set, Log,
+	 * int, boolean, List, File, Map, Map, BuildReport)}. If lowMemory is true, the memory used by the scan does not
+	 * grow with the size of the descriptors or the number of classes in the jars:
+	 *
+	 * <ul>
+	 *   <li>Descriptors are parsed while they are inflated instead of being inflated into memory first.</li>
+	 *   <li>The class names of a jar are only kept if a descriptor of the jar references them.</li>
+	 *   <li>The {@link MappedClassNameIndex} of all the Faces jars is built one jar at a time from sorted runs that are
+	 *     spilled to disk every {@link #LOW_MEMORY_MAX_BUFFERED_CLASS_NAMES} class names instead of every {@link
+	 *     #MAX_BUFFERED_CLASS_NAMES}.</li>
+	 * </ul>
+	 *
+	 * <p>At most one class or descriptor of each jar is inflated at a time, so the number of scan threads bounds the
+	 * number of inflation buffers in use.</p>
+	 */
+	/* package-private */ static Set<String> getClassNames(Set<File> facesJars, Log log, int scanThreads,
+		boolean verifyFacesConfigClassNames, List<FacesJarScanResultCache> facesJarScanResultCaches,
+		File classNameIndexFile, Map<String, String> annotatedClassNames, Map<String, String> descriptorMappings,
+		BuildReport buildReport, boolean lowMemory) {
 
-				JarFile facesJarFile = null;
+		PackageTrie classNames = new PackageTrie();
 
-				try {
-					facesJarFile = new JarFile(facesJar);
-				}
-				catch (IOException e) {
+		if (facesJars.isEmpty()) {
+			return classNames;
+		}
+
+		List<File> facesJarList = new ArrayList<File>(facesJars);
+		buildReport.add(BuildReport.Count.JARS, facesJarList.size());
+
+		ForkJoinPool forkJoinPool = newForkJoinPool(scanThreads, facesJarList.size());
+
+		try {
+
+			List<FacesJarScanResult> facesJarScanResults = getFacesJarScanResults(facesJarList, log,
+					verifyFacesConfigClassNames, facesJarScanResultCaches, annotatedClassNames != null,
+					descriptorMappings != null, buildReport, lowMemory, forkJoinPool);
+			boolean unresolvedClassNames = false;
+
+			for (FacesJarScanResult facesJarScanResult : facesJarScanResults) {
+				unresolvedClassNames |= !facesJarScanResult.getUnresolvedClassNames().isEmpty();
+			}
+
+			long verificationStart = System.nanoTime();
+			MappedClassNameIndex mappedClassNameIndex = null;
+
+			if (unresolvedClassNames) {
+				mappedClassNameIndex = getMappedClassNameIndex(facesJarList, log, classNameIndexFile, forkJoinPool,
+						lowMemory);
+			}
 
-					CloseableUtil.close(facesJarFile);
-					log.error("Failed to convert " + facesJar.getName() +
-						" into JarFile. Unable to add imports from this Faces Jar.", e);
+			for (FacesJarScanResult facesJarScanResult : facesJarScanResults) {
+
+				Set<String> facesJarUnresolvedClassNames = facesJarScanResult.getUnresolvedClassNames();
+
+				// The class names of a jar without unresolved class names are merged package by package.
+				if (facesJarUnresolvedClassNames.isEmpty()) {
+
+					facesJarScanResult.addClassNames(classNames);
 
 					continue;
 				}
 
-				Enumeration<JarEntry> entries = facesJarFile.entries();
+				for (String className : facesJarScanResult.getClassNames()) {
+
+					if (!facesJarUnresolvedClassNames.contains(className) ||
+							((mappedClassNameIndex != null) && mappedClassNameIndex.contains(className))) {
+						classNames.add(className);
+					}
+				}
+			}
+
+			buildReport.addDuration(BuildReport.Phase.VERIFICATION, verificationStart);
+
+			for (FacesJarScanResult facesJarScanResult : facesJarScanResults) {
+
+				if (annotatedClassNames != null) {
+
+					for (Map.Entry<String, String> annotatedClassName :
+							facesJarScanResult.getAnnotatedClassNames().entrySet()) {
+
+						classNames.add(annotatedClassName.getKey());
+						annotatedClassNames.putIfAbsent(annotatedClassName.getKey(), annotatedClassName.getValue());
+					}
+				}
+
+				if (descriptorMappings != null) {
+
+					for (Map.Entry<String, String> descriptorMapping :
+							facesJarScanResult.getDescriptorMappings().entrySet()) {
+						descriptorMappings.putIfAbsent(descriptorMapping.getKey(), descriptorMapping.getValue());
+					}
+				}
+			}
+		}
+		finally {
+
+			if (forkJoinPool != null) {
+				forkJoinPool.shutdown();
+			}
+		}
 
-				while (entries.hasMoreElements()) {
+		return classNames;
+	}
 
-					JarEntry jarEntry = entries.nextElement();
-					String name = jarEntry.getName();
-					boolean facesConfig = LiferayFacesOSGiPluginMojo.META_INF_FACES_CONFIG_XML.equals(name) ||
-						(name.startsWith(LiferayFacesOSGiPluginMojo.META_INF) &&
-							name.endsWith("." + LiferayFacesOSGiPluginMojo.FACES_CONFIG_XML));
+	/**
+	 * Scans the Faces jars that are not found in the scan caches with up to scanThreads threads and caches their scan
+	 * results, without verifying or collecting their class names. This is used to scan the union of the Faces jars of
+	 * several projects once, so that {@link #getClassNames(Set, Log, int, boolean, List, File, Map, Map, BuildReport,
+	 * boolean)} finds every jar of each project in the caches. The scan must be of the same kind as the later scans.
+	 */
+	/* package-private */ static void scanFacesJars(Set<File> facesJars, Log log, int scanThreads,
+		boolean verifyFacesConfigClassNames, List<FacesJarScanResultCache> facesJarScanResultCaches,
+		boolean scanFacesAnnotations, boolean indexFacesDescriptors, BuildReport buildReport, boolean lowMemory) {
 
-					if (facesConfig ||
-							(name.startsWith(LiferayFacesOSGiPluginMojo.META_INF) && name.endsWith(".taglib.xml"))) {
+		List<File> facesJarList = new ArrayList<File>(facesJars);
+		buildReport.add(BuildReport.Count.JARS, facesJarList.size());
 
-						try {
+		ForkJoinPool forkJoinPool = newForkJoinPool(scanThreads, facesJarList.size());
 
-							ClassLoader classLoader = null;
+		try {
+			getFacesJarScanResults(facesJarList, log, verifyFacesConfigClassNames, facesJarScanResultCaches,
+				scanFacesAnnotations, indexFacesDescriptors, buildReport, lowMemory, forkJoinPool);
+		}
+		finally {
+
+			if (forkJoinPool != null) {
+				forkJoinPool.shutdown();
+			}
+		}
+	}
 
-							if (!facesConfig) {
-								classLoader = new URLClassLoader(new URL[] { facesJar.toURI().toURL() },
-										FacesXMLUtil.class.getClassLoader());
+	/**
+	 * Returns a new {@link XMLInputFactory} configured to parse Faces descriptors. {@link XMLInputFactory} instances
+	 * are not guaranteed to be thread-safe, so each scanning thread must use its own instance.
+	 */
+	/* package-private */ static XMLInputFactory newXMLInputFactory() {
+
+		XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+		// Never download the external DTDs referenced by old faces-config.xml files.
+		xmlInputFactory.setXMLResolver(new XMLResolver() {
+				@Override
+				public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+					return new ByteArrayInputStream(new byte[0]);
+				}
+			});
+
+		return xmlInputFactory;
+	}
+
+	/**
+	 * Returns the scan result of each jar in the order of the jars. Each result is taken from the first scan cache that
+	 * contains it, and is then added to every other cache. The other jars are scanned in the fork join pool,
+	 * or in the current thread if it is null, and their complete results are added to every cache.
+	 */
+	private static List<FacesJarScanResult> getFacesJarScanResults(List<File> facesJarList, Log log,
+		boolean verifyFacesConfigClassNames, List<FacesJarScanResultCache> facesJarScanResultCaches,
+		boolean scanFacesAnnotations, boolean indexFacesDescriptors, BuildReport buildReport, boolean lowMemory,
+		ForkJoinPool forkJoinPool) {
+
+		List<FacesJarScanResult> facesJarScanResults = new ArrayList<FacesJarScanResult>(facesJarList.size());
+		List<File> uncachedFacesJars = new ArrayList<File>();
+
+		for (File facesJar : facesJarList) {
+
+			FacesJarScanResult facesJarScanResult = null;
+
+			for (int i = 0; (facesJarScanResult == null) && (i < facesJarScanResultCaches.size()); i++) {
+
+				facesJarScanResult = facesJarScanResultCaches.get(i).get(facesJar);
+
+				if (facesJarScanResult != null) {
+
+					List<FacesJarScanResultCache> otherFacesJarScanResultCaches =
+						new ArrayList<FacesJarScanResultCache>(facesJarScanResultCaches);
+					otherFacesJarScanResultCaches.remove(i);
+					putFacesJarScanResult(otherFacesJarScanResultCaches, facesJarScanResult, log);
+				}
+			}
+
+			if (facesJarScanResult == null) {
+				uncachedFacesJars.add(facesJar);
+			}
+			else {
+				buildReport.add(BuildReport.Count.CACHED_JARS, 1);
+			}
+
+			facesJarScanResults.add(facesJarScanResult);
+		}
+
+		ThreadLocal<XMLInputFactory> xmlInputFactory = ThreadLocal.withInitial(FacesXMLUtil::newXMLInputFactory);
+		Iterator<FacesJarScanResult> uncachedFacesJarScanResults = map(uncachedFacesJars,
+				(File facesJar) -> {
+					return scan(facesJar, log, xmlInputFactory.get(), verifyFacesConfigClassNames, scanFacesAnnotations,
+							indexFacesDescriptors, buildReport, lowMemory);
+				}, forkJoinPool).iterator();
+
+		for (int i = 0; i < facesJarScanResults.size(); i++) {
+
+			if (facesJarScanResults.get(i) == null) {
+
+				FacesJarScanResult facesJarScanResult = uncachedFacesJarScanResults.next();
+				facesJarScanResults.set(i, facesJarScanResult);
+
+				if (facesJarScanResult.isComplete()) {
+					putFacesJarScanResult(facesJarScanResultCaches, facesJarScanResult, log);
+				}
+			}
+		}
+
+		return facesJarScanResults;
+	}
+
+	/**
+	 * Returns a fingerprint of the paths and {@link FileStamp}s of the jars.
+	 */
+	private static String getFingerprint(List<File> facesJars) {
+
+		List<String> facesJarDescriptions = new ArrayList<String>(facesJars.size());
+
+		for (File facesJar : facesJars) {
+			facesJarDescriptions.add(facesJar.getAbsolutePath() + "|" + FileStamp.get(facesJar));
+		}
+
+		Collections.sort(facesJarDescriptions);
+
+		return ChecksumUtil.getChecksum(facesJarDescriptions);
+	}
+
+	private static void addInternalClassNames(File facesJar, Log log, MappedClassNameIndex.Builder builder)
+		throws IOException {
+
+		FacesArchive facesArchive = null;
+
+		try {
+
+			int[] classEntries;
+
+			try {
+
+				facesArchive = openFacesArchive(facesJar);
+				classEntries = facesArchive.getClassEntries();
+			}
+			catch (IOException e) {
+
+				log.error("Failed to index the classes of " + facesJar.getName() + ".", e);
+
+				return;
+			}
+
+			for (int classEntry : classEntries) {
+				builder.add(ClassNameIndex.getInternalClassName(facesArchive.getName(classEntry)));
+			}
+		}
+		finally {
+			CloseableUtil.close(facesArchive);
+		}
+	}
+
+	private static MappedClassNameIndex getMappedClassNameIndex(List<File> facesJars, Log log,
+		File classNameIndexFile, ForkJoinPool forkJoinPool, boolean lowMemory) {
+
+		String fingerprint = getFingerprint(facesJars);
+		File indexFile = classNameIndexFile;
+
+		if (indexFile != null) {
+
+			MappedClassNameIndex mappedClassNameIndex = MappedClassNameIndex.load(indexFile, fingerprint);
+
+			if (mappedClassNameIndex != null) {
+				return mappedClassNameIndex;
+			}
+		}
+
+		try {
+
+			if (indexFile == null) {
+
+				indexFile = File.createTempFile(LiferayFacesOSGiPluginMojo.PLUGIN_ARTIFACT_ID, ".index");
+				indexFile.deleteOnExit();
+			}
+
+			// The class names of each jar are streamed into the builder, so only the buffered class names are held in
+			// memory. Unless lowMemory is true, the jars are indexed in parallel with a larger buffer.
+			MappedClassNameIndex.Builder builder;
+
+			if (lowMemory) {
+				builder = new MappedClassNameIndex.Builder(indexFile, LOW_MEMORY_MAX_BUFFERED_CLASS_NAMES);
+			}
+			else {
+				builder = new MappedClassNameIndex.Builder(indexFile, MAX_BUFFERED_CLASS_NAMES);
+			}
+
+			try {
+
+				if (lowMemory) {
+
+					for (File facesJar : facesJars) {
+						addInternalClassNames(facesJar, log, builder);
+					}
+				}
+				else {
+					FacesXMLUtil.<Void>map(facesJars, (File facesJar) -> {
+
+							try {
+								addInternalClassNames(facesJar, log, builder);
+							}
+							catch (IOException e) {
+								throw new UncheckedIOException(e);
 							}
 
-							classNames.addAll(getClassNames(facesJarFile, jarEntry, classLoader, documentBuilder,
-									xPathExpression));
+							return null;
+						}, forkJoinPool);
+				}
+
+				return builder.write(fingerprint);
+			}
+			finally {
+				CloseableUtil.close(builder);
+			}
+		}
+		catch (IOException | UncheckedIOException e) {
+
+			log.error("Failed to write the class name index " + indexFile +
+				". Class names will only be verified against their own jar.", e);
+
+			return null;
+		}
+	}
+
+	/**
+	 * Applies the function to each file and returns the results in the same order as the files. If a fork-join pool is
+	 * specified, the files are processed in parallel.
+	 */
+	private static <R> List<R> map(List<File> files, Function<File, R> function, ForkJoinPool forkJoinPool) {
+
+		if ((forkJoinPool != null) && (files.size() > 1)) {
+			return forkJoinPool.invoke(new FilesTask<R>(files, 0, files.size(), function));
+		}
+
+		List<R> results = new ArrayList<R>(files.size());
+
+		for (File file : files) {
+			results.add(function.apply(file));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Returns a pool of up to scanThreads threads for scanning the jars, or null if they are scanned by the current
+	 * thread.
+	 */
+	private static ForkJoinPool newForkJoinPool(int scanThreads, int facesJarCount) {
+
+		if ((scanThreads > 1) && (facesJarCount > 1)) {
+			return new ForkJoinPool(Math.min(scanThreads, facesJarCount));
+		}
+
+		return null;
+	}
+
+	/**
+	 * Opens the provided Faces jar, or the exploded Faces jar directory if the file is a directory.
+	 */
+	private static FacesArchive openFacesArchive(File facesJar) throws IOException {
+
+		if (facesJar.isDirectory()) {
+			return FacesDirectoryArchive.open(facesJar);
+		}
+
+		return FacesJarArchive.open(facesJar);
+	}
+
+	private static void putFacesJarScanResult(List<FacesJarScanResultCache> facesJarScanResultCaches,
+		FacesJarScanResult facesJarScanResult, Log log) {
+
+		for (FacesJarScanResultCache facesJarScanResultCache : facesJarScanResultCaches) {
+
+			try {
+				facesJarScanResultCache.put(facesJarScanResult);
+			}
+			catch (IOException e) {
+				log.warn("Failed to cache the scan result of " + facesJarScanResult.getFacesJar().getName() + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the result of scanning the jar. Candidate class names that need verification and are neither found in the
+	 * jar nor visible to the plugin's class loader are returned as unresolved class names, since they may be found in
+	 * another Faces jar. If scanFacesAnnotations is true, the classes of the jar that are annotated with a Faces
+	 * annotation are returned as well, and if indexFacesDescriptors is true, so are the descriptor mappings of the
+	 * jar.
+	 *
+	 * <p>The jar may be an exploded directory, which is scanned with the same rules as a jar (see {@link
+	 * FacesDirectoryArchive}). Only the descriptors (and the classes, if scanFacesAnnotations is true) are read, and a
+	 * jar without descriptors is rejected after its central directory (or the META-INF of the directory) is read
+	 * unless scanFacesAnnotations is true.</p>
+	 *
+	 * <p>If lowMemory is true, the descriptors are streamed and parsed before the classes are enumerated, so that only
+	 * the class names that the descriptors reference are kept for verification.</p>
+	 */
+	private static FacesJarScanResult scan(File facesJar, Log log, XMLInputFactory xmlInputFactory,
+		boolean verifyFacesConfigClassNames, boolean scanFacesAnnotations, boolean indexFacesDescriptors,
+		BuildReport buildReport, boolean lowMemory) {
+
+		Set<String> classNames = new PackageTrie();
+		Set<String> resolvedClassNames = new HashSet<String>();
+		Set<String> unresolvedClassNames = new HashSet<String>();
+		Map<String, String> annotatedClassNames = new LinkedHashMap<String, String>();
+		Map<String, String> descriptorMappings = null;
+
+		if (indexFacesDescriptors) {
+			descriptorMappings = new LinkedHashMap<String, String>();
+		}
+
+		FacesArchive facesArchive = null;
+		long jarOpenStart = System.nanoTime();
+
+		try {
+			facesArchive = openFacesArchive(facesJar);
+		}
+		catch (IOException e) {
+
+			buildReport.addDuration(BuildReport.Phase.JAR_OPEN, jarOpenStart);
+			log.error("Failed to read the central directory of " + facesJar.getName() +
+				". Unable to add imports from this Faces Jar.", e);
+
+			return new FacesJarScanResult(facesJar, classNames, unresolvedClassNames, annotatedClassNames,
+					descriptorMappings, false);
+		}
+
+		buildReport.addDuration(BuildReport.Phase.JAR_OPEN, jarOpenStart);
+
+		boolean complete = true;
+
+		try {
+
+			long entryEnumerationStart = System.nanoTime();
+			int[] xmlEntries = facesArchive.getDescriptorEntries();
+
+			if ((xmlEntries.length == 0) && !scanFacesAnnotations) {
+
+				buildReport.addDuration(BuildReport.Phase.ENTRY_ENUMERATION, entryEnumerationStart);
+
+				return new FacesJarScanResult(facesJar, classNames, unresolvedClassNames, annotatedClassNames,
+						descriptorMappings, true);
+			}
+
+			List<List<String>> xmlEntryCandidateClassNames = new ArrayList<List<String>>(xmlEntries.length);
+			Set<String> referencedInternalClassNames = null;
+			long xmlEntryDuration = 0;
+
+			if (lowMemory) {
+
+				long xmlEntryStart = System.nanoTime();
+				referencedInternalClassNames = new HashSet<String>();
+
+				for (int xmlEntry : xmlEntries) {
+
+					List<String> candidateClassNames = readDescriptor(facesJar, log, facesArchive, xmlEntry,
+							xmlInputFactory, descriptorMappings, buildReport, true);
+					xmlEntryCandidateClassNames.add(candidateClassNames);
+
+					if (candidateClassNames == null) {
+						complete = false;
+					}
+					else {
+
+						for (String candidateClassName : candidateClassNames) {
+							referencedInternalClassNames.add(ClassNameIndex.getInternalClassNameOfClassName(
+									candidateClassName));
 						}
-						catch (IOException e) {
-							log.error("Failed to read " + name + " from " + facesJar.getName() +
-								". Unable to add imports from this file.", e);
+					}
+				}
+
+				xmlEntryDuration = System.nanoTime() - xmlEntryStart;
+			}
+
+			int[] classEntries = facesArchive.getClassEntries();
+			List<String> internalClassNames = new ArrayList<String>();
+			long annotationScanDuration = 0;
+
+			for (int classEntry : classEntries) {
+
+				String internalClassName = ClassNameIndex.getInternalClassName(facesArchive.getName(classEntry));
+
+				if ((referencedInternalClassNames == null) ||
+						referencedInternalClassNames.contains(internalClassName)) {
+					internalClassNames.add(internalClassName);
+				}
+
+				if (scanFacesAnnotations) {
+
+					long annotationScanStart = System.nanoTime();
+
+					try {
+						addAnnotatedClassName(facesArchive, classEntry, internalClassName, annotatedClassNames,
+							buildReport);
+					}
+					catch (IOException e) {
+
+						complete = false;
+						log.error("Failed to read " + facesArchive.getName(classEntry) + " from " +
+							facesJar.getName() + ". Unable to add imports from this class.", e);
+					}
+					catch (IllegalArgumentException e) {
+						log.warn("Unable to read the annotations of " + facesArchive.getName(classEntry) + " from " +
+							facesJar.getName() + ". Unable to add imports from this class.", e);
+					}
+					finally {
+						annotationScanDuration += buildReport.addDuration(BuildReport.Phase.ANNOTATION_SCAN,
+								annotationScanStart);
+					}
+				}
+			}
+
+			buildReport.addDurationNanos(BuildReport.Phase.ENTRY_ENUMERATION,
+				System.nanoTime() - entryEnumerationStart - xmlEntryDuration - annotationScanDuration);
+
+			if (xmlEntries.length > 0) {
+
+				ClassNameIndex classNameIndex = new ClassNameIndex(internalClassNames);
+
+				for (int i = 0; i < xmlEntries.length; i++) {
+
+					List<String> candidateClassNames;
+
+					if (lowMemory) {
+						candidateClassNames = xmlEntryCandidateClassNames.get(i);
+					}
+					else {
+
+						candidateClassNames = readDescriptor(facesJar, log, facesArchive, xmlEntries[i],
+								xmlInputFactory, descriptorMappings, buildReport, false);
+
+						if (candidateClassNames == null) {
+							complete = false;
 						}
 					}
+
+					if (candidateClassNames != null) {
+
+						ClassNameIndex verificationClassNameIndex = null;
+
+						if (verifyFacesConfigClassNames || !isFacesConfig(facesArchive.getName(xmlEntries[i]))) {
+							verificationClassNameIndex = classNameIndex;
+						}
+
+						addClassNames(candidateClassNames, verificationClassNameIndex, classNames, resolvedClassNames,
+							unresolvedClassNames, buildReport);
+					}
 				}
 			}
 		}
+		catch (IOException e) {
+
+			complete = false;
+			log.error("Failed to list the entries of " + facesJar.getName() +
+				". Unable to add imports from this Faces Jar.", e);
+		}
+		finally {
+
+			buildReport.add(BuildReport.Count.ENTRIES_INSPECTED, facesArchive.getInspectedEntryCount());
+			CloseableUtil.close(facesArchive);
+		}
 
-		return Collections.unmodifiableSet(classNames);
+		// A class name that was resolved in one descriptor is resolved even if it could not be verified in another.
+		unresolvedClassNames.removeAll(resolvedClassNames);
+
+		return new FacesJarScanResult(facesJar, classNames, unresolvedClassNames, annotatedClassNames,
+				descriptorMappings, complete);
 	}
 
-	private static Set<String> getClassNames(JarFile facesJar, JarEntry xmlJarEntry, ClassLoader jarClassLoader,
-		DocumentBuilder documentBuilder, XPathExpression xPathExpression) throws IOException {
+	/**
+	 * Streams the faces-config.xml or *.taglib.xml document and adds the components, converters, validators, behaviors,
+	 * renderers and tags that it declares to the descriptor mappings, keyed as described by {@link
+	 * FacesDescriptorIndex}. Mappings that are already present are not replaced, so the first declaration wins.
+	 */
+	/* package-private */ static void addDescriptorMappings(InputStream inputStream, XMLInputFactory xmlInputFactory,
+		Map<String, String> descriptorMappings) throws IOException {
 
-		Set<String> classNames = new HashSet<String>();
-		InputStream inputStream = facesJar.getInputStream(xmlJarEntry);
+		XMLStreamReader xmlStreamReader = null;
 
 		try {
 
-			Document document = documentBuilder.parse(inputStream);
-			NodeList nodeList = (NodeList) xPathExpression.evaluate(document, XPathConstants.NODESET);
-			int nodeListLength = nodeList.getLength();
+			xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
 
-			for (int i = 0; i < nodeListLength; i++) {
+			// Each open element has the names and text of its leaf child elements, of which the first one wins.
+			Deque<String> elementNames = new ArrayDeque<String>();
+			Deque<Map<String, String>> elementLeaves = new ArrayDeque<Map<String, String>>();
+			StringBuilder text = new StringBuilder();
 
-				Node node = nodeList.item(i);
-				String textContent = node.getTextContent();
+			while (xmlStreamReader.hasNext()) {
 
-				// Remove Generic Data
-				textContent = textContent.replaceAll("[<][\\S\\s]*[>]", "");
+				switch (xmlStreamReader.next()) {
 
-				if (textContent.contains(".") && !SourceVersion.isKeyword(textContent) &&
-						SourceVersion.isName(textContent)) {
+				case XMLStreamConstants.START_ELEMENT:
+					elementNames.push(xmlStreamReader.getLocalName());
+					elementLeaves.push(new HashMap<String, String>());
+					text.setLength(0);
 
-					try {
+					break;
+
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+					text.append(xmlStreamReader.getTextCharacters(), xmlStreamReader.getTextStart(),
+						xmlStreamReader.getTextLength());
+
+					break;
+
+				case XMLStreamConstants.END_ELEMENT:
+
+					String elementName = elementNames.pop();
+					Map<String, String> leaves = elementLeaves.pop();
+					String parentElementName = elementNames.peek();
+					Map<String, String> parentLeaves = elementLeaves.peek();
+
+					if (parentLeaves != null) {
+
+						if (leaves.isEmpty()) {
+
+							String value = text.toString().trim();
+
+							if (!value.isEmpty()) {
+								parentLeaves.putIfAbsent(elementName, value);
+							}
+						}
+						else {
+							addDescriptorMappings(elementName, leaves, parentElementName, parentLeaves,
+								descriptorMappings);
+						}
+					}
+
+					text.setLength(0);
+
+					break;
+
+				default:
+					break;
+				}
+			}
+		}
+		catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+		finally {
+
+			if (xmlStreamReader != null) {
+
+				try {
+					xmlStreamReader.close();
+				}
+				catch (XMLStreamException e) {
+					// no-op
+				}
+			}
+		}
+	}
+
+	/**
+	 * Streams the XML document and returns the text of every leaf element that may be a class name, in document order.
+	 * This matches the text nodes selected by the XPath expression {@code //*[count(./*) = 0][normalize-space(text())]}
+	 * without building a DOM. Generic type data is removed from the text before it is checked.
+	 */
+	/* package-private */ static List<String> getCandidateClassNames(InputStream inputStream,
+		XMLInputFactory xmlInputFactory) throws IOException {
+		return getCandidateClassNames(inputStream, xmlInputFactory, new BuildReport());
+	}
+
+	/**
+	 * Returns the candidate class names of the XML document as described by {@link
+	 * #getCandidateClassNames(InputStream, XMLInputFactory)}, and records the time spent selecting them from the text
+	 * of the document and their number in the build report.
+	 */
+	/* package-private */ static List<String> getCandidateClassNames(InputStream inputStream,
+		XMLInputFactory xmlInputFactory, BuildReport buildReport) throws IOException {
+
+		long start = System.nanoTime();
+		long candidateFilteringDuration = 0;
+		List<String> candidateClassNames = new ArrayList<String>();
+		XMLStreamReader xmlStreamReader = null;
+
+		try {
+
+			xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
 
-						if (jarClassLoader != null) {
-							Class.forName(textContent, false, jarClassLoader);
+			StringBuilder text = new StringBuilder();
+			boolean leafElement = false;
+			int firstTextNodeStart = -1;
+			int firstTextNodeEnd = -1;
+
+			while (xmlStreamReader.hasNext()) {
+
+				switch (xmlStreamReader.next()) {
+
+				case XMLStreamConstants.START_ELEMENT:
+					text.setLength(0);
+					leafElement = true;
+					firstTextNodeStart = -1;
+					firstTextNodeEnd = -1;
+
+					break;
+
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+
+					if (leafElement) {
+
+						int textLength = xmlStreamReader.getTextLength();
+
+						if (textLength > 0) {
+
+							if (firstTextNodeStart < 0) {
+								firstTextNodeStart = text.length();
+							}
+
+							text.append(xmlStreamReader.getTextCharacters(), xmlStreamReader.getTextStart(),
+								textLength);
 						}
+					}
+
+					break;
 
-						classNames.add(textContent);
+				case XMLStreamConstants.COMMENT:
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+
+					// Adjacent text is split into separate text nodes by comments and processing instructions.
+					if (leafElement && (firstTextNodeStart > -1) && (firstTextNodeEnd < 0)) {
+						firstTextNodeEnd = text.length();
 					}
-					catch (ClassNotFoundException e) {
-						// Do nothing.
+
+					break;
+
+				case XMLStreamConstants.END_ELEMENT:
+
+					if (leafElement && (firstTextNodeStart > -1)) {
+
+						if (firstTextNodeEnd < 0) {
+							firstTextNodeEnd = text.length();
+						}
+
+						long candidateFilteringStart = System.nanoTime();
+
+						if (!isWhitespace(text, firstTextNodeStart, firstTextNodeEnd)) {
+
+							String candidateClassName = removeGenericData(text);
+
+							if (isCandidateClassName(candidateClassName)) {
+								candidateClassNames.add(candidateClassName);
+							}
+						}
+
+						candidateFilteringDuration += System.nanoTime() - candidateFilteringStart;
 					}
+
+					// The parent element contains this element, so it cannot be a leaf element.
+					leafElement = false;
+
+					break;
+
+				default:
+					break;
 				}
 			}
-
-			return Collections.unmodifiableSet(classNames);
 		}
-		catch (SAXException | XPathException e) {
+		catch (XMLStreamException e) {
 			throw new IOException(e);
 		}
+		finally {
+
+			if (xmlStreamReader != null) {
+
+				try {
+					xmlStreamReader.close();
+				}
+				catch (XMLStreamException e) {
+					// no-op
+				}
+			}
+		}
+
+		buildReport.add(BuildReport.Count.CANDIDATES, candidateClassNames.size());
+		buildReport.addDurationNanos(BuildReport.Phase.CANDIDATE_FILTERING, candidateFilteringDuration);
+		buildReport.addDurationNanos(BuildReport.Phase.XML_PARSE,
+			System.nanoTime() - start - candidateFilteringDuration);
+
+		return candidateClassNames;
+	}
+
+	private static void addAnnotatedClassName(FacesArchive facesArchive, int classEntry, String internalClassName,
+		Map<String, String> annotatedClassNames, BuildReport buildReport) throws IOException {
+
+		byte[] classBytes = facesArchive.getBytes(classEntry);
+		buildReport.add(BuildReport.Count.BYTES_INFLATED, classBytes.length);
+
+		String facesAnnotationClassName = FacesAnnotationUtil.getFacesAnnotationClassName(classBytes);
+
+		if (facesAnnotationClassName != null) {
+			annotatedClassNames.put(internalClassName.replace('/', '.'), facesAnnotationClassName);
+		}
+	}
+
+	private static void addDescriptorMapping(Map<String, String> descriptorMappings, String value, String category,
+		String... keyParts) {
+
+		if (value == null) {
+			return;
+		}
+
+		for (String keyPart : keyParts) {
+
+			if (keyPart == null) {
+				return;
+			}
+		}
+
+		descriptorMappings.putIfAbsent(FacesDescriptorIndex.getKey(category, keyParts), value);
+	}
+
+	private static void addDescriptorMappings(String elementName, Map<String, String> leaves, String parentElementName,
+		Map<String, String> parentLeaves, Map<String, String> descriptorMappings) {
+
+		if ("faces-config".equals(parentElementName)) {
+
+			if (FacesDescriptorIndex.BEHAVIOR.equals(elementName)) {
+				addDescriptorMapping(descriptorMappings, leaves.get("behavior-class"), FacesDescriptorIndex.BEHAVIOR,
+					leaves.get("behavior-id"));
+			}
+			else if (FacesDescriptorIndex.COMPONENT.equals(elementName)) {
+				addDescriptorMapping(descriptorMappings, leaves.get("component-class"), FacesDescriptorIndex.COMPONENT,
+					leaves.get("component-type"));
+			}
+			else if (FacesDescriptorIndex.CONVERTER.equals(elementName)) {
+
+				String converterClass = leaves.get("converter-class");
+				addDescriptorMapping(descriptorMappings, converterClass, FacesDescriptorIndex.CONVERTER,
+					leaves.get("converter-id"));
+				addDescriptorMapping(descriptorMappings, converterClass, FacesDescriptorIndex.CONVERTER_FOR_CLASS,
+					leaves.get("converter-for-class"));
+			}
+			else if (FacesDescriptorIndex.VALIDATOR.equals(elementName)) {
+				addDescriptorMapping(descriptorMappings, leaves.get("validator-class"), FacesDescriptorIndex.VALIDATOR,
+					leaves.get("validator-id"));
+			}
+		}
+		else if ("render-kit".equals(parentElementName) && FacesDescriptorIndex.RENDERER.equals(elementName)) {
+
+			String renderKitId = parentLeaves.get("render-kit-id");
+
+			if (renderKitId == null) {
+				renderKitId = FacesDescriptorIndex.DEFAULT_RENDER_KIT_ID;
+			}
+
+			addDescriptorMapping(descriptorMappings, leaves.get("renderer-class"), FacesDescriptorIndex.RENDERER,
+				renderKitId, leaves.get("component-family"), leaves.get("renderer-type"));
+		}
+		else if ("tag".equals(parentElementName)) {
+
+			// The handler class and component of a tag are declared in its component, converter, validator or behavior.
+			for (Map.Entry<String, String> leaf : leaves.entrySet()) {
+				parentLeaves.putIfAbsent(leaf.getKey(), leaf.getValue());
+			}
+		}
+		else if ("facelet-taglib".equals(parentElementName) && "tag".equals(elementName)) {
+
+			String namespace = parentLeaves.get("namespace");
+			String tagName = leaves.get("tag-name");
+			addDescriptorMapping(descriptorMappings, leaves.get("handler-class"), FacesDescriptorIndex.TAG_HANDLER,
+				namespace, tagName);
+			addDescriptorMapping(descriptorMappings, leaves.get("component-type"),
+				FacesDescriptorIndex.TAG_COMPONENT_TYPE, namespace, tagName);
+			addDescriptorMapping(descriptorMappings, leaves.get("renderer-type"),
+				FacesDescriptorIndex.TAG_RENDERER_TYPE, namespace, tagName);
+		}
+	}
+
+	/**
+	 * Adds the candidate class names of a descriptor to the class names. If a class name index is specified, the class
+	 * names that are neither found in the index nor visible to the plugin's class loader are unresolved. All other
+	 * class names are resolved.
+	 */
+	private static void addClassNames(List<String> candidateClassNames, ClassNameIndex classNameIndex,
+		Set<String> classNames, Set<String> resolvedClassNames, Set<String> unresolvedClassNames,
+		BuildReport buildReport) {
+
+		long verificationStart = System.nanoTime();
+
+		for (String candidateClassName : candidateClassNames) {
+
+			if ((classNameIndex == null) || classNameIndex.contains(candidateClassName) ||
+					ClassNameIndex.isPluginClass(candidateClassName)) {
+				resolvedClassNames.add(candidateClassName);
+			}
+			else {
+				unresolvedClassNames.add(candidateClassName);
+			}
+		}
+
+		buildReport.addDuration(BuildReport.Phase.VERIFICATION, verificationStart);
+		classNames.addAll(candidateClassNames);
+	}
+
+	private static boolean isCandidateClassName(String text) {
+		return (text.indexOf('.') > -1) && !SourceVersion.isKeyword(text) && SourceVersion.isName(text);
+	}
+
+	private static boolean isFacesConfig(String jarEntryName) {
+		return LiferayFacesOSGiPluginMojo.META_INF_FACES_CONFIG_XML.equals(jarEntryName) ||
+			(jarEntryName.startsWith(LiferayFacesOSGiPluginMojo.META_INF) &&
+				jarEntryName.endsWith("." + LiferayFacesOSGiPluginMojo.FACES_CONFIG_XML));
+	}
+
+	/**
+	 * Returns true if the characters only contain whitespace as defined by the XPath normalize-space() function.
+	 */
+	private static boolean isWhitespace(CharSequence charSequence, int start, int end) {
+
+		for (int i = start; i < end; i++) {
+
+			char c = charSequence.charAt(i);
+
+			if ((c != ' ') && (c != '\t') && (c != '\n') && (c != '\r')) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the candidate class names of the descriptor and, if the descriptor mappings are not null, adds its
+	 * descriptor mappings to them. Returns null if the descriptor could not be read. If stream is false, the descriptor
+	 * is only inflated once and parsed from memory. Otherwise, it is parsed while it is inflated, and inflated again
+	 * for each parse.
+	 */
+	private static List<String> readDescriptor(File facesJar, Log log, FacesArchive facesArchive, int xmlEntry,
+		XMLInputFactory xmlInputFactory, Map<String, String> descriptorMappings, BuildReport buildReport,
+		boolean stream) {
+
+		InputStream inputStream = null;
+
+		try {
+
+			long xmlParseStart = System.nanoTime();
+			byte[] xml = null;
+
+			if (!stream) {
+
+				xml = facesArchive.getBytes(xmlEntry);
+				buildReport.add(BuildReport.Count.BYTES_INFLATED, xml.length);
+			}
+
+			if (descriptorMappings != null) {
+
+				inputStream = stream ? facesArchive.getInputStream(xmlEntry) : new ByteArrayInputStream(xml);
+				addDescriptorMappings(inputStream, xmlInputFactory, descriptorMappings);
+				inputStream.close();
+			}
+
+			buildReport.addDuration(BuildReport.Phase.XML_PARSE, xmlParseStart);
+			inputStream = stream ? facesArchive.getInputStream(xmlEntry) : new ByteArrayInputStream(xml);
+
+			return getCandidateClassNames(inputStream, xmlInputFactory, buildReport);
+		}
+		catch (IOException e) {
+
+			log.error("Failed to read " + facesArchive.getName(xmlEntry) + " from " + facesJar.getName() +
+				". Unable to add imports from this file.", e);
+
+			return null;
+		}
 		finally {
 			CloseableUtil.close(inputStream);
 		}
 	}
+
+	/**
+	 * Removes everything from the first '<' to the last '>' in the same way as {@code replaceAll("[<][\\S\\s]*[>]",
+	 * "")} without compiling a regular expression for every text node.
+	 */
+	private static String removeGenericData(StringBuilder text) {
+
+		int genericDataStart = text.indexOf("<");
+
+		if (genericDataStart > -1) {
+
+			int genericDataEnd = text.lastIndexOf(">");
+
+			if (genericDataEnd > genericDataStart) {
+				text.delete(genericDataStart, genericDataEnd + 1);
+			}
+		}
+
+		return text.toString();
+	}
+
+	private static final class FilesTask<R> extends RecursiveTask<List<R>> {
+
+		// serialVersionUID
+		private static final long serialVersionUID = 2710347046251146186L;
+
+		// Private Final Data Members
+		private final List<File> files;
+		private final int fromIndex;
+		private final Function<File, R> function;
+		private final int toIndex;
+
+		private FilesTask(List<File> files, int fromIndex, int toIndex, Function<File, R> function) {
+
+			this.files = files;
+			this.fromIndex = fromIndex;
+			this.toIndex = toIndex;
+			this.function = function;
+		}
+
+		@Override
+		protected List<R> compute() {
+
+			List<R> results;
+
+			if ((toIndex - fromIndex) == 1) {
+
+				results = new ArrayList<R>(1);
+				results.add(function.apply(files.get(fromIndex)));
+			}
+			else {
+
+				int middleIndex = (fromIndex + toIndex) >>> 1;
+				FilesTask<R> rightFilesTask = new FilesTask<R>(files, middleIndex, toIndex, function);
+				rightFilesTask.fork();
+
+				FilesTask<R> leftFilesTask = new FilesTask<R>(files, fromIndex, middleIndex, function);
+				results = new ArrayList<R>(toIndex - fromIndex);
+				results.addAll(leftFilesTask.compute());
+				results.addAll(rightFilesTask.join());
+			}
+
+			return results;
+		}
+	}
 }
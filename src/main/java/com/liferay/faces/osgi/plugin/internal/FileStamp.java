@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+
+/**
+ * The size and last modified time of a provided file, which identify a version of the file without reading it. The
+ * size of a directory is the total size of the files in it, and its last modified time is the newest last modified
+ * time of the directory, its subdirectories and its files, so that adding, changing or removing a file (which modifies
+ * its parent directory) changes the stamp.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class FileStamp {
+
+	// Private Final Data Members
+	private final long lastModified;
+	private final long size;
+
+	/* package-private */ FileStamp(long size, long lastModified) {
+
+		this.size = size;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Returns the stamp of the file. Files of the directory that cannot be read are ignored, since they will fail to be
+	 * scanned and the error will be reported then.
+	 */
+	/* package-private */ static FileStamp get(File file) {
+
+		if (!file.isDirectory()) {
+			return new FileStamp(file.length(), file.lastModified());
+		}
+
+		long[] sizeAndLastModified = new long[2];
+
+		try {
+
+			Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+
+					@Override
+					public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+
+						sizeAndLastModified[1] = Math.max(sizeAndLastModified[1], attrs.lastModifiedTime().toMillis());
+
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+
+						sizeAndLastModified[0] += attrs.size();
+						sizeAndLastModified[1] = Math.max(sizeAndLastModified[1], attrs.lastModifiedTime().toMillis());
+
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException e) {
+						return FileVisitResult.CONTINUE;
+					}
+				});
+		}
+		catch (IOException e) {
+			// no-op
+		}
+
+		return new FileStamp(sizeAndLastModified[0], sizeAndLastModified[1]);
+	}
+
+	@Override
+	public boolean equals(Object object) {
+
+		if (!(object instanceof FileStamp)) {
+			return false;
+		}
+
+		FileStamp fileStamp = (FileStamp) object;
+
+		return (size == fileStamp.size) && (lastModified == fileStamp.lastModified);
+	}
+
+	/* package-private */ long getLastModified() {
+		return lastModified;
+	}
+
+	/* package-private */ long getSize() {
+		return size;
+	}
+
+	@Override
+	public int hashCode() {
+		return (31 * Long.hashCode(size)) + Long.hashCode(lastModified);
+	}
+
+	/**
+	 * Returns the size and last modified time separated by '|'.
+	 */
+	@Override
+	public String toString() {
+		return size + "|" + lastModified;
+	}
+}
@@ -19,24 +19,97 @@ import java.util.Set;
 
 
 /**
+ * The packages imported by the import jar. The packages are added to this class as string constants in sorted order
+ * when the import jar is generated, so that no imported class is loaded and no package name is sorted at runtime.
+ *
  * @author  Kyle Stiemann
  */
 public final class ImportedFacesPackages {
 
+	// Private Constants
+	private static final ImportedFacesPackages INSTANCE = new ImportedFacesPackages();
+
 	// Private Final Data Members
 	private final Set<String> importedPackages;
+	private final String[] sortedImportedPackages;
+	private final Set<String> unmodifiableImportedPackages;
 
 	public ImportedFacesPackages() {
 
 		importedPackages = new LinkedHashSet<String>();
 		importPackage(ImportedFacesPackages.class);
+		sortedImportedPackages = importedPackages.toArray(new String[importedPackages.size()]);
+		unmodifiableImportedPackages = Collections.unmodifiableSet(importedPackages);
+	}
+
+	/**
+	 * Returns the shared instance. The class holds nothing else, so the instance is created exactly once, when the
+	 * class is first initialized.
+	 */
+	public static ImportedFacesPackages getInstance() {
+		return INSTANCE;
+	}
+
+	private static int compare(String string, CharSequence charSequence) {
+
+		int length = Math.min(string.length(), charSequence.length());
+
+		for (int i = 0; i < length; i++) {
+
+			int difference = string.charAt(i) - charSequence.charAt(i);
+
+			if (difference != 0) {
+				return difference;
+			}
+		}
+
+		return string.length() - charSequence.length();
 	}
 
+	/**
+	 * Returns the imported packages in sorted order.
+	 */
 	public Set<String> getImportedPackages() {
-		return Collections.unmodifiableSet(importedPackages);
+		return unmodifiableImportedPackages;
+	}
+
+	/**
+	 * Returns true if the package is imported. The package name is compared character by character with a binary search
+	 * of the sorted imported packages, so the check neither allocates nor hashes the package name.
+	 */
+	public boolean isImported(CharSequence packageName) {
+
+		if (packageName == null) {
+			return false;
+		}
+
+		int low = 0;
+		int high = sortedImportedPackages.length - 1;
+
+		while (low <= high) {
+
+			int middle = (low + high) >>> 1;
+			int comparison = compare(sortedImportedPackages[middle], packageName);
+
+			if (comparison < 0) {
+				low = middle + 1;
+			}
+			else if (comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				return true;
+			}
+		}
+
+		return false;
 	}
 
 	private void importPackage(Class<?> clazz) {
-		importedPackages.add(clazz.getPackage().getName());
+		importPackage(clazz.getPackage().getName());
+	}
+
+	private void importPackage(String packageName) {
+		importedPackages.add(packageName);
 	}
 }
@@ -14,7 +14,12 @@
 package com.liferay.faces.osgi.plugin.internal;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -22,19 +27,40 @@ import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.commons.GeneratorAdapter;
 
 
 /**
+ * Generates the byte code of {@link ImportedFacesPackages} with additional imported packages. The package names are
+ * computed and sorted at build time and added by the constructor as string constants in sorted order, so no imported
+ * class is loaded and no package name is sorted at runtime. The package of {@link ImportedFacesPackages} itself is
+ * added in its sorted position instead of first.
+ * The generated methods that add the package names are split so that none of them approaches the 64KB method size
+ * limit. One imported class of each package is still added to the constant pool of the generated class so that
+ * bytecode analyzers such as bnd import the package. Since each package needs four constant pool entries, the class can
+ * import about 16,000 packages.
+ *
  * @author  Kyle Stiemann
  */
 /* package-private */ final class ImportedFacesPackagesByteCodeUtil {
 
+	// Package-Private Constants
+	/* package-private */ static final int PACKAGE_NAMES_PER_METHOD = 1000;
+
+	// Private Constants
+	private static final String IMPORT_PACKAGE_METHOD_NAME = "importPackage";
+	private static final String IMPORT_PACKAGE_CLASS_DESCRIPTOR = Type.getMethodDescriptor(Type.VOID_TYPE,
+			Type.getType(Class.class));
+	private static final String IMPORT_PACKAGE_STRING_DESCRIPTOR = Type.getMethodDescriptor(Type.VOID_TYPE,
+			Type.getType(String.class));
+	private static final String IMPORT_PACKAGES_METHOD_NAME_PREFIX = "importPackages$";
+	private static final String IMPORT_PACKAGES_METHOD_DESCRIPTOR = Type.getMethodDescriptor(Type.VOID_TYPE);
+
 	private ImportedFacesPackagesByteCodeUtil() {
 		throw new AssertionError();
 	}
 
-	/* package-private */ static byte[] getModifiedByteCode(Set<String> additionalImportedPackageClassNames) throws IOException {
+	/* package-private */ static byte[] getModifiedByteCode(Set<String> additionalImportedPackageClassNames)
+		throws IOException {
 
 		byte[] importedFacesPackagesClassBytes = ClassFileUtil.getClassBytes(ImportedFacesPackages.class);
 		ClassReader classReader = new ClassReader(importedFacesPackagesClassBytes);
@@ -46,50 +72,147 @@ import org.objectweb.asm.commons.GeneratorAdapter;
 		return classWriter.toByteArray();
 	}
 
-	private static final class ImportFacesPackageMethodVisitorImpl extends GeneratorAdapter {
+	/**
+	 * Returns the names of the packages of the classes in iteration order without duplicates. Classes in the default
+	 * package are ignored since it cannot be imported. The packages of a {@link PackageTrie} are returned without
+	 * iterating its classes.
+	 */
+	/* package-private */ static List<String> getPackageNames(Set<String> classNames) {
 
-		// Private Final Data Members
-		private final Set<String> importedPackageClassNames;
+		if (classNames instanceof PackageTrie) {
+			return ((PackageTrie) classNames).getPackageNames();
+		}
 
-		private ImportFacesPackageMethodVisitorImpl(MethodVisitor methodVisitor, int access, String name,
-			String descriptor, Set<String> importedPackageClassNames) {
+		Set<String> packageNames = new LinkedHashSet<String>();
 
-			super(Opcodes.ASM5, methodVisitor, access, name, descriptor);
+		for (String className : classNames) {
 
-			this.importedPackageClassNames = importedPackageClassNames;
+			int lastDotIndex = className.lastIndexOf('.');
+
+			if (lastDotIndex > 0) {
+				packageNames.add(className.substring(0, lastDotIndex));
+			}
 		}
 
-		private static String getTypeString(String className) {
-			return className.replace(".", "/");
+		return new ArrayList<String>(packageNames);
+	}
+
+	private static String getTypeString(String className) {
+		return className.replace(".", "/");
+	}
+
+	private static final class ImportFacesPackageMethodVisitorImpl extends MethodVisitor {
+
+		// Private Final Data Members
+		private final ImportFacesPackagesClassVisitorImpl importFacesPackagesClassVisitorImpl;
+
+		private ImportFacesPackageMethodVisitorImpl(MethodVisitor methodVisitor,
+			ImportFacesPackagesClassVisitorImpl importFacesPackagesClassVisitorImpl) {
+
+			super(Opcodes.ASM5, methodVisitor);
+
+			this.importFacesPackagesClassVisitorImpl = importFacesPackagesClassVisitorImpl;
 		}
 
 		@Override
 		public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
 
-			super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+			if (IMPORT_PACKAGE_METHOD_NAME.equals(name) && IMPORT_PACKAGE_CLASS_DESCRIPTOR.equals(descriptor)) {
 
-			if ("importPackage".equals(name)) {
+				// The generated package names include the package of the class, so it is not imported out of order.
+				super.visitInsn(Opcodes.POP2);
+				importFacesPackagesClassVisitorImpl.importPackageOpcode = opcode;
 
-				for (String importedPackageClassName : importedPackageClassNames) {
+				for (int i = 0; i < importFacesPackagesClassVisitorImpl.getImportPackagesMethodCount(); i++) {
 
-					super.loadThis();
-					super.visitLdcInsn(Type.getObjectType(getTypeString(importedPackageClassName)));
-					super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+					super.visitVarInsn(Opcodes.ALOAD, 0);
+					super.visitMethodInsn(opcode, owner, IMPORT_PACKAGES_METHOD_NAME_PREFIX + i,
+						IMPORT_PACKAGES_METHOD_DESCRIPTOR, isInterface);
 				}
 			}
+			else {
+				super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+			}
 		}
 	}
 
 	private static final class ImportFacesPackagesClassVisitorImpl extends ClassVisitor {
 
 		// Private Final Data Members
+		private final ClassWriter classWriter;
 		private final Set<String> importedPackageClassNames;
+		private final List<String> importedPackageNames;
+
+		// Private Data Members
+		private String className;
+		private int importPackageOpcode = Opcodes.INVOKESPECIAL;
 
 		private ImportFacesPackagesClassVisitorImpl(ClassWriter classWriter, Set<String> importedPackageClassNames) {
 
 			super(Opcodes.ASM5, classWriter);
 
+			this.classWriter = classWriter;
 			this.importedPackageClassNames = importedPackageClassNames;
+			Set<String> sortedImportedPackageNames = new TreeSet<String>(getPackageNames(importedPackageClassNames));
+			sortedImportedPackageNames.add(ImportedFacesPackages.class.getPackage().getName());
+			this.importedPackageNames = new ArrayList<String>(sortedImportedPackageNames);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName,
+			String[] interfaces) {
+
+			super.visit(version, access, name, signature, superName, interfaces);
+			className = name;
+		}
+
+		@Override
+		public void visitEnd() {
+
+			// A single class reference is enough for bytecode analyzers to import its package.
+			if (importedPackageClassNames instanceof PackageTrie) {
+
+				for (String firstClassName : ((PackageTrie) importedPackageClassNames).getFirstClassNames()) {
+					classWriter.newClass(getTypeString(firstClassName));
+				}
+			}
+			else {
+
+				Set<String> referencedPackageNames = new HashSet<String>();
+
+				for (String importedPackageClassName : importedPackageClassNames) {
+
+					int lastDotIndex = importedPackageClassName.lastIndexOf('.');
+
+					if ((lastDotIndex > 0) &&
+							referencedPackageNames.add(importedPackageClassName.substring(0, lastDotIndex))) {
+						classWriter.newClass(getTypeString(importedPackageClassName));
+					}
+				}
+			}
+
+			for (int i = 0; i < getImportPackagesMethodCount(); i++) {
+
+				MethodVisitor methodVisitor = super.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC,
+						IMPORT_PACKAGES_METHOD_NAME_PREFIX + i, IMPORT_PACKAGES_METHOD_DESCRIPTOR, null, null);
+				methodVisitor.visitCode();
+
+				int end = Math.min((i + 1) * PACKAGE_NAMES_PER_METHOD, importedPackageNames.size());
+
+				for (int j = i * PACKAGE_NAMES_PER_METHOD; j < end; j++) {
+
+					methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+					methodVisitor.visitLdcInsn(importedPackageNames.get(j));
+					methodVisitor.visitMethodInsn(importPackageOpcode, className, IMPORT_PACKAGE_METHOD_NAME,
+						IMPORT_PACKAGE_STRING_DESCRIPTOR, false);
+				}
+
+				methodVisitor.visitInsn(Opcodes.RETURN);
+				methodVisitor.visitMaxs(0, 0);
+				methodVisitor.visitEnd();
+			}
+
+			super.visitEnd();
 		}
 
 		@Override
@@ -98,11 +221,14 @@ import org.objectweb.asm.commons.GeneratorAdapter;
 			MethodVisitor methodVisitor = super.visitMethod(access, name, desc, signature, exceptions);
 
 			if ("<init>".equals(name)) {
-				methodVisitor = new ImportFacesPackageMethodVisitorImpl(methodVisitor, access, name, desc,
-						importedPackageClassNames);
+				methodVisitor = new ImportFacesPackageMethodVisitorImpl(methodVisitor, this);
 			}
 
 			return methodVisitor;
 		}
+
+		private int getImportPackagesMethodCount() {
+			return (importedPackageNames.size() + PACKAGE_NAMES_PER_METHOD - 1) / PACKAGE_NAMES_PER_METHOD;
+		}
 	}
 }
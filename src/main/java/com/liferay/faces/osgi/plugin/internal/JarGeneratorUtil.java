@@ -13,21 +13,41 @@
  */
 package com.liferay.faces.osgi.plugin.internal;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.LinkedHashSet;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -38,79 +58,246 @@ import javax.xml.bind.DatatypeConverter;
 /* package-private */ final class JarGeneratorUtil {
 
 	// Package-Private Constants
+	/* package-private */ static final String DEFAULT_DIGEST_ALGORITHM = "MD5";
+
+	/**
+	 * The output timestamp of reproducible jars when <code>project.build.outputTimestamp</code> is not set
+	 * (1980-02-01T00:00:00Z, which is within the range of zip entry times in every time zone).
+	 */
+	/* package-private */ static final long DEFAULT_OUTPUT_TIMESTAMP = 318211200000L;
 	/* package-private */ static final String PLUGIN_ARTIFACT_ID = "com.liferay.faces.osgi.plugin";
 
 	// Private Constants
-	private static final String MD5SUM_TOKEN = "{MD5SUM}";
-	private static final String GENERATED_JAR_FILE_NAME_TEMPLATE = LiferayFacesOSGiPluginMojo.PLUGIN_ARTIFACT_ID +
-		".generated-" + MD5SUM_TOKEN + ".jar";
+	private static final String HASH_TOKEN = "{HASH}";
+	private static final String IMPORT_PACKAGE = "Import-Package";
+	private static final int MANIFEST_LINE_LENGTH = 72;
+	private static final byte[] MANIFEST_LINE_SEPARATOR = new byte[] { '\r', '\n' };
+	private static final String GENERATED_JAR_FILE_NAME_PREFIX = LiferayFacesOSGiPluginMojo.PLUGIN_ARTIFACT_ID +
+		".generated-";
+	private static final String GENERATED_JAR_FILE_NAME_TEMPLATE = GENERATED_JAR_FILE_NAME_PREFIX + HASH_TOKEN + ".jar";
+	private static final long STALE_TEMPORARY_JAR_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
 
 	private JarGeneratorUtil() {
 		throw new AssertionError();
 	}
 
-	/* package-private */ static void generateImportJar(File outputDirectory, Set<String> servletContainerInitializerClasses,
-		Set<String> additionalClassesToImport) throws IOException {
+	/**
+	 * Generates the import jar in the output directory, named after its MD5 hash, and returns it.
+	 */
+	/* package-private */ static File generateImportJar(File outputDirectory,
+		Set<String> servletContainerInitializerClasses, Set<String> additionalClassesToImport) throws IOException {
+		return generateImportJar(outputDirectory, servletContainerInitializerClasses, additionalClassesToImport,
+				DEFAULT_DIGEST_ALGORITHM, null, false, Collections.emptyMap());
+	}
+
+	/**
+	 * Generates the import jar in the output directory and returns it. The jar is named after the hash of its content,
+	 * which is computed with the digest algorithm while the jar is written. The jar is written to a temporary file and
+	 * then moved into place, after which all other generated jars in the output directory are deleted.
+	 *
+	 * <p>The classes are imported package by package in the iteration order of a {@link PackageTrie}, which does not
+	 * depend on the order of the sets. If the output timestamp (in milliseconds since the epoch) is not null, the jar
+	 * is reproducible: the servlet container initializers are written in sorted order and every entry is stamped with
+	 * the output timestamp, so the same inputs always produce the same bytes and therefore the same file name.</p>
+	 *
+	 * <p>If importPackageHeader is true, the manifest of the jar also contains the Import-Package header returned by
+	 * {@link #getImportPackageHeader(Set)}.</p>
+	 *
+	 * <p>The resources are added to the jar in sorted order of their paths.</p>
+	 */
+	/* package-private */ static File generateImportJar(File outputDirectory,
+		Set<String> servletContainerInitializerClasses, Set<String> additionalClassesToImport, String digestAlgorithm,
+		Long outputTimestamp, boolean importPackageHeader, Map<String, byte[]> resources) throws IOException {
+		return generateImportJar(outputDirectory, servletContainerInitializerClasses, additionalClassesToImport,
+				digestAlgorithm, outputTimestamp, importPackageHeader, resources, new BuildReport());
+	}
+
+	/**
+	 * Generates the import jar as described by {@link #generateImportJar(File, Set, Set, String, Long, boolean, Map)},
+	 * and records the durations of the byte code generation, the jar write and the hashing in the build report.
+	 */
+	/* package-private */ static File generateImportJar(File outputDirectory,
+		Set<String> servletContainerInitializerClasses, Set<String> additionalClassesToImport, String digestAlgorithm,
+		Long outputTimestamp, boolean importPackageHeader, Map<String, byte[]> resources, BuildReport buildReport)
+		throws IOException {
+
+		long start = System.nanoTime();
+		long byteCodeGenerationDuration = 0;
+
+		if (outputTimestamp != null) {
+			servletContainerInitializerClasses = new TreeSet<String>(servletContainerInitializerClasses);
+		}
+
+		Set<String> classesToImport = new PackageTrie(servletContainerInitializerClasses);
+		classesToImport.addAll(additionalClassesToImport);
+
+		String importPackage = null;
 
-		Manifest manifest = new Manifest();
-		Attributes mainAttributes = manifest.getMainAttributes();
-		mainAttributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		if (importPackageHeader) {
+			importPackage = getImportPackageHeader(classesToImport);
+		}
+
+		Map<String, String> manifestMainAttributes = getManifestMainAttributes(importPackage);
 		outputDirectory.mkdirs();
 
-		File generatedJarFile = new File(outputDirectory, GENERATED_JAR_FILE_NAME_TEMPLATE);
+		MessageDigest messageDigest = ChecksumUtil.newMessageDigest(digestAlgorithm);
+
+		// A unique name keeps concurrent builds that share the output directory from writing to the same file.
+		Path generatedJarFilePath = new File(outputDirectory,
+				GENERATED_JAR_FILE_NAME_PREFIX + UUID.randomUUID() + ".tmp").toPath();
 		FileOutputStream fileOutputStream = null;
+		HashingOutputStream hashingOutputStream = null;
 		JarOutputStream jarOutputStream = null;
+		boolean moved = false;
 
 		try {
 
-			fileOutputStream = new FileOutputStream(generatedJarFile);
-			jarOutputStream = new JarOutputStream(fileOutputStream, manifest);
+			fileOutputStream = new FileOutputStream(generatedJarFilePath.toFile());
+			hashingOutputStream = new HashingOutputStream(new BufferedOutputStream(fileOutputStream), messageDigest);
+			jarOutputStream = new JarOutputStream(hashingOutputStream);
 
-			String importedFacesPackagesDirectoryName = ImportedFacesPackages.class.getPackage().getName();
-			importedFacesPackagesDirectoryName = importedFacesPackagesDirectoryName.replace(".", "/") + "/";
-			jarOutputStream.putNextEntry(new JarEntry(
-					importedFacesPackagesDirectoryName + ClassFileUtil.getClassFileName(ImportedFacesPackages.class)));
+			jarOutputStream.putNextEntry(newJarEntry(JarFile.MANIFEST_NAME, outputTimestamp));
+			writeManifest(jarOutputStream, manifestMainAttributes);
+			jarOutputStream.closeEntry();
 
-			Set<String> classesToImport = new LinkedHashSet<String>(servletContainerInitializerClasses);
-			classesToImport.addAll(additionalClassesToImport);
+			jarOutputStream.putNextEntry(newJarEntry(ClassFileUtil.getClassFilePath(ImportedFacesPackages.class),
+					outputTimestamp));
 
+			long byteCodeGenerationStart = System.nanoTime();
 			byte[] byteCode = ImportedFacesPackagesByteCodeUtil.getModifiedByteCode(classesToImport);
+			byteCodeGenerationDuration = buildReport.addDuration(BuildReport.Phase.BYTECODE_GENERATION,
+					byteCodeGenerationStart);
 			jarOutputStream.write(byteCode);
 
 			jarOutputStream.closeEntry();
-			jarOutputStream.putNextEntry(new JarEntry(
-					LiferayFacesOSGiPluginMojo.SERVLET_CONTAINER_INITIALIZER_FILE_PATH));
+			jarOutputStream.putNextEntry(newJarEntry(LiferayFacesOSGiPluginMojo.SERVLET_CONTAINER_INITIALIZER_FILE_PATH,
+					outputTimestamp));
 
-			PrintWriter printWriter = new PrintWriter(jarOutputStream);
+			StringBuilder servletContainerInitializers = new StringBuilder();
 
+			// The line separator is fixed so that the jar does not depend on the platform that generated it.
 			for (String servletContainerIntializerClass : servletContainerInitializerClasses) {
-				printWriter.println(servletContainerIntializerClass);
+				servletContainerInitializers.append(servletContainerIntializerClass).append('\n');
 			}
 
-			printWriter.flush();
+			jarOutputStream.write(servletContainerInitializers.toString().getBytes(StandardCharsets.UTF_8));
 			jarOutputStream.closeEntry();
 
-			MessageDigest messageDigest;
+			for (Map.Entry<String, byte[]> resource : new TreeMap<String, byte[]>(resources).entrySet()) {
+
+				jarOutputStream.putNextEntry(newJarEntry(resource.getKey(), outputTimestamp));
+				jarOutputStream.write(resource.getValue());
+				jarOutputStream.closeEntry();
+			}
+
+			// Closing the jar writes the central directory, which must be digested before the hash is read.
+			jarOutputStream.close();
+			jarOutputStream = null;
+
+			String generatedJarHash = DatatypeConverter.printHexBinary(messageDigest.digest());
+			String generatedJarHashFileName = GENERATED_JAR_FILE_NAME_TEMPLATE.replace(HASH_TOKEN, generatedJarHash);
+			Path generatedJarHashFilePath = new File(outputDirectory, generatedJarHashFileName).toPath();
 
 			try {
-				messageDigest = MessageDigest.getInstance("MD5");
+				Files.move(generatedJarFilePath, generatedJarHashFilePath, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
 			}
-			catch (NoSuchAlgorithmException e) {
-				throw new IOException("Unable to generate jar due to the following error:", e);
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(generatedJarFilePath, generatedJarHashFilePath, StandardCopyOption.REPLACE_EXISTING);
 			}
 
-			Path generatedJarFilePath = generatedJarFile.toPath();
+			moved = true;
 
-			byte[] bytes = Files.readAllBytes(generatedJarFilePath);
-			String generatedJarMD5Sum = DatatypeConverter.printHexBinary(messageDigest.digest(bytes));
-			String generatedJarMD5FileName = GENERATED_JAR_FILE_NAME_TEMPLATE.replace(MD5SUM_TOKEN, generatedJarMD5Sum);
-			Path generatedJarMD5FilePath = new File(outputDirectory, generatedJarMD5FileName).toPath();
-			Files.move(generatedJarFilePath, generatedJarMD5FilePath, StandardCopyOption.REPLACE_EXISTING);
+			File generatedJarHashFile = generatedJarHashFilePath.toFile();
+			deleteStaleImportJars(outputDirectory, generatedJarHashFile);
+
+			return generatedJarHashFile;
 		}
 		finally {
 
 			CloseableUtil.close(jarOutputStream);
 			CloseableUtil.close(fileOutputStream);
+
+			if (!moved) {
+				Files.deleteIfExists(generatedJarFilePath);
+			}
+
+			long hashingDuration = 0;
+
+			if (hashingOutputStream != null) {
+
+				hashingDuration = hashingOutputStream.hashingDuration;
+				buildReport.addDurationNanos(BuildReport.Phase.HASHING, hashingDuration);
+			}
+
+			buildReport.addDurationNanos(BuildReport.Phase.JAR_WRITE,
+				System.nanoTime() - start - byteCodeGenerationDuration - hashingDuration);
+		}
+	}
+
+	/**
+	 * Returns the output timestamp, in milliseconds since the epoch, of a <code>project.build.outputTimestamp</code>
+	 * value, which is either an ISO-8601 date-time with an offset or a number of seconds since the epoch. Returns null
+	 * if the value is null or shorter than two characters, which disables reproducible output.
+	 */
+	/* package-private */ static Long parseOutputTimestamp(String outputTimestamp) {
+
+		if ((outputTimestamp == null) || (outputTimestamp.trim().length() < 2)) {
+			return null;
+		}
+
+		outputTimestamp = outputTimestamp.trim();
+
+		boolean digits = true;
+
+		for (int i = 0; i < outputTimestamp.length(); i++) {
+
+			if (!Character.isDigit(outputTimestamp.charAt(i))) {
+
+				digits = false;
+
+				break;
+			}
+		}
+
+		if (digits) {
+			return TimeUnit.SECONDS.toMillis(Long.parseLong(outputTimestamp));
+		}
+
+		try {
+			return OffsetDateTime.parse(outputTimestamp).toInstant().toEpochMilli();
+		}
+		catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Invalid output timestamp " + outputTimestamp + ".", e);
+		}
+	}
+
+	/**
+	 * Deletes the previously generated import jars, and the temporary jars that a crashed build left behind. Temporary
+	 * jars that were modified recently may still be written by a concurrent build, so they are kept.
+	 */
+	private static void deleteStaleImportJars(File outputDirectory, File importJar) throws IOException {
+
+		File[] files = outputDirectory.listFiles();
+
+		if (files == null) {
+			return;
+		}
+
+		long staleTemporaryJarLastModified = System.currentTimeMillis() - STALE_TEMPORARY_JAR_AGE_MILLIS;
+
+		for (File file : files) {
+
+			String fileName = file.getName();
+
+			if (!fileName.startsWith(GENERATED_JAR_FILE_NAME_PREFIX)) {
+				continue;
+			}
+
+			if ((fileName.endsWith(".jar") && !file.equals(importJar)) ||
+					(fileName.endsWith(".tmp") && (file.lastModified() < staleTemporaryJarLastModified))) {
+				Files.deleteIfExists(file.toPath());
+			}
 		}
 	}
 
@@ -129,4 +316,258 @@ import javax.xml.bind.DatatypeConverter;
 
 		return stringBuilder.toString();
 	}
+
+	/**
+	 * Returns the fingerprint of the inputs of the import jar. The jar only needs to be regenerated when its
+	 * fingerprint changes.
+	 */
+	/* package-private */ static String getFingerprint(String pluginVersion, Collection<File> providedFiles,
+		Set<String> servletContainerInitializerClasses, Set<String> additionalClassesToImport,
+		String configuration) {
+
+		List<String> providedFileStamps = getProvidedFileStamps(providedFiles);
+		List<String> inputs = new ArrayList<String>();
+		inputs.add("pluginVersion=" + pluginVersion);
+		inputs.add("configuration=" + configuration);
+
+		for (String providedFileStamp : providedFileStamps) {
+			inputs.add("providedFile=" + providedFileStamp);
+		}
+
+		// The initializers are written to the jar in iteration order, so their order is part of the fingerprint.
+		for (String servletContainerInitializerClass : servletContainerInitializerClasses) {
+			inputs.add("servletContainerInitializer=" + servletContainerInitializerClass);
+		}
+
+		List<String> classesToImport = new ArrayList<String>(additionalClassesToImport);
+		Collections.sort(classesToImport);
+
+		for (String classToImport : classesToImport) {
+			inputs.add("classToImport=" + classToImport);
+		}
+
+		return ChecksumUtil.getChecksum(inputs);
+	}
+
+	/**
+	 * Returns an Import-Package header that imports the packages of the classes in sorted order, or null if there is
+	 * no package to import. The packages are imported with optional resolution, so the bundle still resolves when a
+	 * package is not exported, but every exported package is wired when the bundle is resolved rather than searched
+	 * for on each class lookup. The java.* packages are always available and cannot be imported, and the package of
+	 * {@link ImportedFacesPackages} is contained in the import jar, so neither is imported.
+	 */
+	/* package-private */ static String getImportPackageHeader(Set<String> classNames) {
+
+		Set<String> packageNames = new TreeSet<String>(ImportedFacesPackagesByteCodeUtil.getPackageNames(classNames));
+		packageNames.remove(ImportedFacesPackages.class.getPackage().getName());
+
+		StringBuilder importPackage = new StringBuilder();
+
+		for (String packageName : packageNames) {
+
+			if (packageName.startsWith("java.")) {
+				continue;
+			}
+
+			if (importPackage.length() > 0) {
+				importPackage.append(',');
+			}
+
+			importPackage.append(packageName).append(";resolution:=optional");
+		}
+
+		if (importPackage.length() == 0) {
+			return null;
+		}
+
+		return importPackage.toString();
+	}
+
+	/**
+	 * Returns the import jar recorded in the fingerprint file if it still exists in the output directory and the
+	 * recorded fingerprint matches the fingerprint, otherwise null. If the fingerprint is null, the recorded stamps of
+	 * the provided files must match their current stamps instead, which only requires their sizes and last modified
+	 * times.
+	 */
+	/* package-private */ static File getUpToDateImportJar(File fingerprintFile, String fingerprint,
+		Collection<File> providedFiles, File outputDirectory) {
+
+		if (!fingerprintFile.isFile()) {
+			return null;
+		}
+
+		List<String> lines;
+
+		try {
+			lines = Files.readAllLines(fingerprintFile.toPath(), StandardCharsets.UTF_8);
+		}
+		catch (IOException e) {
+			return null;
+		}
+
+		if (lines.size() < 2) {
+			return null;
+		}
+
+		if (fingerprint != null) {
+
+			if (!fingerprint.equals(lines.get(0))) {
+				return null;
+			}
+		}
+		else if (!getProvidedFileStamps(providedFiles).equals(lines.subList(2, lines.size()))) {
+			return null;
+		}
+
+		File importJar = new File(outputDirectory, lines.get(1));
+
+		if (!importJar.isFile()) {
+			return null;
+		}
+
+		return importJar;
+	}
+
+	private static Map<String, String> getManifestMainAttributes(String importPackage) {
+
+		Map<String, String> manifestMainAttributes = new LinkedHashMap<String, String>();
+		manifestMainAttributes.put(Attributes.Name.MANIFEST_VERSION.toString(), "1.0");
+
+		if (importPackage != null) {
+			manifestMainAttributes.put(IMPORT_PACKAGE, importPackage);
+		}
+
+		return manifestMainAttributes;
+	}
+
+	/**
+	 * Returns the path and stamp of each provided file in sorted order.
+	 */
+	private static List<String> getProvidedFileStamps(Collection<File> providedFiles) {
+
+		List<String> providedFileStamps = new ArrayList<String>();
+
+		for (File providedFile : providedFiles) {
+			providedFileStamps.add(providedFile.getAbsolutePath() + "|" + FileStamp.get(providedFile));
+		}
+
+		Collections.sort(providedFileStamps);
+
+		return providedFileStamps;
+	}
+
+	private static JarEntry newJarEntry(String name, Long outputTimestamp) {
+
+		JarEntry jarEntry = new JarEntry(name);
+
+		if (outputTimestamp != null) {
+
+			// Zip entry times are stored in the local time of the default time zone, so the instant at which the local
+			// time equals the UTC time of the timestamp is stored. Resolving the local time in the zone, rather than
+			// subtracting the offset at the timestamp, keeps the stored time the same near daylight saving changes.
+			LocalDateTime utcTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(outputTimestamp), ZoneOffset.UTC);
+			jarEntry.setTime(utcTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+		}
+
+		return jarEntry;
+	}
+
+	/**
+	 * Records the fingerprint of the inputs of the import jar along with the name of the jar and the stamps of the
+	 * provided files, which {@link #getUpToDateImportJar(File, String, Collection, File)} compares without a
+	 * fingerprint.
+	 */
+	/* package-private */ static void writeFingerprint(File fingerprintFile, String fingerprint, File importJar,
+		Collection<File> providedFiles) throws IOException {
+
+		List<String> lines = new ArrayList<String>();
+		lines.add(fingerprint);
+		lines.add(importJar.getName());
+		lines.addAll(getProvidedFileStamps(providedFiles));
+		fingerprintFile.getParentFile().mkdirs();
+		Files.write(fingerprintFile.toPath(), lines, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a manifest fragment that contains the Import-Package header, which can be merged into the manifest of the
+	 * WAR (for example with the manifestFile of the maven-war-plugin archive configuration). The file is only written
+	 * if its content changes. If there is no package to import, the fragment only contains the Manifest-Version.
+	 */
+	/* package-private */ static void writeImportPackageManifestFragment(File manifestFile, String importPackage)
+		throws IOException {
+
+		ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+		writeManifest(manifest, getManifestMainAttributes(importPackage));
+
+		byte[] manifestBytes = manifest.toByteArray();
+		Path manifestFilePath = manifestFile.toPath();
+
+		if (manifestFile.isFile() && Arrays.equals(manifestBytes, Files.readAllBytes(manifestFilePath))) {
+			return;
+		}
+
+		manifestFile.getAbsoluteFile().getParentFile().mkdirs();
+		Files.write(manifestFilePath, manifestBytes);
+	}
+
+	/**
+	 * Writes a manifest with the main attributes in iteration order. {@link java.util.jar.Manifest} does not preserve
+	 * the order of attributes on every supported JDK.
+	 */
+	private static void writeManifest(OutputStream outputStream, Map<String, String> mainAttributes)
+		throws IOException {
+
+		ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+
+		for (Map.Entry<String, String> mainAttribute : mainAttributes.entrySet()) {
+
+			byte[] line = (mainAttribute.getKey() + ": " + mainAttribute.getValue()).getBytes(StandardCharsets.UTF_8);
+			int lineLength = Math.min(line.length, MANIFEST_LINE_LENGTH);
+			manifest.write(line, 0, lineLength);
+
+			// Continuation lines begin with a space, which counts towards their length.
+			for (int i = lineLength; i < line.length; i += (MANIFEST_LINE_LENGTH - 1)) {
+
+				manifest.write(MANIFEST_LINE_SEPARATOR);
+				manifest.write(' ');
+				manifest.write(line, i, Math.min(line.length - i, MANIFEST_LINE_LENGTH - 1));
+			}
+
+			manifest.write(MANIFEST_LINE_SEPARATOR);
+		}
+
+		manifest.write(MANIFEST_LINE_SEPARATOR);
+		manifest.writeTo(outputStream);
+	}
+
+	/**
+	 * Digests the written bytes like {@link DigestOutputStream} and records the time spent digesting them.
+	 */
+	private static final class HashingOutputStream extends DigestOutputStream {
+
+		// Private Data Members
+		private long hashingDuration;
+
+		private HashingOutputStream(OutputStream outputStream, MessageDigest messageDigest) {
+			super(outputStream, messageDigest);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+
+			long start = System.nanoTime();
+			digest.update((byte) b);
+			hashingDuration += System.nanoTime() - start;
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+
+			long start = System.nanoTime();
+			digest.update(b, off, len);
+			hashingDuration += System.nanoTime() - start;
+			out.write(b, off, len);
+		}
+	}
 }
@@ -0,0 +1,338 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.model.PluginManagement;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MavenPluginManager;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.PluginConfigurationException;
+import org.apache.maven.plugin.PluginContainerException;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import com.liferay.faces.osgi.plugin.internal.AbstractLiferayFacesOSGiPluginMojo.ImportJarConfiguration;
+
+
+/**
+ * Generates the import jar of every war project of the reactor in a single execution, typically from the root project
+ * after the war projects have been built. Each war project is configured by its own configuration of the
+ * generate-package-import-jar goal: the configuration of the execution of the project that runs the goal, or else the
+ * configuration of the plugin in the project. The provided jars of all the war projects are scanned once in parallel
+ * into the session scan cache, so that a jar that is provided to several projects is only scanned once, and the import
+ * jars are then generated concurrently, each in the WEB-INF/lib directory of the exploded WAR of its project. War
+ * projects that disable the useSessionScanCache parameter scan their own jars, and the daemon scan cache is only used
+ * by the war projects that enable the useDaemonScanCache parameter.
+ *
+ * @author  Kyle Stiemann
+ */
+@Mojo(
+	name = "generate-package-import-jars", aggregator = true, requiresDependencyCollection = ResolutionScope.COMPILE,
+	requiresDependencyResolution = ResolutionScope.COMPILE
+)
+public final class LiferayFacesOSGiPluginAggregatorMojo extends AbstractMojo {
+
+	// Private Data Members
+	@Component
+	private MavenPluginManager mavenPluginManager;
+
+	/**
+	 * The number of war projects whose import jars are generated concurrently. A value less than 1 uses one thread per
+	 * available processor.
+	 */
+	@Parameter(defaultValue = "0")
+	private int moduleThreads;
+
+	@Parameter(defaultValue = "${plugin}", readonly = true)
+	private PluginDescriptor plugin;
+
+	@Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+	private List<MavenProject> reactorProjects;
+
+	@Parameter(defaultValue = "${session}", readonly = true)
+	private MavenSession session;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+
+		Log log = getLog();
+		long start = System.nanoTime();
+		List<ImportJarConfiguration> importJarConfigurations = new ArrayList<ImportJarConfiguration>();
+		List<Map<File, String>> warProjectFacesJarArtifactIds = new ArrayList<Map<File, String>>();
+		Map<String, ImportJarConfiguration> scanConfigurations = new LinkedHashMap<String, ImportJarConfiguration>();
+		Map<String, Map<File, String>> scanConfigurationFacesJarArtifactIds =
+			new LinkedHashMap<String, Map<File, String>>();
+		Set<File> facesJars = new LinkedHashSet<File>();
+
+		for (MavenProject reactorProject : reactorProjects) {
+
+			if ("war".equals(reactorProject.getPackaging())) {
+
+				ImportJarConfiguration importJarConfiguration = getImportJarConfiguration(reactorProject);
+				Map<File, String> facesJarArtifactIds = AbstractLiferayFacesOSGiPluginMojo.getFacesJarArtifactIds(
+						importJarConfiguration, new BuildReport(), log);
+				importJarConfigurations.add(importJarConfiguration);
+				warProjectFacesJarArtifactIds.add(facesJarArtifactIds);
+				facesJars.addAll(facesJarArtifactIds.keySet());
+
+				// Results scanned with different scan configurations are cached separately, and the results are only
+				// shared with the war projects that use the session scan cache.
+				if (importJarConfiguration.isUseSessionScanCache()) {
+
+					String scanConfiguration = importJarConfiguration.getScanConfiguration();
+
+					if (!scanConfigurations.containsKey(scanConfiguration)) {
+
+						scanConfigurations.put(scanConfiguration, importJarConfiguration);
+						scanConfigurationFacesJarArtifactIds.put(scanConfiguration, new HashMap<File, String>());
+					}
+
+					scanConfigurationFacesJarArtifactIds.get(scanConfiguration).putAll(facesJarArtifactIds);
+				}
+			}
+		}
+
+		if (importJarConfigurations.isEmpty()) {
+
+			log.info("No war projects found in the reactor.");
+
+			return;
+		}
+
+		// Every provided jar is scanned once here into the session scan cache, which is released with the session, so
+		// the war projects only find cached scan results.
+		for (Map.Entry<String, ImportJarConfiguration> entry : scanConfigurations.entrySet()) {
+			AbstractLiferayFacesOSGiPluginMojo.scanFacesJars(entry.getValue(),
+				scanConfigurationFacesJarArtifactIds.get(entry.getKey()), log);
+		}
+
+		long scanDuration = System.nanoTime() - start;
+		int moduleThreads = this.moduleThreads;
+
+		if (moduleThreads < 1) {
+			moduleThreads = Runtime.getRuntime().availableProcessors();
+		}
+
+		ExecutorService executorService = Executors.newFixedThreadPool(Math.min(moduleThreads,
+					importJarConfigurations.size()));
+		List<Future<File>> importJars = new ArrayList<Future<File>>();
+
+		try {
+
+			for (int i = 0; i < importJarConfigurations.size(); i++) {
+
+				ImportJarConfiguration importJarConfiguration = importJarConfigurations.get(i);
+				Map<File, String> facesJarArtifactIds = warProjectFacesJarArtifactIds.get(i);
+				importJars.add(executorService.submit(() -> {
+							return AbstractLiferayFacesOSGiPluginMojo.generateImportJar(importJarConfiguration,
+									facesJarArtifactIds, new BuildReport(), log);
+						}));
+			}
+
+			MojoExecutionException mojoExecutionException = null;
+
+			for (int i = 0; i < importJars.size(); i++) {
+
+				MavenProject warProject = importJarConfigurations.get(i).getProject();
+
+				try {
+					importJars.get(i).get();
+				}
+				catch (ExecutionException e) {
+
+					Throwable cause = e.getCause();
+
+					if (mojoExecutionException == null) {
+
+						mojoExecutionException = new MojoExecutionException("Failed to generate the import jar of " +
+								warProject.getId() + ".", cause);
+					}
+					else {
+						mojoExecutionException.addSuppressed(cause);
+					}
+				}
+			}
+
+			if (mojoExecutionException != null) {
+				throw mojoExecutionException;
+			}
+		}
+		catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while generating the import jars.", e);
+		}
+		finally {
+			executorService.shutdownNow();
+		}
+
+		log.info("Generated the import jars of " + importJarConfigurations.size() + " war projects from " +
+			facesJars.size() + " distinct provided jars in " +
+			TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms (scan took " +
+			TimeUnit.NANOSECONDS.toMillis(scanDuration) + " ms).");
+	}
+
+	/**
+	 * Returns the configuration of the parameters of the mojo, with the default values and expressions of the
+	 * descriptor for the parameters that are not configured, like Maven configures a mojo of the lifecycle.
+	 */
+	private static Xpp3Dom getMojoConfiguration(MojoDescriptor mojoDescriptor, Xpp3Dom pomConfiguration) {
+
+		Xpp3Dom defaultConfiguration = toXpp3Dom(mojoDescriptor.getMojoConfiguration());
+		Xpp3Dom mojoConfiguration = new Xpp3Dom("configuration");
+
+		for (org.apache.maven.plugin.descriptor.Parameter parameter : mojoDescriptor.getParameters()) {
+
+			Xpp3Dom parameterConfiguration = null;
+
+			if (pomConfiguration != null) {
+
+				parameterConfiguration = pomConfiguration.getChild(parameter.getName());
+
+				if ((parameterConfiguration == null) && (parameter.getAlias() != null)) {
+					parameterConfiguration = pomConfiguration.getChild(parameter.getAlias());
+				}
+			}
+
+			parameterConfiguration = Xpp3Dom.mergeXpp3Dom(parameterConfiguration,
+					defaultConfiguration.getChild(parameter.getName()), Boolean.TRUE);
+
+			if (parameterConfiguration != null) {
+
+				parameterConfiguration = new Xpp3Dom(parameterConfiguration, parameter.getName());
+
+				if ((parameterConfiguration.getAttribute("implementation") == null) &&
+						(parameter.getImplementation() != null)) {
+					parameterConfiguration.setAttribute("implementation", parameter.getImplementation());
+				}
+
+				mojoConfiguration.addChild(parameterConfiguration);
+			}
+		}
+
+		return mojoConfiguration;
+	}
+
+	private static Xpp3Dom toXpp3Dom(PlexusConfiguration plexusConfiguration) {
+
+		Xpp3Dom xpp3Dom = new Xpp3Dom(plexusConfiguration.getName());
+		xpp3Dom.setValue(plexusConfiguration.getValue(null));
+
+		for (String attributeName : plexusConfiguration.getAttributeNames()) {
+			xpp3Dom.setAttribute(attributeName, plexusConfiguration.getAttribute(attributeName, null));
+		}
+
+		for (PlexusConfiguration child : plexusConfiguration.getChildren()) {
+			xpp3Dom.addChild(toXpp3Dom(child));
+		}
+
+		return xpp3Dom;
+	}
+
+	/**
+	 * Returns the configuration of the import jar of a war project, as described by the parameters of the
+	 * generate-package-import-jar goal when it is configured by the war project. The configuration of the execution of
+	 * the project that runs the goal is used if there is one, and otherwise the configuration of the plugin in the
+	 * project, exactly as if the goal were run from the command line in the project. The configuration is read from the
+	 * model of the project, so that only the public plugin API is needed to configure the goal.
+	 */
+	private ImportJarConfiguration getImportJarConfiguration(MavenProject warProject) throws MojoExecutionException {
+
+		MojoDescriptor mojoDescriptor = plugin.getMojo(LiferayFacesOSGiPluginMojo.GOAL);
+		String pluginKey = plugin.getPluginLookupKey();
+		Plugin warProjectPlugin = warProject.getPlugin(pluginKey);
+		PluginManagement pluginManagement = warProject.getPluginManagement();
+
+		if ((warProjectPlugin == null) && (pluginManagement != null)) {
+			warProjectPlugin = pluginManagement.getPluginsAsMap().get(pluginKey);
+		}
+
+		MojoExecution mojoExecution = new MojoExecution(mojoDescriptor, "default-cli", MojoExecution.Source.CLI);
+		Xpp3Dom pomConfiguration = null;
+
+		if (warProjectPlugin != null) {
+
+			// The configuration of an execution of the model already includes the configuration of the plugin.
+			pomConfiguration = (Xpp3Dom) warProjectPlugin.getConfiguration();
+
+			for (PluginExecution pluginExecution : warProjectPlugin.getExecutions()) {
+
+				if (pluginExecution.getGoals().contains(LiferayFacesOSGiPluginMojo.GOAL)) {
+
+					mojoExecution = new MojoExecution(mojoDescriptor, pluginExecution.getId(),
+							MojoExecution.Source.LIFECYCLE);
+					pomConfiguration = (Xpp3Dom) pluginExecution.getConfiguration();
+
+					break;
+				}
+				else if ("default-cli".equals(pluginExecution.getId())) {
+					pomConfiguration = (Xpp3Dom) pluginExecution.getConfiguration();
+				}
+			}
+		}
+
+		mojoExecution.setConfiguration(getMojoConfiguration(mojoDescriptor, pomConfiguration));
+
+		// The parameter expressions of the goal, such as ${project.build.directory}, are evaluated in the war project.
+		MavenSession warProjectSession = session.clone();
+		warProjectSession.setCurrentProject(warProject);
+
+		LiferayFacesOSGiPluginMojo mojo = null;
+
+		try {
+
+			mojo = (LiferayFacesOSGiPluginMojo) mavenPluginManager.getConfiguredMojo(org.apache.maven.plugin.Mojo.class,
+					warProjectSession, mojoExecution);
+
+			return mojo.getImportJarConfiguration();
+		}
+		catch (PluginConfigurationException | PluginContainerException e) {
+			throw new MojoExecutionException("Failed to configure the " + LiferayFacesOSGiPluginMojo.GOAL +
+				" goal for " + warProject.getId() + ".", e);
+		}
+		finally {
+
+			if (mojo != null) {
+				mavenPluginManager.releaseMojo(mojo, mojoExecution);
+			}
+		}
+	}
+}
@@ -14,87 +14,56 @@
 package com.liferay.faces.osgi.plugin.internal;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.jar.JarFile;
+import java.util.Map;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPathException;
-
-import org.apache.maven.artifact.Artifact;
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
-import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
-import org.apache.maven.project.MavenProject;
+
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 
 /**
  * @author  Kyle Stiemann
  */
 @Mojo(
-	name = "generate-package-import-jar", defaultPhase = LifecyclePhase.PREPARE_PACKAGE,
+	name = LiferayFacesOSGiPluginMojo.GOAL, defaultPhase = LifecyclePhase.PREPARE_PACKAGE,
 	requiresDependencyCollection = ResolutionScope.COMPILE, requiresDependencyResolution = ResolutionScope.COMPILE
 )
-public final class LiferayFacesOSGiPluginMojo extends AbstractMojo {
+public final class LiferayFacesOSGiPluginMojo extends AbstractLiferayFacesOSGiPluginMojo {
 
 	// Package-Private Constants
-	/* package-private */ static final String META_INF = "META-INF/";
-	/* package-private */ static final String META_INF_SERVICES = META_INF + "services/";
-	/* package-private */ static final String FACES_CONFIG_XML = "faces-config.xml";
-	/* package-private */ static final String META_INF_FACES_CONFIG_XML = META_INF + FACES_CONFIG_XML;
-	/* package-private */ static final String PLUGIN_ARTIFACT_ID = "com.liferay.faces.osgi.plugin";
-	/* package-private */ static final String PROJECT_BUILD_DIRECTORY_PROPERTY = "${project.build.directory}";
-	/* package-private */ static final String SERVLET_CONTAINER_INITIALIZER_FILE_PATH = META_INF_SERVICES +
-		"javax.servlet.ServletContainerInitializer";
-
-	// Private Data Members
-	@Parameter(defaultValue = "${project.build.finalName}", required = true)
-	private String buildFinalName;
-
-	@Parameter(defaultValue = PROJECT_BUILD_DIRECTORY_PROPERTY, required = true)
-	private File outputDirectory;
-
-	@Parameter(defaultValue = "${project}", required = true)
-	private MavenProject project;
+	/* package-private */ static final String GOAL = "generate-package-import-jar";
 
 	@Override
-	public final void execute() throws MojoExecutionException {
+	public void execute() throws MojoExecutionException {
 
 		Log log = getLog();
-		Set<File> facesJars = new HashSet<File>();
-		Set<Artifact> artifacts = project.getArtifacts();
+		BuildReport buildReport = new BuildReport();
+		ImportJarConfiguration importJarConfiguration = getImportJarConfiguration();
+		Map<File, String> facesJarArtifactIds = getFacesJarArtifactIds(importJarConfiguration, buildReport, log);
+		BuildContext buildContext = importJarConfiguration.getBuildContext();
 
-		for (Artifact artifact : artifacts) {
+		// Incremental (IDE) builds only regenerate the jar when the pom or the provided files changed, unless the jar
+		// also depends on the classes of the project through the precomputed HandlesTypes classes. The provided files
+		// are compared by their recorded stamps, so a new snapshot of a provided jar is picked up without a scan.
+		if ((buildContext != null) && buildContext.isIncremental() && !buildContext.hasDelta("pom.xml") &&
+				!importJarConfiguration.isPrecomputeHandlesTypes()) {
 
-			String scope = artifact.getScope();
-			String type = artifact.getType();
+			File importJar = JarGeneratorUtil.getUpToDateImportJar(
+					importJarConfiguration.getImportJarFingerprintFile(), null, facesJarArtifactIds.keySet(),
+					importJarConfiguration.getWarLibDirectory());
 
-			if (Artifact.SCOPE_PROVIDED.equalsIgnoreCase(scope) && "jar".equalsIgnoreCase(type)) {
-				facesJars.add(artifact.getFile());
-			}
-		}
-
-		// Add JAR to maven-war-plugin config
-		String warFolderName = buildFinalName.replaceFirst(".war$", "");
-		String warLibDirectoryPath = JarGeneratorUtil.getFilePath(outputDirectory.toString(), warFolderName, "WEB-INF",
-				"lib");
-		File warLibDirectory = new File(warLibDirectoryPath);
+			if (importJar != null) {
 
-		try {
+				log.info("Import jar " + importJar.getName() + " is up to date.");
 
-			Set<String> defaultServletContainerInitializerClassNames = ServletContainerInitializerUtil
-				.getDefaultClassNames();
-			Set<String> importedClasses = FacesXMLUtil.getClassNames(facesJars, log);
-			JarGeneratorUtil.generateImportJar(warLibDirectory, defaultServletContainerInitializerClassNames,
-				importedClasses);
-		}
-		catch (IOException | ParserConfigurationException | XPathException e) {
-			throw new MojoExecutionException("Failed to generate import JAR.", e);
+				return;
+			}
 		}
+
+		generateImportJar(importJarConfiguration, facesJarArtifactIds, buildReport, log);
 	}
 }
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+
+/**
+ * Generates the import jar like the generate-package-import-jar goal and then keeps running, regenerating the import
+ * jar whenever the file of a provided artifact changes (for example when a new SNAPSHOT is installed in the local
+ * repository), until the build is stopped. The scan results are kept in the session scan cache (see the
+ * useSessionScanCache parameter) for as long as the build runs, so only the changed jars are scanned again, and the
+ * import jar in the WEB-INF/lib directory of the exploded WAR is replaced atomically.
+ *
+ * @author  Kyle Stiemann
+ */
+@Mojo(
+	name = "watch", requiresDependencyCollection = ResolutionScope.COMPILE,
+	requiresDependencyResolution = ResolutionScope.COMPILE
+)
+public final class LiferayFacesOSGiPluginWatchMojo extends AbstractLiferayFacesOSGiPluginMojo {
+
+	// Private Data Members
+	/**
+	 * The time in milliseconds for which no further change must be seen before the import jar is regenerated, so that
+	 * a burst of changes (such as a jar that is written in several steps) only regenerates it once.
+	 */
+	@Parameter(defaultValue = "200")
+	private long watchDebounceMillis;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+
+		Log log = getLog();
+		BuildReport buildReport = new BuildReport();
+		ImportJarConfiguration importJarConfiguration = getImportJarConfiguration();
+		Map<File, String> facesJarArtifactIds = getFacesJarArtifactIds(importJarConfiguration, buildReport, log);
+		ArtifactWatcher artifactWatcher = null;
+
+		try {
+
+			generateImportJar(importJarConfiguration, facesJarArtifactIds, buildReport, log);
+			artifactWatcher = ArtifactWatcher.open(facesJarArtifactIds.keySet());
+			log.info("Watching " + facesJarArtifactIds.size() +
+				" provided artifacts for changes. Stop the build to stop watching.");
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				Set<File> changedArtifacts = artifactWatcher.awaitChanges(watchDebounceMillis);
+				long cycleStart = System.nanoTime();
+
+				for (File changedArtifact : changedArtifacts) {
+					log.info("Changed: " + facesJarArtifactIds.get(changedArtifact) + " (" + changedArtifact + ")");
+				}
+
+				try {
+
+					File importJar = generateImportJar(importJarConfiguration, facesJarArtifactIds, new BuildReport(),
+							log);
+					long cycleEnd = System.nanoTime();
+					log.info("Updated " + importJar.getName() + " in " +
+						TimeUnit.NANOSECONDS.toMillis(cycleEnd - cycleStart) + " ms (" +
+						TimeUnit.NANOSECONDS.toMillis(cycleEnd - artifactWatcher.getFirstChangeNanoTime()) +
+						" ms after the first change).");
+				}
+				catch (MojoExecutionException e) {
+
+					// A jar that is still being written may fail to be scanned, so keep watching for the next change.
+					log.error(e.getMessage(), e);
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Failed to watch the provided artifacts.", e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			CloseableUtil.close(artifactWatcher);
+		}
+	}
+}
@@ -0,0 +1,626 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+
+/**
+ * A memory-mapped index of internal class names stored in a file as a sorted, prefix-compressed name table. Names are
+ * stored as UTF-8 bytes in blocks of {@link #BLOCK_SIZE} entries. The first name of each block is stored in full and
+ * each following name only stores the suffix that differs from the previous name. A lookup performs a binary search
+ * over the first names of the blocks and then scans a single block, so it takes O(log n) time and allocates almost
+ * nothing on the heap regardless of the number of classes in the index.
+ *
+ * <p>File format (all integers are big-endian):</p>
+ *
+ * <pre>
+ * int magic number, int version, UTF fingerprint, int name count, int block count, int[block count] block offsets,
+ * blocks: for each name, varint shared prefix length (0 for the first name of a block), varint suffix length, suffix
+ * </pre>
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class MappedClassNameIndex {
+
+	// Private Constants
+	private static final int BLOCK_SIZE = 16;
+	private static final int MAGIC_NUMBER = 0x4C464349;
+	private static final int VERSION = 1;
+	private static final Comparator<byte[]> UNSIGNED_BYTES_COMPARATOR = MappedClassNameIndex::compare;
+
+	// Private Final Data Members
+	private final int blockCount;
+	private final int blockOffsetsPosition;
+	private final int blocksPosition;
+	private final ByteBuffer byteBuffer;
+	private final String fingerprint;
+	private final int nameCount;
+
+	private MappedClassNameIndex(ByteBuffer byteBuffer) throws IOException {
+
+		this.byteBuffer = byteBuffer;
+
+		if ((byteBuffer.getInt(0) != MAGIC_NUMBER) || (byteBuffer.getInt(4) != VERSION)) {
+			throw new IOException("Invalid class name index.");
+		}
+
+		int fingerprintLength = byteBuffer.getShort(8) & 0xFFFF;
+		byte[] fingerprintBytes = new byte[fingerprintLength];
+
+		for (int i = 0; i < fingerprintLength; i++) {
+			fingerprintBytes[i] = byteBuffer.get(10 + i);
+		}
+
+		fingerprint = new String(fingerprintBytes, StandardCharsets.UTF_8);
+
+		int position = 10 + fingerprintLength;
+		nameCount = byteBuffer.getInt(position);
+		blockCount = byteBuffer.getInt(position + 4);
+		blockOffsetsPosition = position + 8;
+		blocksPosition = blockOffsetsPosition + (blockCount * 4);
+	}
+
+	/**
+	 * Maps the index file if it exists and was written for the same fingerprint. Otherwise, returns null.
+	 */
+	/* package-private */ static MappedClassNameIndex load(File indexFile, String fingerprint) {
+
+		if (!indexFile.isFile()) {
+			return null;
+		}
+
+		try {
+
+			MappedClassNameIndex mappedClassNameIndex = new MappedClassNameIndex(map(indexFile));
+
+			if (mappedClassNameIndex.fingerprint.equals(fingerprint)) {
+				return mappedClassNameIndex;
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			// The index will be rebuilt.
+		}
+
+		return null;
+	}
+
+	private static int compare(byte[] bytes1, byte[] bytes2) {
+
+		int length = Math.min(bytes1.length, bytes2.length);
+
+		for (int i = 0; i < length; i++) {
+
+			int difference = (bytes1[i] & 0xFF) - (bytes2[i] & 0xFF);
+
+			if (difference != 0) {
+				return difference;
+			}
+		}
+
+		return bytes1.length - bytes2.length;
+	}
+
+	private static MappedByteBuffer map(File indexFile) throws IOException {
+
+		FileChannel fileChannel = null;
+
+		try {
+
+			// The mapping remains valid after the channel is closed.
+			fileChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ);
+
+			return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+		}
+		finally {
+			CloseableUtil.close(fileChannel);
+		}
+	}
+
+	/**
+	 * Writes the names, which must be sorted, to the index file and maps it. Duplicate names are skipped. The blocks
+	 * are written to a temporary file first, since the header precedes them, so the names are never held in memory.
+	 */
+	private static MappedClassNameIndex writeIndex(File indexFile, String fingerprint, Iterator<byte[]> sortedNames)
+		throws IOException {
+
+		File indexDirectory = indexFile.getAbsoluteFile().getParentFile();
+		indexDirectory.mkdirs();
+
+		Path temporaryBlocksFilePath = Files.createTempFile(indexDirectory.toPath(), indexFile.getName(), ".blocks");
+		Path temporaryIndexFilePath = Files.createTempFile(indexDirectory.toPath(), indexFile.getName(), ".tmp");
+		DataOutputStream dataOutputStream = null;
+
+		try {
+
+			int[] blockOffsets = new int[16];
+			int nameCount = 0;
+			byte[] previousName = null;
+			dataOutputStream = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(temporaryBlocksFilePath.toFile())));
+
+			while (sortedNames.hasNext()) {
+
+				byte[] name = sortedNames.next();
+				int sharedPrefixLength = 0;
+
+				if ((previousName != null) && (compare(previousName, name) == 0)) {
+					continue;
+				}
+
+				if ((nameCount % BLOCK_SIZE) == 0) {
+
+					int block = nameCount / BLOCK_SIZE;
+
+					if (block == blockOffsets.length) {
+						blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+					}
+
+					blockOffsets[block] = dataOutputStream.size();
+				}
+				else {
+
+					int maxSharedPrefixLength = Math.min(previousName.length, name.length);
+
+					while ((sharedPrefixLength < maxSharedPrefixLength) &&
+							(previousName[sharedPrefixLength] == name[sharedPrefixLength])) {
+						sharedPrefixLength++;
+					}
+				}
+
+				writeVarInt(dataOutputStream, sharedPrefixLength);
+				writeVarInt(dataOutputStream, name.length - sharedPrefixLength);
+				dataOutputStream.write(name, sharedPrefixLength, name.length - sharedPrefixLength);
+				previousName = name;
+				nameCount++;
+			}
+
+			dataOutputStream.close();
+			dataOutputStream = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(temporaryIndexFilePath.toFile())));
+			dataOutputStream.writeInt(MAGIC_NUMBER);
+			dataOutputStream.writeInt(VERSION);
+			dataOutputStream.writeUTF(fingerprint);
+			dataOutputStream.writeInt(nameCount);
+
+			int blockCount = (nameCount + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			dataOutputStream.writeInt(blockCount);
+
+			for (int i = 0; i < blockCount; i++) {
+				dataOutputStream.writeInt(blockOffsets[i]);
+			}
+
+			Files.copy(temporaryBlocksFilePath, dataOutputStream);
+			dataOutputStream.close();
+			dataOutputStream = null;
+			Files.move(temporaryIndexFilePath, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+
+			CloseableUtil.close(dataOutputStream);
+			Files.deleteIfExists(temporaryBlocksFilePath);
+			Files.deleteIfExists(temporaryIndexFilePath);
+		}
+
+		return new MappedClassNameIndex(map(indexFile));
+	}
+
+	private static void writeVarInt(DataOutputStream dataOutputStream, int value) throws IOException {
+
+		while ((value & ~0x7F) != 0) {
+
+			dataOutputStream.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		dataOutputStream.write(value);
+	}
+
+	/**
+	 * Returns true if the index contains the class. The class name may be a binary name (for example {@code
+	 * com.liferay.faces.Foo$Bar}) or an internal name.
+	 */
+	/* package-private */ boolean contains(String className) {
+
+		if (nameCount == 0) {
+			return false;
+		}
+
+		byte[] key = ClassNameIndex.getInternalClassNameOfClassName(className).getBytes(StandardCharsets.UTF_8);
+
+		// Find the last block whose first name is less than or equal to the key.
+		int low = 0;
+		int high = blockCount - 1;
+
+		while (low <= high) {
+
+			int middle = (low + high) >>> 1;
+			int comparison = compareFirstName(middle, key);
+
+			if (comparison < 0) {
+				low = middle + 1;
+			}
+			else if (comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				return true;
+			}
+		}
+
+		if (high < 0) {
+			return false;
+		}
+
+		return blockContains(high, key);
+	}
+
+	/* package-private */ String getFingerprint() {
+		return fingerprint;
+	}
+
+	/* package-private */ int size() {
+		return nameCount;
+	}
+
+	/**
+	 * Scans the block and compares each name to the key without decoding it. The length of the prefix that the current
+	 * name shares with the key is tracked, so each name is compared starting from its suffix.
+	 */
+	private boolean blockContains(int block, byte[] key) {
+
+		int position = blocksPosition + byteBuffer.getInt(blockOffsetsPosition + (block * 4));
+		int blockNameCount = Math.min(BLOCK_SIZE, nameCount - (block * BLOCK_SIZE));
+
+		// The length of the prefix that the previous name shares with the key.
+		int matchedLength = 0;
+
+		for (int i = 0; i < blockNameCount; i++) {
+
+			int sharedPrefixLength = readVarInt(position);
+			position += getVarIntLength(sharedPrefixLength);
+
+			int suffixLength = readVarInt(position);
+			position += getVarIntLength(suffixLength);
+
+			if (sharedPrefixLength < matchedLength) {
+
+				// The name differs from the key at an earlier position than the previous name did, so it is greater.
+				return false;
+			}
+
+			if (sharedPrefixLength == matchedLength) {
+
+				int nameLength = sharedPrefixLength + suffixLength;
+				int j = 0;
+
+				while (((matchedLength + j) < key.length) && (j < suffixLength) &&
+						(byteBuffer.get(position + j) == key[matchedLength + j])) {
+					j++;
+				}
+
+				matchedLength += j;
+
+				if ((matchedLength == key.length) && (nameLength == key.length)) {
+					return true;
+				}
+
+				if ((j < suffixLength) && (matchedLength < key.length) &&
+						((byteBuffer.get(position + j) & 0xFF) > (key[matchedLength] & 0xFF))) {
+					return false;
+				}
+
+				if ((j < suffixLength) && (matchedLength == key.length)) {
+
+					// The key is a prefix of the name, so the name is greater.
+					return false;
+				}
+			}
+
+			position += suffixLength;
+		}
+
+		return false;
+	}
+
+	private int compareFirstName(int block, byte[] key) {
+
+		int position = blocksPosition + byteBuffer.getInt(blockOffsetsPosition + (block * 4));
+
+		// The shared prefix length of the first name of a block is always 0.
+		position += 1;
+
+		int nameLength = readVarInt(position);
+		position += getVarIntLength(nameLength);
+
+		int length = Math.min(nameLength, key.length);
+
+		for (int i = 0; i < length; i++) {
+
+			int difference = (byteBuffer.get(position + i) & 0xFF) - (key[i] & 0xFF);
+
+			if (difference != 0) {
+				return difference;
+			}
+		}
+
+		return nameLength - key.length;
+	}
+
+	private int getVarIntLength(int value) {
+
+		int length = 1;
+
+		while ((value >>>= 7) != 0) {
+			length++;
+		}
+
+		return length;
+	}
+
+	private int readVarInt(int position) {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+
+			b = byteBuffer.get(position++);
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	/**
+	 * Builds an index from internal class names that are added in any order. Once the maximum number of buffered names
+	 * is exceeded, the buffered names are sorted and spilled to a temporary run file next to the index file. The runs
+	 * are merged when the index is written, so the heap only holds the buffered names and the current name of each
+	 * run, regardless of the number of names.
+	 */
+	/* package-private */ static final class Builder implements Closeable {
+
+		// Private Final Data Members
+		private final List<byte[]> bufferedNames;
+		private final File indexFile;
+		private final int maxBufferedNames;
+		private final List<Path> runFilePaths;
+
+		/* package-private */ Builder(File indexFile, int maxBufferedNames) {
+
+			this.indexFile = indexFile;
+			this.maxBufferedNames = Math.max(1, maxBufferedNames);
+			this.bufferedNames = new ArrayList<byte[]>();
+			this.runFilePaths = new ArrayList<Path>();
+		}
+
+		/**
+		 * Deletes the run files.
+		 */
+		@Override
+		public void close() throws IOException {
+
+			for (Path runFilePath : runFilePaths) {
+				Files.deleteIfExists(runFilePath);
+			}
+
+			runFilePaths.clear();
+		}
+
+		/**
+		 * Adds the internal class name. Names may be added concurrently, for example while several jars are indexed.
+		 */
+		/* package-private */ synchronized void add(String internalClassName) throws IOException {
+
+			bufferedNames.add(internalClassName.getBytes(StandardCharsets.UTF_8));
+
+			if (bufferedNames.size() >= maxBufferedNames) {
+				spill();
+			}
+		}
+
+		/* package-private */ int getRunCount() {
+			return runFilePaths.size();
+		}
+
+		/**
+		 * Writes the index file and maps it.
+		 */
+		/* package-private */ MappedClassNameIndex write(String fingerprint) throws IOException {
+
+			if (runFilePaths.isEmpty()) {
+
+				bufferedNames.sort(UNSIGNED_BYTES_COMPARATOR);
+
+				return writeIndex(indexFile, fingerprint, bufferedNames.iterator());
+			}
+
+			spill();
+
+			List<RunReader> runReaders = new ArrayList<RunReader>(runFilePaths.size());
+
+			try {
+
+				for (Path runFilePath : runFilePaths) {
+					runReaders.add(new RunReader(runFilePath));
+				}
+
+				return writeIndex(indexFile, fingerprint, new RunMerger(runReaders));
+			}
+			catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			finally {
+
+				for (RunReader runReader : runReaders) {
+					CloseableUtil.close(runReader);
+				}
+			}
+		}
+
+		private void spill() throws IOException {
+
+			if (bufferedNames.isEmpty()) {
+				return;
+			}
+
+			bufferedNames.sort(UNSIGNED_BYTES_COMPARATOR);
+
+			File indexDirectory = indexFile.getAbsoluteFile().getParentFile();
+			indexDirectory.mkdirs();
+
+			Path runFilePath = Files.createTempFile(indexDirectory.toPath(), indexFile.getName(), ".run");
+			runFilePaths.add(runFilePath);
+
+			DataOutputStream dataOutputStream = null;
+
+			try {
+
+				dataOutputStream = new DataOutputStream(new BufferedOutputStream(
+							new FileOutputStream(runFilePath.toFile())));
+				dataOutputStream.writeInt(bufferedNames.size());
+
+				for (byte[] name : bufferedNames) {
+
+					dataOutputStream.writeShort(name.length);
+					dataOutputStream.write(name);
+				}
+			}
+			finally {
+				CloseableUtil.close(dataOutputStream);
+			}
+
+			bufferedNames.clear();
+		}
+	}
+
+	/**
+	 * Merges the sorted runs into one sorted sequence of names.
+	 */
+	private static final class RunMerger implements Iterator<byte[]> {
+
+		// Private Final Data Members
+		private final PriorityQueue<RunReader> runReaders;
+
+		private RunMerger(List<RunReader> runReaders) {
+
+			this.runReaders = new PriorityQueue<RunReader>(Math.max(1, runReaders.size()),
+					(RunReader runReader1, RunReader runReader2) -> {
+						return compare(runReader1.name, runReader2.name);
+					});
+
+			for (RunReader runReader : runReaders) {
+
+				if (runReader.name != null) {
+					this.runReaders.add(runReader);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !runReaders.isEmpty();
+		}
+
+		@Override
+		public byte[] next() {
+
+			RunReader runReader = runReaders.poll();
+
+			if (runReader == null) {
+				throw new NoSuchElementException();
+			}
+
+			byte[] name = runReader.name;
+
+			try {
+				runReader.next();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			if (runReader.name != null) {
+				runReaders.add(runReader);
+			}
+
+			return name;
+		}
+	}
+
+	/**
+	 * Reads the names of a run file in order. The current name is null once the run is exhausted.
+	 */
+	private static final class RunReader implements Closeable {
+
+		// Private Final Data Members
+		private final DataInputStream dataInputStream;
+
+		// Private Data Members
+		private byte[] name;
+		private int remaining;
+
+		private RunReader(Path runFilePath) throws IOException {
+
+			this.dataInputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFilePath)));
+			this.remaining = dataInputStream.readInt();
+			next();
+		}
+
+		@Override
+		public void close() throws IOException {
+			dataInputStream.close();
+		}
+
+		private void next() throws IOException {
+
+			if (remaining == 0) {
+
+				name = null;
+
+				return;
+			}
+
+			name = new byte[dataInputStream.readUnsignedShort()];
+			dataInputStream.readFully(name);
+			remaining--;
+		}
+	}
+}
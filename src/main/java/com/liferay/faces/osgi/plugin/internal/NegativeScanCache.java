@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.logging.Log;
+
+
+/**
+ * A persistent cache of the provided jars whose scan found nothing to import: no class names, no annotated classes and
+ * no descriptor mappings. Unlike {@link FacesJarScanCache}, only the path, size and last modified time of each jar are
+ * recorded, so the cache stays small however many jars it covers, and an entry is discarded as soon as the size or last
+ * modified time of its jar changes, so a cached jar is never opened or hashed. The whole cache is discarded if it was
+ * written with a different scan configuration.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class NegativeScanCache implements FacesJarScanResultCache {
+
+	// Private Constants
+	private static final int MAGIC_NUMBER = 0x4C464E43;
+	private static final int VERSION = 1;
+
+	// Private Final Data Members
+	private final File cacheFile;
+	private final Map<String, FileStamp> cacheEntries;
+	private final String configuration;
+	private final AtomicLong hits = new AtomicLong();
+
+	// Private Data Members
+	private boolean modified;
+
+	private NegativeScanCache(File cacheFile, String configuration, Map<String, FileStamp> cacheEntries) {
+
+		this.cacheFile = cacheFile;
+		this.configuration = configuration;
+		this.cacheEntries = cacheEntries;
+	}
+
+	/* package-private */ static NegativeScanCache load(File cacheFile, String configuration, Log log) {
+
+		Map<String, FileStamp> cacheEntries = new LinkedHashMap<String, FileStamp>();
+
+		if (cacheFile.isFile()) {
+
+			DataInputStream dataInputStream = null;
+
+			try {
+
+				dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+
+				if ((dataInputStream.readInt() == MAGIC_NUMBER) && (dataInputStream.readInt() == VERSION) &&
+						configuration.equals(dataInputStream.readUTF())) {
+
+					int cacheEntriesSize = dataInputStream.readInt();
+
+					for (int i = 0; i < cacheEntriesSize; i++) {
+
+						String path = dataInputStream.readUTF();
+						long size = dataInputStream.readLong();
+						long lastModified = dataInputStream.readLong();
+						cacheEntries.put(path, new FileStamp(size, lastModified));
+					}
+				}
+			}
+			catch (IOException e) {
+
+				cacheEntries.clear();
+
+				if (log != null) {
+					log.warn("Failed to read negative scan cache " + cacheFile + ". All Faces jars will be rescanned.",
+						e);
+				}
+			}
+			finally {
+				CloseableUtil.close(dataInputStream);
+			}
+		}
+
+		return new NegativeScanCache(cacheFile, configuration, cacheEntries);
+	}
+
+	private static boolean isEmpty(FacesJarScanResult facesJarScanResult) {
+		return facesJarScanResult.getClassNames().isEmpty() &&
+			facesJarScanResult.getUnresolvedClassNames().isEmpty() &&
+			facesJarScanResult.getAnnotatedClassNames().isEmpty() &&
+			facesJarScanResult.getDescriptorMappings().isEmpty();
+	}
+
+	@Override
+	public synchronized FacesJarScanResult get(File facesJar) {
+
+		String path = facesJar.getAbsolutePath();
+		FileStamp cachedFileStamp = cacheEntries.get(path);
+
+		if (cachedFileStamp == null) {
+			return null;
+		}
+
+		FileStamp fileStamp = FileStamp.get(facesJar);
+
+		if ((cachedFileStamp.getSize() != fileStamp.getSize()) ||
+				(cachedFileStamp.getLastModified() != fileStamp.getLastModified())) {
+
+			cacheEntries.remove(path);
+			modified = true;
+
+			return null;
+		}
+
+		hits.incrementAndGet();
+
+		return new FacesJarScanResult(facesJar, Collections.<String>emptySet(), Collections.<String>emptySet(),
+				Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap(), true);
+	}
+
+	/**
+	 * Returns the number of jars that were not scanned because they were found in the cache.
+	 */
+	/* package-private */ long getHits() {
+		return hits.get();
+	}
+
+	/* package-private */ synchronized int getSize() {
+		return cacheEntries.size();
+	}
+
+	/**
+	 * Records the jar if its scan found nothing to import, or forgets it otherwise.
+	 */
+	@Override
+	public synchronized void put(FacesJarScanResult facesJarScanResult) {
+
+		String path = facesJarScanResult.getFacesJar().getAbsolutePath();
+
+		if (isEmpty(facesJarScanResult)) {
+
+			FileStamp fileStamp = FileStamp.get(facesJarScanResult.getFacesJar());
+
+			if (!fileStamp.equals(cacheEntries.put(path, fileStamp))) {
+				modified = true;
+			}
+		}
+		else if (cacheEntries.remove(path) != null) {
+			modified = true;
+		}
+	}
+
+	/**
+	 * Writes the cache to a temporary file and moves it over the cache file so that an interrupted build never leaves a
+	 * partially written cache behind.
+	 */
+	/* package-private */ synchronized void save() throws IOException {
+
+		if (!modified) {
+			return;
+		}
+
+		File cacheDirectory = cacheFile.getParentFile();
+		cacheDirectory.mkdirs();
+
+		Path temporaryCacheFilePath = Files.createTempFile(cacheDirectory.toPath(), cacheFile.getName(), ".tmp");
+		DataOutputStream dataOutputStream = null;
+
+		try {
+
+			dataOutputStream = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(temporaryCacheFilePath.toFile())));
+			dataOutputStream.writeInt(MAGIC_NUMBER);
+			dataOutputStream.writeInt(VERSION);
+			dataOutputStream.writeUTF(configuration);
+			dataOutputStream.writeInt(cacheEntries.size());
+
+			for (Map.Entry<String, FileStamp> entry : cacheEntries.entrySet()) {
+
+				FileStamp fileStamp = entry.getValue();
+				dataOutputStream.writeUTF(entry.getKey());
+				dataOutputStream.writeLong(fileStamp.getSize());
+				dataOutputStream.writeLong(fileStamp.getLastModified());
+			}
+
+			dataOutputStream.close();
+			dataOutputStream = null;
+			Files.move(temporaryCacheFilePath, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			modified = false;
+		}
+		finally {
+
+			CloseableUtil.close(dataOutputStream);
+			Files.deleteIfExists(temporaryCacheFilePath);
+		}
+	}
+}
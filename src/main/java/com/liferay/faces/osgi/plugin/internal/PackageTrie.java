@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * A set of class names that groups the simple names of the classes under a trie of package nodes. Each package name
+ * is stored once by its node however many classes the package contains, so memory use grows with the number of
+ * packages rather than the number of classes. Merging another trie with {@link #addAll(Collection)} walks the nodes of
+ * both tries instead of splitting every class name, and the packages can be iterated directly with {@link
+ * #getPackageNames()}.
+ *
+ * <p>The classes are iterated package by package in depth-first order, with the segments of the package names and the
+ * simple names in sorted order, so the iteration order does not depend on the order in which the classes were added
+ * or the tries were merged. Classes cannot be removed. The trie is not thread-safe: each thread fills its own trie and
+ * the tries are merged once the threads are done.</p>
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class PackageTrie extends AbstractSet<String> {
+
+	// Private Final Data Members
+	private final PackageNode root;
+
+	// Private Data Members
+	private int size;
+
+	/* package-private */ PackageTrie() {
+		this.root = new PackageNode("");
+	}
+
+	/* package-private */ PackageTrie(Collection<String> classNames) {
+
+		this();
+		addAll(classNames);
+	}
+
+	@Override
+	public boolean add(String className) {
+
+		int lastDotIndex = className.lastIndexOf('.');
+		PackageNode packageNode = getPackageNode(className, lastDotIndex, true);
+
+		if (packageNode.simpleNames == null) {
+			packageNode.simpleNames = new TreeSet<String>();
+		}
+
+		boolean added = packageNode.simpleNames.add(className.substring(lastDotIndex + 1));
+
+		if (added) {
+			size++;
+		}
+
+		return added;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends String> classNames) {
+
+		if (classNames == this) {
+			return false;
+		}
+
+		if (classNames instanceof PackageTrie) {
+
+			int size = this.size;
+			merge(root, ((PackageTrie) classNames).root);
+
+			return this.size != size;
+		}
+
+		return super.addAll(classNames);
+	}
+
+	@Override
+	public boolean contains(Object object) {
+
+		if (!(object instanceof String)) {
+			return false;
+		}
+
+		String className = (String) object;
+		int lastDotIndex = className.lastIndexOf('.');
+		PackageNode packageNode = getPackageNode(className, lastDotIndex, false);
+
+		return (packageNode != null) && (packageNode.simpleNames != null) &&
+			packageNode.simpleNames.contains(className.substring(lastDotIndex + 1));
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+
+		Iterator<PackageNode> packageNodes = getPackageNodes().iterator();
+
+		return new Iterator<String>() {
+
+				// Private Data Members
+				private PackageNode packageNode;
+				private Iterator<String> simpleNames = Collections.<String>emptyIterator();
+
+				@Override
+				public boolean hasNext() {
+
+					while (!simpleNames.hasNext() && packageNodes.hasNext()) {
+
+						packageNode = packageNodes.next();
+						simpleNames = packageNode.simpleNames.iterator();
+					}
+
+					return simpleNames.hasNext();
+				}
+
+				@Override
+				public String next() {
+
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					return packageNode.getClassName(simpleNames.next());
+				}
+			};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the name of the first class of each package in iteration order. Classes in the default package are
+	 * ignored since it cannot be imported.
+	 */
+	/* package-private */ List<String> getFirstClassNames() {
+
+		List<PackageNode> packageNodes = getPackageNodes();
+		List<String> firstClassNames = new ArrayList<String>(packageNodes.size());
+
+		for (PackageNode packageNode : packageNodes) {
+
+			if (packageNode != root) {
+				firstClassNames.add(packageNode.getClassName(packageNode.simpleNames.first()));
+			}
+		}
+
+		return firstClassNames;
+	}
+
+	/**
+	 * Returns the names of the packages of the classes in iteration order. Classes in the default package are ignored
+	 * since it cannot be imported.
+	 */
+	/* package-private */ List<String> getPackageNames() {
+
+		List<PackageNode> packageNodes = getPackageNodes();
+		List<String> packageNames = new ArrayList<String>(packageNodes.size());
+
+		for (PackageNode packageNode : packageNodes) {
+
+			if (packageNode != root) {
+				packageNames.add(packageNode.packageName);
+			}
+		}
+
+		return packageNames;
+	}
+
+	/**
+	 * Returns the node of the package of the class name, which ends at lastDotIndex, or null if the node does not
+	 * exist and create is false.
+	 */
+	private PackageNode getPackageNode(String className, int lastDotIndex, boolean create) {
+
+		PackageNode packageNode = root;
+		int start = 0;
+
+		while ((packageNode != null) && (start < lastDotIndex)) {
+
+			int end = className.indexOf('.', start);
+			String segment = className.substring(start, end);
+			PackageNode childPackageNode = null;
+
+			if (packageNode.children != null) {
+				childPackageNode = packageNode.children.get(segment);
+			}
+
+			if ((childPackageNode == null) && create) {
+
+				if (packageNode.children == null) {
+					packageNode.children = new TreeMap<String, PackageNode>();
+				}
+
+				childPackageNode = new PackageNode(className.substring(0, end));
+				packageNode.children.put(segment, childPackageNode);
+			}
+
+			packageNode = childPackageNode;
+			start = end + 1;
+		}
+
+		return packageNode;
+	}
+
+	/**
+	 * Returns the nodes that contain classes in depth-first order.
+	 */
+	private List<PackageNode> getPackageNodes() {
+
+		List<PackageNode> packageNodes = new ArrayList<PackageNode>();
+		List<PackageNode> stack = new ArrayList<PackageNode>();
+		stack.add(root);
+
+		while (!stack.isEmpty()) {
+
+			PackageNode packageNode = stack.remove(stack.size() - 1);
+
+			if ((packageNode.simpleNames != null) && !packageNode.simpleNames.isEmpty()) {
+				packageNodes.add(packageNode);
+			}
+
+			if (packageNode.children != null) {
+
+				List<PackageNode> children = new ArrayList<PackageNode>(packageNode.children.values());
+
+				for (int i = children.size() - 1; i >= 0; i--) {
+					stack.add(children.get(i));
+				}
+			}
+		}
+
+		return packageNodes;
+	}
+
+	private void merge(PackageNode packageNode, PackageNode otherPackageNode) {
+
+		if (otherPackageNode.simpleNames != null) {
+
+			if (packageNode.simpleNames == null) {
+
+				// Copying a sorted set into an empty tree set takes linear time.
+				packageNode.simpleNames = new TreeSet<String>(otherPackageNode.simpleNames);
+				size += packageNode.simpleNames.size();
+			}
+			else {
+
+				for (String simpleName : otherPackageNode.simpleNames) {
+
+					if (packageNode.simpleNames.add(simpleName)) {
+						size++;
+					}
+				}
+			}
+		}
+
+		if (otherPackageNode.children != null) {
+
+			if (packageNode.children == null) {
+				packageNode.children = new TreeMap<String, PackageNode>();
+			}
+
+			for (Map.Entry<String, PackageNode> otherChild : otherPackageNode.children.entrySet()) {
+
+				PackageNode childPackageNode = packageNode.children.get(otherChild.getKey());
+
+				if (childPackageNode == null) {
+
+					childPackageNode = new PackageNode(otherChild.getValue().packageName);
+					packageNode.children.put(otherChild.getKey(), childPackageNode);
+				}
+
+				merge(childPackageNode, otherChild.getValue());
+			}
+		}
+	}
+
+	private static final class PackageNode {
+
+		// Private Final Data Members
+		private final String packageName;
+
+		// Private Data Members
+		private Map<String, PackageNode> children;
+		private TreeSet<String> simpleNames;
+
+		private PackageNode(String packageName) {
+			this.packageName = packageName;
+		}
+
+		private String getClassName(String simpleName) {
+
+			if (packageName.isEmpty()) {
+				return simpleName;
+			}
+
+			return packageName + "." + simpleName;
+		}
+	}
+}
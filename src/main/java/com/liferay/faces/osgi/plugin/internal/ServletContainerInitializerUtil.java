@@ -14,14 +14,31 @@
 package com.liferay.faces.osgi.plugin.internal;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.artifact.Artifact;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 
 /**
@@ -29,10 +46,73 @@ import java.util.Set;
  */
 /* package-private */ final class ServletContainerInitializerUtil {
 
+	// Private Constants
+	private static final String HANDLES_TYPES_DESCRIPTOR = "Ljavax/servlet/annotation/HandlesTypes;";
+
 	private ServletContainerInitializerUtil() {
 		throw new AssertionError();
 	}
 
+	private static void addClassEntries(File file, List<FacesArchive> facesArchives,
+		Map<String, ClassEntry> classEntries, List<String> internalClassNames) throws IOException {
+
+		FacesArchive facesArchive;
+
+		if (file.isDirectory()) {
+			facesArchive = FacesDirectoryArchive.open(file);
+		}
+		else {
+			facesArchive = FacesJarArchive.open(file);
+		}
+
+		facesArchives.add(facesArchive);
+
+		for (int classEntry : facesArchive.getClassEntries()) {
+
+			String internalClassName = ClassNameIndex.getInternalClassName(facesArchive.getName(classEntry));
+
+			// A class of the web application hides a provided class with the same name, as it would at runtime.
+			if ((internalClassName != null) && !classEntries.containsKey(internalClassName)) {
+
+				classEntries.put(internalClassName, new ClassEntry(facesArchive, classEntry));
+
+				if (internalClassNames != null) {
+					internalClassNames.add(internalClassName);
+				}
+			}
+		}
+	}
+
+	private static ClassInfoClassVisitorImpl getClassInfo(String internalClassName,
+		Map<String, ClassEntry> classEntries, Map<String, ClassInfoClassVisitorImpl> classInfos) throws IOException {
+
+		if (classInfos.containsKey(internalClassName)) {
+			return classInfos.get(internalClassName);
+		}
+
+		ClassInfoClassVisitorImpl classInfo = null;
+		ClassEntry classEntry = classEntries.get(internalClassName);
+
+		if (classEntry != null) {
+
+			classInfo = new ClassInfoClassVisitorImpl();
+
+			try {
+				new ClassReader(classEntry.facesArchive.getBytes(classEntry.entry)).accept(classInfo,
+					ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			}
+			catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+
+				// A class that cannot be parsed cannot be matched either.
+				classInfo = null;
+			}
+		}
+
+		classInfos.put(internalClassName, classInfo);
+
+		return classInfo;
+	}
+
 	/* package-private */ static Set<String> getDefaultClassNames() throws IOException {
 
 		Set<String> servletConainerIntializerClasses = new LinkedHashSet<String>();
@@ -63,4 +143,222 @@ import java.util.Set;
 
 		return Collections.unmodifiableSet(servletConainerIntializerClasses);
 	}
+
+	/**
+	 * Returns the names of the classes of the web application that each initializer would receive from the container:
+	 * the classes that extend or implement (directly or through their superclasses and interfaces) or are annotated
+	 * with one of the types of the {@link javax.servlet.annotation.HandlesTypes} annotation of the initializer. The
+	 * superclasses and interfaces of the classes are looked up in the web application files and then in the provided
+	 * files. Initializers that are found in neither are omitted, since the types they handle are unknown.
+	 *
+	 * @param  webApplicationFiles  The jars and class directories of the web application, in classpath order.
+	 * @param  providedFiles        The provided jars and class directories, which are only used to look up the
+	 *                              initializers and the superclasses and interfaces of the classes.
+	 */
+	/* package-private */ static Map<String, Set<String>> getHandledClassNames(
+		Set<String> servletContainerInitializerClassNames, Collection<File> webApplicationFiles,
+		Collection<File> providedFiles) throws IOException {
+
+		List<FacesArchive> facesArchives = new ArrayList<FacesArchive>();
+
+		try {
+
+			Map<String, ClassEntry> classEntries = new HashMap<String, ClassEntry>();
+			List<String> webApplicationClassNames = new ArrayList<String>();
+
+			for (File webApplicationFile : webApplicationFiles) {
+				addClassEntries(webApplicationFile, facesArchives, classEntries, webApplicationClassNames);
+			}
+
+			for (File providedFile : providedFiles) {
+				addClassEntries(providedFile, facesArchives, classEntries, null);
+			}
+
+			Map<String, ClassInfoClassVisitorImpl> classInfos = new HashMap<String, ClassInfoClassVisitorImpl>();
+			Map<String, Set<String>> handledClassNames = new LinkedHashMap<String, Set<String>>();
+
+			for (String servletContainerInitializerClassName : servletContainerInitializerClassNames) {
+
+				ClassInfoClassVisitorImpl servletContainerInitializerClassInfo = getClassInfo(ClassNameIndex
+						.getInternalClassNameOfClassName(servletContainerInitializerClassName), classEntries,
+						classInfos);
+
+				if (servletContainerInitializerClassInfo == null) {
+					continue;
+				}
+
+				Set<String> handledTypes = servletContainerInitializerClassInfo.handlesTypes;
+				Set<String> classNames = new TreeSet<String>();
+
+				if (!handledTypes.isEmpty()) {
+
+					Map<String, Boolean> handledSupertypes = new HashMap<String, Boolean>();
+
+					for (String webApplicationClassName : webApplicationClassNames) {
+
+						ClassInfoClassVisitorImpl classInfo = getClassInfo(webApplicationClassName, classEntries,
+								classInfos);
+
+						if ((classInfo != null) &&
+								(!Collections.disjoint(classInfo.annotations, handledTypes) ||
+									isHandled(classInfo, handledTypes, handledSupertypes, classEntries, classInfos))) {
+							classNames.add(Type.getObjectType(webApplicationClassName).getClassName());
+						}
+					}
+				}
+
+				handledClassNames.put(servletContainerInitializerClassName, classNames);
+			}
+
+			return handledClassNames;
+		}
+		finally {
+
+			for (FacesArchive facesArchive : facesArchives) {
+				CloseableUtil.close(facesArchive);
+			}
+		}
+	}
+
+	/**
+	 * Returns the class directory followed by the jars that are packaged in the WEB-INF/lib directory of the WAR, in
+	 * classpath order. Compile and runtime artifacts are packaged, so the artifacts must have been resolved with the
+	 * runtime scope for the runtime jars to be included.
+	 */
+	/* package-private */ static List<File> getWebApplicationFiles(File classesDirectory,
+		Collection<Artifact> artifacts) {
+
+		List<File> webApplicationFiles = new ArrayList<File>();
+
+		if (classesDirectory.isDirectory()) {
+			webApplicationFiles.add(classesDirectory);
+		}
+
+		for (Artifact artifact : artifacts) {
+
+			String scope = artifact.getScope();
+
+			if ((Artifact.SCOPE_COMPILE.equals(scope) || Artifact.SCOPE_RUNTIME.equals(scope)) &&
+					"jar".equalsIgnoreCase(artifact.getType()) && (artifact.getFile() != null)) {
+				webApplicationFiles.add(artifact.getFile());
+			}
+		}
+
+		return webApplicationFiles;
+	}
+
+	/**
+	 * Returns true if one of the superclasses or interfaces of the class is a handled type. Whether each supertype is
+	 * handled is remembered across classes, and a supertype that is being checked is treated as not handled, so cyclic
+	 * hierarchies of broken class files terminate.
+	 */
+	private static boolean isHandled(ClassInfoClassVisitorImpl classInfo, Set<String> handledTypes,
+		Map<String, Boolean> handledSupertypes, Map<String, ClassEntry> classEntries,
+		Map<String, ClassInfoClassVisitorImpl> classInfos) throws IOException {
+
+		for (String supertype : classInfo.supertypes) {
+
+			if (handledTypes.contains(supertype)) {
+				return true;
+			}
+
+			Boolean handled = handledSupertypes.get(supertype);
+
+			if (handled == null) {
+
+				handledSupertypes.put(supertype, Boolean.FALSE);
+
+				ClassInfoClassVisitorImpl supertypeClassInfo = getClassInfo(supertype, classEntries, classInfos);
+				handled = (supertypeClassInfo != null) &&
+					isHandled(supertypeClassInfo, handledTypes, handledSupertypes, classEntries, classInfos);
+				handledSupertypes.put(supertype, handled);
+			}
+
+			if (handled) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static final class ClassEntry {
+
+		// Private Final Data Members
+		private final int entry;
+		private final FacesArchive facesArchive;
+
+		private ClassEntry(FacesArchive facesArchive, int entry) {
+
+			this.facesArchive = facesArchive;
+			this.entry = entry;
+		}
+	}
+
+	/**
+	 * Collects the superclass, interfaces and annotations of a class, and the types of its HandlesTypes annotation, as
+	 * internal names.
+	 */
+	private static final class ClassInfoClassVisitorImpl extends ClassVisitor {
+
+		// Private Final Data Members
+		private final Set<String> annotations = new HashSet<String>();
+		private final Set<String> handlesTypes = new LinkedHashSet<String>();
+		private final List<String> supertypes = new ArrayList<String>();
+
+		private ClassInfoClassVisitorImpl() {
+			super(Opcodes.ASM5);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName,
+			String[] interfaces) {
+
+			if (superName != null) {
+				supertypes.add(superName);
+			}
+
+			if (interfaces != null) {
+				Collections.addAll(supertypes, interfaces);
+			}
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+
+			annotations.add(Type.getType(descriptor).getInternalName());
+
+			if (HANDLES_TYPES_DESCRIPTOR.equals(descriptor)) {
+				return new HandlesTypesAnnotationVisitorImpl(handlesTypes);
+			}
+
+			return null;
+		}
+	}
+
+	private static final class HandlesTypesAnnotationVisitorImpl extends AnnotationVisitor {
+
+		// Private Final Data Members
+		private final Set<String> handlesTypes;
+
+		private HandlesTypesAnnotationVisitorImpl(Set<String> handlesTypes) {
+
+			super(Opcodes.ASM5);
+
+			this.handlesTypes = handlesTypes;
+		}
+
+		@Override
+		public void visit(String name, Object value) {
+
+			if (value instanceof Type) {
+				handlesTypes.add(((Type) value).getInternalName());
+			}
+		}
+
+		@Override
+		public AnnotationVisitor visitArray(String name) {
+			return this;
+		}
+	}
 }
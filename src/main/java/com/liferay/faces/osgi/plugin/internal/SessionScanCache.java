@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.execution.MavenSession;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+
+/**
+ * A cache of {@link FacesJarScanResult}s that lives as long as the Maven session, so that the modules of a reactor
+ * build scan each provided jar only once. Results are keyed by the artifact's groupId:artifactId:version and the path
+ * of its file, and are validated with the size and last modified time of the file, so a jar is never opened or hashed
+ * to find its result. A result is discarded if the file changed during the session.
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class SessionScanCache {
+
+	// Private Final Data Members
+	private final Map<String, CacheEntry> cacheEntries = new ConcurrentHashMap<String, CacheEntry>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private SessionScanCache() {
+		// Instances are obtained through getInstance().
+	}
+
+	/**
+	 * Returns the cache of the session, creating it if necessary. The cache is stored in the session data of the
+	 * repository session, which is shared by every module of the reactor.
+	 */
+	/* package-private */ static SessionScanCache getInstance(MavenSession mavenSession) {
+
+		RepositorySystemSession repositorySystemSession = mavenSession.getRepositorySession();
+		SessionData sessionData = repositorySystemSession.getData();
+
+		// The class is unique per plugin class realm, so plugins of different versions never share a cache.
+		Object key = SessionScanCache.class;
+		SessionScanCache sessionScanCache = (SessionScanCache) sessionData.get(key);
+
+		while (sessionScanCache == null) {
+
+			sessionData.set(key, null, new SessionScanCache());
+			sessionScanCache = (SessionScanCache) sessionData.get(key);
+		}
+
+		return sessionScanCache;
+	}
+
+	/* package-private */ long getHits() {
+		return hits.get();
+	}
+
+	/* package-private */ long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns a view of the cache for the jars of a single mojo execution.
+	 *
+	 * @param  artifactIds    The groupId:artifactId:version of each Faces jar.
+	 * @param  configuration  The scan configuration, since results scanned with a different configuration may differ.
+	 */
+	/* package-private */ View getView(Map<File, String> artifactIds, String configuration) {
+		return new View(artifactIds, configuration);
+	}
+
+	private static final class CacheEntry {
+
+		// Private Final Data Members
+		private final FacesJarScanResult facesJarScanResult;
+		private final FileStamp fileStamp;
+
+		private CacheEntry(FileStamp fileStamp, FacesJarScanResult facesJarScanResult) {
+
+			this.fileStamp = fileStamp;
+			this.facesJarScanResult = facesJarScanResult;
+		}
+	}
+
+	/* package-private */ final class View implements FacesJarScanResultCache {
+
+		// Private Final Data Members
+		private final Map<File, String> artifactIds;
+		private final String configuration;
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+
+		private View(Map<File, String> artifactIds, String configuration) {
+
+			this.artifactIds = artifactIds;
+			this.configuration = configuration;
+		}
+
+		@Override
+		public FacesJarScanResult get(File facesJar) {
+
+			FacesJarScanResult facesJarScanResult = null;
+			String key = getKey(facesJar);
+
+			if (key != null) {
+
+				CacheEntry cacheEntry = cacheEntries.get(key);
+
+				if ((cacheEntry != null) && cacheEntry.fileStamp.equals(FileStamp.get(facesJar))) {
+					facesJarScanResult = cacheEntry.facesJarScanResult;
+				}
+			}
+
+			if (facesJarScanResult == null) {
+
+				misses.incrementAndGet();
+				SessionScanCache.this.misses.incrementAndGet();
+			}
+			else {
+
+				hits.incrementAndGet();
+				SessionScanCache.this.hits.incrementAndGet();
+			}
+
+			return facesJarScanResult;
+		}
+
+		/* package-private */ long getHits() {
+			return hits.get();
+		}
+
+		/* package-private */ long getMisses() {
+			return misses.get();
+		}
+
+		@Override
+		public void put(FacesJarScanResult facesJarScanResult) {
+
+			File facesJar = facesJarScanResult.getFacesJar();
+			String key = getKey(facesJar);
+
+			if (key != null) {
+				cacheEntries.put(key, new CacheEntry(FileStamp.get(facesJar), facesJarScanResult));
+			}
+		}
+
+		private String getKey(File facesJar) {
+
+			String artifactId = artifactIds.get(facesJar);
+
+			if (artifactId == null) {
+				return null;
+			}
+
+			return artifactId + "|" + facesJar.getAbsolutePath() + "|" + configuration;
+		}
+	}
+}
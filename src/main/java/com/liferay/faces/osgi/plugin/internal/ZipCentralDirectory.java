@@ -0,0 +1,567 @@
+/**
+ * Copyright (c) 2000-2019 Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.liferay.faces.osgi.plugin.internal;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+
+/**
+ * A reader of the entries of a zip file that only maps the central directory of the file. Entry names can be compared
+ * with byte sequences without decoding them, and the content of an entry is only read and inflated when it is
+ * requested, so the entries that are not needed are never touched. Unlike {@link java.util.jar.JarFile}, the reader
+ * neither parses the manifest nor verifies signatures.
+ *
+ * <p>Stored and deflated entries, ZIP64 archives and archives with prepended data (such as self-extracting archives)
+ * are supported. Encrypted entries are not.</p>
+ *
+ * @author  Kyle Stiemann
+ */
+/* package-private */ final class ZipCentralDirectory implements Closeable {
+
+	// Private Constants
+	private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014B50;
+	private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+	private static final int DEFLATED = 8;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054B50;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	private static final int ENCRYPTED_FLAG = 1;
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034B50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+	private static final int MAX_ENTRY_SIZE = Integer.MAX_VALUE - 8;
+	private static final int STORED = 0;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064B50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064B50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+	private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+	private static final long ZIP64_MAGIC_VALUE = 0xFFFFFFFFL;
+
+	// Private Final Data Members
+	private final ByteBuffer centralDirectory;
+	private final int entryCount;
+	private final int[] entryPositions;
+	private final FileChannel fileChannel;
+	private final long localHeaderOffsetShift;
+
+	private ZipCentralDirectory(FileChannel fileChannel, ByteBuffer centralDirectory, long localHeaderOffsetShift)
+		throws ZipException {
+
+		this.fileChannel = fileChannel;
+		this.centralDirectory = centralDirectory;
+		this.localHeaderOffsetShift = localHeaderOffsetShift;
+
+		// The entry count of the end of central directory record may have overflowed, so the entries are counted.
+		int[] entryPositions = new int[64];
+		int entryCount = 0;
+		int position = 0;
+		int limit = centralDirectory.limit();
+
+		while (position < limit) {
+
+			if (((limit - position) < CENTRAL_DIRECTORY_HEADER_SIZE) ||
+					(centralDirectory.getInt(position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE)) {
+				throw new ZipException("Invalid central directory header.");
+			}
+
+			if (entryCount == entryPositions.length) {
+				entryPositions = Arrays.copyOf(entryPositions, entryCount * 2);
+			}
+
+			entryPositions[entryCount++] = position;
+			position += CENTRAL_DIRECTORY_HEADER_SIZE + getUnsignedShort(centralDirectory, position + 28) +
+				getUnsignedShort(centralDirectory, position + 30) + getUnsignedShort(centralDirectory, position + 32);
+		}
+
+		this.entryCount = entryCount;
+		this.entryPositions = entryPositions;
+	}
+
+	/**
+	 * Opens the zip file and maps its central directory.
+	 *
+	 * @throws  ZipException  if the file is not a zip file or its central directory is invalid.
+	 */
+	/* package-private */ static ZipCentralDirectory open(File file) throws IOException {
+
+		FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		boolean opened = false;
+
+		try {
+
+			long size = fileChannel.size();
+
+			if (size < END_OF_CENTRAL_DIRECTORY_SIZE) {
+				throw new ZipException("Zip END header not found.");
+			}
+
+			// The end of central directory record is followed by a comment of up to 64 KB.
+			int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_LENGTH);
+			long tailPosition = size - tailSize;
+			ByteBuffer tail = read(fileChannel, tailPosition, tailSize);
+			int endPosition = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE;
+
+			while ((endPosition >= 0) &&
+					((tail.getInt(endPosition) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) ||
+						((endPosition + END_OF_CENTRAL_DIRECTORY_SIZE + getUnsignedShort(tail, endPosition + 20)) >
+							tailSize))) {
+				endPosition--;
+			}
+
+			if (endPosition < 0) {
+				throw new ZipException("Zip END header not found.");
+			}
+
+			long endOffset = tailPosition + endPosition;
+			long centralDirectoryEnd = endOffset;
+			long centralDirectorySize = getUnsignedInt(tail, endPosition + 12);
+			long centralDirectoryOffset = getUnsignedInt(tail, endPosition + 16);
+
+			if ((centralDirectorySize == ZIP64_MAGIC_VALUE) || (centralDirectoryOffset == ZIP64_MAGIC_VALUE) ||
+					(getUnsignedShort(tail, endPosition + 10) == 0xFFFF)) {
+
+				long zip64EndOffset = getZip64EndOffset(fileChannel, endOffset);
+
+				if (zip64EndOffset > -1) {
+
+					ByteBuffer zip64End = read(fileChannel, zip64EndOffset, ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+
+					if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+						throw new ZipException("Invalid ZIP64 END header.");
+					}
+
+					centralDirectoryEnd = zip64EndOffset;
+					centralDirectorySize = zip64End.getLong(40);
+					centralDirectoryOffset = zip64End.getLong(48);
+				}
+			}
+
+			// Data prepended to the archive shifts every offset that is recorded in it.
+			long centralDirectoryStart = centralDirectoryEnd - centralDirectorySize;
+			long localHeaderOffsetShift = centralDirectoryStart - centralDirectoryOffset;
+
+			if ((centralDirectorySize > Integer.MAX_VALUE) || (centralDirectoryStart < 0) ||
+					(localHeaderOffsetShift < 0)) {
+				throw new ZipException("Invalid central directory.");
+			}
+
+			ByteBuffer centralDirectory = fileChannel.map(FileChannel.MapMode.READ_ONLY, centralDirectoryStart,
+					centralDirectorySize).order(ByteOrder.LITTLE_ENDIAN);
+			ZipCentralDirectory zipCentralDirectory = new ZipCentralDirectory(fileChannel, centralDirectory,
+					localHeaderOffsetShift);
+			opened = true;
+
+			return zipCentralDirectory;
+		}
+		finally {
+
+			if (!opened) {
+				CloseableUtil.close(fileChannel);
+			}
+		}
+	}
+
+	private static int getUnsignedShort(ByteBuffer byteBuffer, int index) {
+		return byteBuffer.getShort(index) & 0xFFFF;
+	}
+
+	private static long getUnsignedInt(ByteBuffer byteBuffer, int index) {
+		return byteBuffer.getInt(index) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Returns the offset of the ZIP64 end of central directory record, or -1 if the archive does not have a ZIP64 end
+	 * of central directory locator.
+	 */
+	private static long getZip64EndOffset(FileChannel fileChannel, long endOffset) throws IOException {
+
+		long locatorOffset = endOffset - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE;
+
+		if (locatorOffset < 0) {
+			return -1;
+		}
+
+		ByteBuffer locator = read(fileChannel, locatorOffset, ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE);
+
+		if (locator.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+			return -1;
+		}
+
+		long zip64EndOffset = locator.getLong(8);
+
+		// The recorded offset does not account for prepended data, but the record usually precedes the locator.
+		long precedingZip64EndOffset = locatorOffset - ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE;
+
+		if ((zip64EndOffset != precedingZip64EndOffset) && (precedingZip64EndOffset >= 0) &&
+				(read(fileChannel, precedingZip64EndOffset, 4).getInt(0) == ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE)) {
+			zip64EndOffset = precedingZip64EndOffset;
+		}
+
+		return zip64EndOffset;
+	}
+
+	private static ByteBuffer read(FileChannel fileChannel, long position, int length) throws IOException {
+
+		ByteBuffer byteBuffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (byteBuffer.hasRemaining()) {
+
+			if (fileChannel.read(byteBuffer, position + byteBuffer.position()) < 0) {
+				throw new EOFException("Unexpected end of zip file.");
+			}
+		}
+
+		byteBuffer.flip();
+
+		return byteBuffer;
+	}
+
+	@Override
+	public void close() throws IOException {
+		fileChannel.close();
+	}
+
+	/**
+	 * Returns the content of the entry. Deflated entries are inflated.
+	 *
+	 * @throws  ZipException  if the entry is encrypted, uses an unsupported compression method or is corrupt.
+	 */
+	/* package-private */ byte[] getBytes(int entry) throws IOException {
+
+		EntryData entryData = getEntryData(entry);
+		int method = entryData.method;
+		long compressedSize = entryData.compressedSize;
+		long size = entryData.size;
+		long dataPosition = entryData.dataPosition;
+
+		if ((size > MAX_ENTRY_SIZE) || (compressedSize > MAX_ENTRY_SIZE)) {
+			throw new ZipException("Entry " + getName(entry) + " is too large.");
+		}
+
+		if (method == STORED) {
+			return read(fileChannel, dataPosition, (int) size).array();
+		}
+
+		// The inflater needs an extra dummy byte when the zlib header and checksum are omitted.
+		ByteBuffer compressedBytes = ByteBuffer.allocate((int) compressedSize + 1);
+		compressedBytes.limit((int) compressedSize);
+
+		while (compressedBytes.hasRemaining()) {
+
+			if (fileChannel.read(compressedBytes, dataPosition + compressedBytes.position()) < 0) {
+				throw new EOFException("Unexpected end of zip file.");
+			}
+		}
+
+		byte[] bytes = new byte[(int) size];
+		Inflater inflater = new Inflater(true);
+
+		try {
+
+			inflater.setInput(compressedBytes.array(), 0, (int) compressedSize + 1);
+
+			int length = 0;
+
+			while ((length < bytes.length) && !inflater.finished()) {
+
+				int inflatedLength = inflater.inflate(bytes, length, bytes.length - length);
+
+				if ((inflatedLength == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				length += inflatedLength;
+			}
+
+			if (length != bytes.length) {
+				throw new ZipException("Invalid size of entry " + getName(entry) + ".");
+			}
+		}
+		catch (DataFormatException e) {
+			throw new ZipException("Invalid compressed data of entry " + getName(entry) + ": " + e.getMessage());
+		}
+		finally {
+			inflater.end();
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Returns a stream of the content of the entry. Unlike {@link #getBytes(int)}, the entry is read and inflated in
+	 * chunks of the buffer size while the stream is read, so its content is never held in memory as a whole.
+	 */
+	/* package-private */ InputStream getInputStream(int entry, int bufferSize) throws IOException {
+
+		EntryData entryData = getEntryData(entry);
+
+		if (entryData.method == STORED) {
+			return new BufferedInputStream(new EntryInputStream(fileChannel, entryData.dataPosition, entryData.size,
+						false), bufferSize);
+		}
+
+		// The inflater needs an extra dummy byte when the zlib header and checksum are omitted.
+		Inflater inflater = new Inflater(true);
+
+		return new InflaterInputStream(new EntryInputStream(fileChannel, entryData.dataPosition,
+					entryData.compressedSize, true), inflater, bufferSize) {
+
+				// Private Data Members
+				private boolean closed;
+
+				@Override
+				public void close() throws IOException {
+
+					if (!closed) {
+
+						closed = true;
+						super.close();
+						inflater.end();
+					}
+				}
+			};
+	}
+
+	/* package-private */ int getEntryCount() {
+		return entryCount;
+	}
+
+	/* package-private */ String getName(int entry) {
+
+		int position = entryPositions[entry];
+		byte[] name = new byte[getUnsignedShort(centralDirectory, position + 28)];
+
+		for (int i = 0; i < name.length; i++) {
+			name[i] = centralDirectory.get(position + CENTRAL_DIRECTORY_HEADER_SIZE + i);
+		}
+
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns true if the UTF-8 encoded name of the entry ends with the bytes.
+	 */
+	/* package-private */ boolean nameEndsWith(int entry, byte[] suffix) {
+
+		int position = entryPositions[entry];
+		int nameLength = getUnsignedShort(centralDirectory, position + 28);
+
+		return (nameLength >= suffix.length) &&
+			regionMatches(position + CENTRAL_DIRECTORY_HEADER_SIZE + nameLength - suffix.length, suffix);
+	}
+
+	/**
+	 * Returns true if the UTF-8 encoded name of the entry is equal to the bytes.
+	 */
+	/* package-private */ boolean nameEquals(int entry, byte[] name) {
+
+		int position = entryPositions[entry];
+
+		return (getUnsignedShort(centralDirectory, position + 28) == name.length) &&
+			regionMatches(position + CENTRAL_DIRECTORY_HEADER_SIZE, name);
+	}
+
+	/**
+	 * Returns true if the UTF-8 encoded name of the entry starts with the bytes.
+	 */
+	/* package-private */ boolean nameStartsWith(int entry, byte[] prefix) {
+
+		int position = entryPositions[entry];
+
+		return (getUnsignedShort(centralDirectory, position + 28) >= prefix.length) &&
+			regionMatches(position + CENTRAL_DIRECTORY_HEADER_SIZE, prefix);
+	}
+
+	private EntryData getEntryData(int entry) throws IOException {
+
+		int position = entryPositions[entry];
+
+		if ((getUnsignedShort(centralDirectory, position + 8) & ENCRYPTED_FLAG) != 0) {
+			throw new ZipException("Encrypted entry " + getName(entry) + ".");
+		}
+
+		int method = getUnsignedShort(centralDirectory, position + 10);
+		long compressedSize = getUnsignedInt(centralDirectory, position + 20);
+		long size = getUnsignedInt(centralDirectory, position + 24);
+		long localHeaderOffset = getUnsignedInt(centralDirectory, position + 42);
+
+		if ((method != STORED) && (method != DEFLATED)) {
+			throw new ZipException("Unsupported compression method " + method + " of entry " + getName(entry) + ".");
+		}
+
+		if ((size == ZIP64_MAGIC_VALUE) || (compressedSize == ZIP64_MAGIC_VALUE) ||
+				(localHeaderOffset == ZIP64_MAGIC_VALUE)) {
+
+			// The ZIP64 extra field only contains the values that did not fit, in this order.
+			int extraFieldPosition = position + CENTRAL_DIRECTORY_HEADER_SIZE +
+				getUnsignedShort(centralDirectory, position + 28);
+			int extraFieldEnd = extraFieldPosition + getUnsignedShort(centralDirectory, position + 30);
+
+			while ((extraFieldPosition + 4) <= extraFieldEnd) {
+
+				int extraFieldId = getUnsignedShort(centralDirectory, extraFieldPosition);
+				int extraFieldSize = getUnsignedShort(centralDirectory, extraFieldPosition + 2);
+
+				if (extraFieldId == ZIP64_EXTRA_FIELD_ID) {
+
+					int valuePosition = extraFieldPosition + 4;
+
+					if (size == ZIP64_MAGIC_VALUE) {
+
+						size = centralDirectory.getLong(valuePosition);
+						valuePosition += 8;
+					}
+
+					if (compressedSize == ZIP64_MAGIC_VALUE) {
+
+						compressedSize = centralDirectory.getLong(valuePosition);
+						valuePosition += 8;
+					}
+
+					if (localHeaderOffset == ZIP64_MAGIC_VALUE) {
+						localHeaderOffset = centralDirectory.getLong(valuePosition);
+					}
+
+					break;
+				}
+
+				extraFieldPosition += 4 + extraFieldSize;
+			}
+		}
+
+		long localHeaderPosition = localHeaderOffset + localHeaderOffsetShift;
+		ByteBuffer localHeader = read(fileChannel, localHeaderPosition, LOCAL_HEADER_SIZE);
+
+		if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+			throw new ZipException("Invalid local header of entry " + getName(entry) + ".");
+		}
+
+		long dataPosition = localHeaderPosition + LOCAL_HEADER_SIZE + getUnsignedShort(localHeader, 26) +
+			getUnsignedShort(localHeader, 28);
+
+		return new EntryData(method, compressedSize, size, dataPosition);
+	}
+
+	private boolean regionMatches(int position, byte[] bytes) {
+
+		for (int i = 0; i < bytes.length; i++) {
+
+			if (centralDirectory.get(position + i) != bytes[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static final class EntryData {
+
+		// Private Final Data Members
+		private final long compressedSize;
+		private final long dataPosition;
+		private final int method;
+		private final long size;
+
+		private EntryData(int method, long compressedSize, long size, long dataPosition) {
+
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.dataPosition = dataPosition;
+		}
+	}
+
+	/**
+	 * A stream of the raw data of an entry that reads the file channel at absolute positions, so the position of the
+	 * channel is never changed.
+	 */
+	private static final class EntryInputStream extends InputStream {
+
+		// Private Final Data Members
+		private final FileChannel fileChannel;
+
+		// Private Data Members
+		private boolean dummyByte;
+		private long position;
+		private long remaining;
+
+		private EntryInputStream(FileChannel fileChannel, long position, long length, boolean dummyByte) {
+
+			this.fileChannel = fileChannel;
+			this.position = position;
+			this.remaining = length;
+			this.dummyByte = dummyByte;
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			byte[] bytes = new byte[1];
+
+			if (read(bytes, 0, 1) < 0) {
+				return -1;
+			}
+
+			return bytes[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+
+			if (length == 0) {
+				return 0;
+			}
+
+			if (remaining == 0) {
+
+				if (dummyByte) {
+
+					dummyByte = false;
+					bytes[offset] = 0;
+
+					return 1;
+				}
+
+				return -1;
+			}
+
+			int lengthRead = fileChannel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, remaining)),
+					position);
+
+			if (lengthRead < 0) {
+				throw new EOFException("Unexpected end of zip file.");
+			}
+
+			position += lengthRead;
+			remaining -= lengthRead;
+
+			return lengthRead;
+		}
+	}
+}
@@ -13,35 +13,90 @@
  */
 package com.liferay.faces.osgi.plugin.internal;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.CodeSource;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.ProtectionDomain;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
 
+import javax.faces.context.FacesContext;
+import javax.lang.model.SourceVersion;
 import javax.servlet.ServletContainerInitializer;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathException;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
 import com.liferay.faces.TestServletContainerInitializer;
 import com.liferay.faces.alloy.taghandler.LoadConstants;
 import com.liferay.faces.osgi.plugin.internal.a.TestClassA;
@@ -66,6 +121,85 @@ public final class UtilsTest {
 		return Collections.unmodifiableSet(expectedImportedFacesPackages);
 	}
 
+	private static byte[] getAnnotatedClassBytes(String internalClassName, String annotationDescriptor) {
+
+		ClassWriter classWriter = new ClassWriter(0);
+		classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, internalClassName, null, "java/lang/Object", null);
+		classWriter.visitAnnotation(annotationDescriptor, true).visitEnd();
+		classWriter.visitEnd();
+
+		return classWriter.toByteArray();
+	}
+
+	private static byte[] getClassBytes(String internalClassName, int access, String superName,
+		String... interfaces) {
+
+		ClassWriter classWriter = new ClassWriter(0);
+		classWriter.visit(Opcodes.V1_8, access, internalClassName, null, superName, interfaces);
+		classWriter.visitEnd();
+
+		return classWriter.toByteArray();
+	}
+
+	/**
+	 * Returns the candidate class names selected by the DOM and XPath implementation that FacesXMLUtil used before it
+	 * switched to StAX.
+	 */
+	private static List<String> getDOMCandidateClassNames(byte[] xml) throws IOException, ParserConfigurationException,
+		XPathException {
+
+		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+		documentBuilder.setEntityResolver((publicId, systemId) -> {
+				return new InputSource(new ByteArrayInputStream(new byte[0]));
+			});
+
+		XPathFactory xpathFactory = XPathFactory.newInstance();
+		XPath xPath = xpathFactory.newXPath();
+		XPathExpression xPathExpression = xPath.compile("//*[count(./*) = 0][normalize-space(text())]");
+		List<String> candidateClassNames = new ArrayList<String>();
+
+		try {
+
+			Document document = documentBuilder.parse(new ByteArrayInputStream(xml));
+			NodeList nodeList = (NodeList) xPathExpression.evaluate(document, XPathConstants.NODESET);
+
+			for (int i = 0; i < nodeList.getLength(); i++) {
+
+				String textContent = nodeList.item(i).getTextContent();
+				textContent = textContent.replaceAll("[<][\\S\\s]*[>]", "");
+
+				if (textContent.contains(".") && !SourceVersion.isKeyword(textContent) &&
+						SourceVersion.isName(textContent)) {
+					candidateClassNames.add(textContent);
+				}
+			}
+		}
+		catch (SAXException e) {
+			throw new IOException(e);
+		}
+
+		return candidateClassNames;
+	}
+
+	private static File getJar(Class<?> clazz) throws URISyntaxException {
+
+		ProtectionDomain protectionDomain = clazz.getProtectionDomain();
+		CodeSource codeSource = protectionDomain.getCodeSource();
+		URL jarURL = codeSource.getLocation();
+
+		return new File(jarURL.toURI());
+	}
+
+	private static Artifact newArtifact(String scope, File file) {
+
+		Artifact artifact = new DefaultArtifact("com.example", file.getName(), "1.0", scope, "jar", null,
+				new DefaultArtifactHandler("jar"));
+		artifact.setFile(file);
+
+		return artifact;
+	}
+
 	private static <T> Set<T> unmodifiableSet(T... t) {
 		return unmodifiableSet(Collections.emptySet(), t);
 	}
@@ -105,6 +239,1055 @@ public final class UtilsTest {
 		}
 	}
 
+	@Test
+	public final void testFacesAnnotationUtil() throws IOException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			File facesJar = new File(temporaryDirectory.toFile(), "annotated.jar");
+
+			try(JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(facesJar))) {
+
+				jarOutputStream.putNextEntry(new JarEntry("com/example/component/TestComponent.class"));
+				jarOutputStream.write(getAnnotatedClassBytes("com/example/component/TestComponent",
+						"Ljavax/faces/component/FacesComponent;"));
+				jarOutputStream.putNextEntry(new JarEntry("com/example/validator/TestValidator.class"));
+				jarOutputStream.write(getAnnotatedClassBytes("com/example/validator/TestValidator",
+						"Ljavax/faces/validator/FacesValidator;"));
+				jarOutputStream.putNextEntry(new JarEntry("com/example/other/Deprecated.class"));
+				jarOutputStream.write(getAnnotatedClassBytes("com/example/other/Deprecated",
+						"Ljava/lang/Deprecated;"));
+			}
+
+			Map<String, String> expectedAnnotatedClassNames = new HashMap<String, String>();
+			expectedAnnotatedClassNames.put("com.example.component.TestComponent",
+				"javax.faces.component.FacesComponent");
+			expectedAnnotatedClassNames.put("com.example.validator.TestValidator",
+				"javax.faces.validator.FacesValidator");
+
+			Set<File> facesJars = unmodifiableSet(facesJar);
+			File scanCacheFile = new File(temporaryDirectory.toFile(), "scan-cache.bin");
+
+			for (int i = 0; i < 2; i++) {
+
+				// The second scan reads the annotated class names from the scan cache.
+				FacesJarScanCache facesJarScanCache = FacesJarScanCache.load(scanCacheFile, "", null);
+				Map<String, String> annotatedClassNames = new HashMap<String, String>();
+				Set<String> classNames = FacesXMLUtil.getClassNames(facesJars, null, 1, false,
+						Collections.singletonList(facesJarScanCache), null, annotatedClassNames, null);
+				facesJarScanCache.save();
+
+				Assert.assertEquals(expectedAnnotatedClassNames, annotatedClassNames);
+				Assert.assertEquals(expectedAnnotatedClassNames.keySet(), classNames);
+			}
+
+			Assert.assertEquals(Collections.emptySet(),
+				FacesXMLUtil.getClassNames(facesJars, null, 1, false, Collections.emptyList(), null, null, null));
+			Assert.assertEquals("@javax.faces.component.FacesComponent\ncom.example.component.TestComponent\n" +
+				"@javax.faces.validator.FacesValidator\ncom.example.validator.TestValidator\n",
+				new String(FacesAnnotationUtil.getFacesAnnotationIndex(expectedAnnotatedClassNames),
+					StandardCharsets.UTF_8));
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testFacesDescriptorIndex() throws IOException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			File facesJar = new File(temporaryDirectory.toFile(), "descriptors.jar");
+
+			try(JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(facesJar))) {
+
+				jarOutputStream.putNextEntry(new JarEntry(LiferayFacesOSGiPluginMojo.META_INF_FACES_CONFIG_XML));
+				jarOutputStream.write(("<faces-config xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\"><component>" +
+						"<component-type>test.Component</component-type><component-class>com.example.TestComponent" +
+						"</component-class><property><property-name>value</property-name></property></component>" +
+						"<converter><converter-id>test.Converter</converter-id><converter-class>" +
+						"com.example.TestConverter</converter-class></converter><converter><converter-for-class>" +
+						"java.util.Date</converter-for-class><converter-class>com.example.DateConverter" +
+						"</converter-class></converter><validator><validator-id>test.Validator</validator-id>" +
+						"<validator-class>com.example.TestValidator</validator-class></validator><render-kit>" +
+						"<renderer><component-family>test.Family</component-family><renderer-type>test.Renderer" +
+						"</renderer-type><renderer-class>com.example.TestRenderer</renderer-class></renderer>" +
+						"</render-kit></faces-config>").getBytes(StandardCharsets.UTF_8));
+				jarOutputStream.putNextEntry(new JarEntry("META-INF/test.taglib.xml"));
+				jarOutputStream.write(("<facelet-taglib><namespace>http://example.com/test</namespace><tag>" +
+						"<tag-name>component</tag-name><component><component-type>test.Component</component-type>" +
+						"<renderer-type>test.Renderer</renderer-type><handler-class>com.example.TestHandler" +
+						"</handler-class></component></tag><tag><tag-name>handler</tag-name><handler-class>" +
+						"com.example.OtherHandler</handler-class></tag></facelet-taglib>").getBytes(
+						StandardCharsets.UTF_8));
+			}
+
+			Map<String, String> descriptorMappings = new HashMap<String, String>();
+			FacesXMLUtil.getClassNames(unmodifiableSet(facesJar), null, 1, false, Collections.emptyList(), null, null,
+				descriptorMappings);
+
+			byte[] facesDescriptorIndexBytes = FacesDescriptorIndex.toByteArray(descriptorMappings);
+			Assert.assertArrayEquals(facesDescriptorIndexBytes,
+				FacesDescriptorIndex.toByteArray(new LinkedHashMap<String, String>(descriptorMappings)));
+
+			FacesDescriptorIndex facesDescriptorIndex = FacesDescriptorIndex.read(new ByteArrayInputStream(
+						facesDescriptorIndexBytes));
+			Assert.assertEquals(9, descriptorMappings.size());
+			Assert.assertEquals("com.example.TestComponent",
+				facesDescriptorIndex.getComponentClassName("test.Component"));
+			Assert.assertEquals("com.example.TestConverter",
+				facesDescriptorIndex.getConverterClassName("test.Converter"));
+			Assert.assertEquals("com.example.DateConverter",
+				facesDescriptorIndex.getConverterClassNameForClass("java.util.Date"));
+			Assert.assertEquals("com.example.TestValidator",
+				facesDescriptorIndex.getValidatorClassName("test.Validator"));
+			Assert.assertEquals("com.example.TestRenderer",
+				facesDescriptorIndex.getRendererClassName("test.Family", "test.Renderer"));
+			Assert.assertEquals("com.example.TestHandler",
+				facesDescriptorIndex.getTagHandlerClassName("http://example.com/test", "component"));
+			Assert.assertEquals("com.example.TestComponent",
+				facesDescriptorIndex.getTagComponentClassName("http://example.com/test", "component"));
+			Assert.assertEquals("test.Renderer",
+				facesDescriptorIndex.getTagRendererType("http://example.com/test", "component"));
+			Assert.assertEquals("com.example.OtherHandler",
+				facesDescriptorIndex.getTagHandlerClassName("http://example.com/test", "handler"));
+			Assert.assertNull(facesDescriptorIndex.getTagComponentType("http://example.com/test", "handler"));
+			Assert.assertTrue(FacesDescriptorIndex.getInstance().isEmpty());
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testFacesXMLUtilCandidateClassNames() throws IOException, URISyntaxException,
+		ParserConfigurationException, XPathException {
+
+		List<byte[]> xmls = new ArrayList<byte[]>();
+		String xml = "<?xml version=\"1.0\"?>\n" + "<facelet-taglib>\n" + "	<tag>\n" +
+			"		<handler-class>com.example.Handler</handler-class>\n" +
+			"		<component><component-type>com.example.Component</component-type></component>\n" +
+			"		<type>java.util.List&lt;java.lang.String&gt;</type>\n" +
+			"		<type>java.util.Map&lt;java.lang.String, java.util.List&lt;java.lang.String&gt;&gt;</type>\n" +
+			"		<a>  com.example.Padded  </a>\n" + "		<b><![CDATA[com.example.CData]]></b>\n" +
+			"		<c>com.example.<!-- comment -->Split</c>\n" + "		<d>   <!-- comment -->com.example.Ignored</d>\n" +
+			"		<e><!-- comment -->com.example.AfterComment</e>\n" + "		<f>com.example.<?pi?>Split</f>\n" +
+			"		<g>class</g>\n" + "		<h>com.example.class</h>\n" + "		<i>NoPackage</i>\n" + "		<j/>\n" +
+			"		<k>com.example.Outer$Inner</k>\n" + "	</tag>\n" + "	com.example.MixedContent\n" +
+			"</facelet-taglib>\n";
+		xmls.add(xml.getBytes(StandardCharsets.UTF_8));
+
+		for (File jar : unmodifiableSet(getJar(LoadConstants.class), getJar(FacesContext.class))) {
+
+			try(JarFile jarFile = new JarFile(jar)) {
+
+				Enumeration<JarEntry> jarEntries = jarFile.entries();
+
+				while (jarEntries.hasMoreElements()) {
+
+					JarEntry jarEntry = jarEntries.nextElement();
+
+					if (jarEntry.getName().endsWith(".xml")) {
+
+						try(InputStream inputStream = jarFile.getInputStream(jarEntry)) {
+							xmls.add(ClassFileUtil.getBytes(inputStream));
+						}
+					}
+				}
+			}
+		}
+
+		XMLInputFactory xmlInputFactory = FacesXMLUtil.newXMLInputFactory();
+
+		for (byte[] bytes : xmls) {
+
+			List<String> candidateClassNames = FacesXMLUtil.getCandidateClassNames(new ByteArrayInputStream(bytes),
+					xmlInputFactory);
+			Assert.assertEquals(getDOMCandidateClassNames(bytes), candidateClassNames);
+		}
+	}
+
+	@Test
+	public final void testFacesXMLUtilClassVerification() throws IOException {
+
+		Path temporaryDirectory = null;
+
+		try {
+
+			temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+			File facesJar = new File(temporaryDirectory.toFile(), "test.jar");
+			String existingClassName = TestClassA.class.getName();
+			String missingClassName = "com.example.MissingHandler";
+			String pluginClassName = String.class.getName();
+			String otherJarClassName = "com.example.OtherJarHandler";
+			File otherJar = new File(temporaryDirectory.toFile(), "other.jar");
+
+			try(JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(otherJar))) {
+				jarOutputStream.putNextEntry(new JarEntry(otherJarClassName.replace('.', '/') + ".class"));
+			}
+
+			try(JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(facesJar))) {
+
+				// The class file is empty since verification must never load the class.
+				jarOutputStream.putNextEntry(new JarEntry(existingClassName.replace('.', '/') + ".class"));
+				jarOutputStream.putNextEntry(new JarEntry("META-INF/test.taglib.xml"));
+				jarOutputStream.write(("<facelet-taglib><tag><handler-class>" + existingClassName +
+						"</handler-class><handler-class>" + missingClassName + "</handler-class><handler-class>" +
+						otherJarClassName + "</handler-class><type>" +
+						pluginClassName + "</type></tag></facelet-taglib>").getBytes(StandardCharsets.UTF_8));
+				jarOutputStream.putNextEntry(new JarEntry(LiferayFacesOSGiPluginMojo.META_INF_FACES_CONFIG_XML));
+				jarOutputStream.write(("<faces-config><component><component-class>com.example.Missing" +
+						"</component-class></component></faces-config>").getBytes(StandardCharsets.UTF_8));
+			}
+
+			Set<File> facesJars = unmodifiableSet(facesJar);
+			Assert.assertEquals(unmodifiableSet(existingClassName, pluginClassName, "com.example.Missing"),
+				new HashSet<String>(FacesXMLUtil.getClassNames(facesJars, null, 1, false, Collections.emptyList(),
+						null, null, null)));
+			Assert.assertEquals(unmodifiableSet(existingClassName, pluginClassName),
+				new HashSet<String>(FacesXMLUtil.getClassNames(facesJars, null, 1, true, Collections.emptyList(),
+						null, null, null)));
+
+			// Class names that are not found in their own jar are verified against all the Faces jars.
+			facesJars = unmodifiableSet(facesJar, otherJar);
+
+			File classNameIndexFile = new File(temporaryDirectory.toFile(), "class-name-index.bin");
+			Assert.assertEquals(unmodifiableSet(existingClassName, otherJarClassName, pluginClassName),
+				new HashSet<String>(FacesXMLUtil.getClassNames(facesJars, null, 1, true, Collections.emptyList(),
+					classNameIndexFile, null, null)));
+			Assert.assertTrue(classNameIndexFile.isFile());
+
+			// The low-memory mode finds the same class names with a class name index built from spilled runs.
+			Assert.assertTrue(classNameIndexFile.delete());
+			Assert.assertEquals(unmodifiableSet(existingClassName, otherJarClassName, pluginClassName),
+				new HashSet<String>(FacesXMLUtil.getClassNames(facesJars, null, 1, true, Collections.emptyList(),
+					classNameIndexFile, null, null, new BuildReport(), true)));
+			Assert.assertTrue(classNameIndexFile.isFile());
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testFacesXMLUtilDirectory() throws IOException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			String existingClassName = TestClassA.class.getName();
+			String otherModuleClassName = "com.example.OtherModuleHandler";
+			Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+			entries.put(existingClassName.replace('.', '/') + ".class", new byte[0]);
+			entries.put("com/example/component/TestComponent.class",
+				getAnnotatedClassBytes("com/example/component/TestComponent",
+					"Ljavax/faces/component/FacesComponent;"));
+			entries.put("com/example/Messages.properties", new byte[0]);
+			entries.put("META-INF/versions/9/com/example/Versioned.class", new byte[0]);
+			entries.put("META-INF/resources/test/test.taglib.xml",
+				("<facelet-taglib><namespace>http://example.com/test</namespace><tag><tag-name>test</tag-name>" +
+					"<handler-class>" + existingClassName + "</handler-class></tag><tag><tag-name>other</tag-name>" +
+					"<handler-class>" + otherModuleClassName + "</handler-class></tag><tag><handler-class>" +
+					"com.example.MissingHandler</handler-class></tag></facelet-taglib>").getBytes(
+					StandardCharsets.UTF_8));
+			entries.put(LiferayFacesOSGiPluginMojo.META_INF_FACES_CONFIG_XML,
+				("<faces-config><component><component-type>test</component-type><component-class>" +
+					"com.example.component.TestComponent</component-class></component></faces-config>").getBytes(
+					StandardCharsets.UTF_8));
+			entries.put("META-INF/test.faces-config.xml",
+				("<faces-config><converter><converter-id>test</converter-id><converter-class>" +
+					"com.example.TestConverter</converter-class></converter></faces-config>").getBytes(
+					StandardCharsets.UTF_8));
+
+			// Reactor modules that have not been packaged resolve to their target/classes directories.
+			File facesJar = new File(temporaryDirectory.toFile(), "test.jar");
+			File facesJarDirectory = new File(temporaryDirectory.toFile(), "test/target/classes");
+			File otherJar = new File(temporaryDirectory.toFile(), "other.jar");
+			File otherJarDirectory = new File(temporaryDirectory.toFile(), "other/target/classes");
+
+			try(JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(facesJar))) {
+
+				for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+
+					jarOutputStream.putNextEntry(new JarEntry(entry.getKey()));
+					jarOutputStream.write(entry.getValue());
+
+					File file = new File(facesJarDirectory, entry.getKey());
+					file.getParentFile().mkdirs();
+					Files.write(file.toPath(), entry.getValue());
+				}
+			}
+
+			try(JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(otherJar))) {
+				jarOutputStream.putNextEntry(new JarEntry(otherModuleClassName.replace('.', '/') + ".class"));
+			}
+
+			File otherClassFile = new File(otherJarDirectory, otherModuleClassName.replace('.', '/') + ".class");
+			otherClassFile.getParentFile().mkdirs();
+			Files.write(otherClassFile.toPath(), new byte[0]);
+
+			Map<String, String> annotatedClassNames = new HashMap<String, String>();
+			Map<String, String> descriptorMappings = new LinkedHashMap<String, String>();
+			Set<String> classNames = FacesXMLUtil.getClassNames(unmodifiableSet(facesJar, otherJar), null, 1, true,
+					Collections.emptyList(), new File(temporaryDirectory.toFile(), "jar-index.bin"),
+					annotatedClassNames, descriptorMappings);
+			Assert.assertEquals(unmodifiableSet(existingClassName, otherModuleClassName,
+					"com.example.component.TestComponent"), classNames);
+
+			for (int scanThreads : new int[] { 1, 4 }) {
+
+				Map<String, String> directoryAnnotatedClassNames = new HashMap<String, String>();
+				Map<String, String> directoryDescriptorMappings = new LinkedHashMap<String, String>();
+				Assert.assertEquals(classNames,
+					FacesXMLUtil.getClassNames(unmodifiableSet(facesJarDirectory, otherJarDirectory), null,
+						scanThreads, true, Collections.emptyList(),
+						new File(temporaryDirectory.toFile(), "directory-index.bin"), directoryAnnotatedClassNames,
+						directoryDescriptorMappings));
+				Assert.assertEquals(annotatedClassNames, directoryAnnotatedClassNames);
+				Assert.assertEquals(descriptorMappings, directoryDescriptorMappings);
+			}
+
+			// Adding a descriptor to the directory invalidates its cached scan result.
+			File scanCacheFile = new File(temporaryDirectory.toFile(), "scan-cache.bin");
+			FacesJarScanCache facesJarScanCache = FacesJarScanCache.load(scanCacheFile, "", null);
+			FacesXMLUtil.getClassNames(unmodifiableSet(facesJarDirectory), null, 1, false,
+				Collections.singletonList(facesJarScanCache), null, null, null);
+			facesJarScanCache.save();
+			facesJarScanCache = FacesJarScanCache.load(scanCacheFile, "", null);
+			Assert.assertNotNull(facesJarScanCache.get(facesJarDirectory));
+
+			String fingerprint = JarGeneratorUtil.getFingerprint("", unmodifiableSet(facesJarDirectory),
+					Collections.emptySet(), Collections.emptySet(), "");
+			Files.write(new File(facesJarDirectory, "META-INF/added.taglib.xml").toPath(),
+				"<facelet-taglib/>".getBytes(StandardCharsets.UTF_8));
+			Assert.assertNull(facesJarScanCache.get(facesJarDirectory));
+			Assert.assertNotEquals(fingerprint,
+				JarGeneratorUtil.getFingerprint("", unmodifiableSet(facesJarDirectory), Collections.emptySet(),
+					Collections.emptySet(), ""));
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testMappedClassNameIndex() throws IOException {
+
+		Path temporaryDirectory = null;
+
+		try {
+
+			temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+			List<String> internalClassNames = new ArrayList<String>();
+			List<String> missingInternalClassNames = new ArrayList<String>();
+
+			for (int i = 0; i < 1000; i++) {
+
+				String packageName = "com/liferay/faces/p" + (i % 7) + "/";
+				internalClassNames.add(packageName + "Class" + i);
+				internalClassNames.add(packageName + "Class" + i + "$Inner");
+				missingInternalClassNames.add(packageName + "Class" + i + "$");
+				missingInternalClassNames.add(packageName + "Clas" + i);
+				missingInternalClassNames.add(packageName + "Class" + i + "$Inner0");
+			}
+
+			// Duplicates must be removed.
+			internalClassNames.add(internalClassNames.get(0));
+			internalClassNames.add("\u00e9/\u00fc\u00c5");
+			missingInternalClassNames.add("");
+			missingInternalClassNames.add("a");
+			missingInternalClassNames.add("\uffff");
+
+			File indexFile = new File(temporaryDirectory.toFile(), "class-name-index.bin");
+			MappedClassNameIndex mappedClassNameIndex;
+			MappedClassNameIndex.Builder builder = new MappedClassNameIndex.Builder(indexFile,
+					internalClassNames.size() + 1);
+
+			try {
+
+				for (String internalClassName : internalClassNames) {
+					builder.add(internalClassName);
+				}
+
+				Assert.assertEquals(0, builder.getRunCount());
+				mappedClassNameIndex = builder.write("fingerprint");
+			}
+			finally {
+				builder.close();
+			}
+
+			Assert.assertEquals(2001, mappedClassNameIndex.size());
+
+			for (String internalClassName : internalClassNames) {
+				Assert.assertTrue(internalClassName, mappedClassNameIndex.contains(internalClassName));
+			}
+
+			Assert.assertTrue(mappedClassNameIndex.contains("com.liferay.faces.p0.Class0"));
+
+			for (String missingInternalClassName : missingInternalClassNames) {
+				Assert.assertFalse(missingInternalClassName, mappedClassNameIndex.contains(missingInternalClassName));
+			}
+
+			Assert.assertNull(MappedClassNameIndex.load(indexFile, "other"));
+			Assert.assertEquals(2001, MappedClassNameIndex.load(indexFile, "fingerprint").size());
+
+			// Class names that are spilled to sorted runs produce an identical index.
+			File spilledIndexFile = new File(temporaryDirectory.toFile(), "spilled-class-name-index.bin");
+			builder = new MappedClassNameIndex.Builder(spilledIndexFile, 300);
+
+			try {
+
+				for (String internalClassName : internalClassNames) {
+					builder.add(internalClassName);
+				}
+
+				Assert.assertEquals(6, builder.getRunCount());
+				builder.write("fingerprint");
+			}
+			finally {
+				builder.close();
+			}
+
+			Assert.assertArrayEquals(Files.readAllBytes(indexFile.toPath()),
+				Files.readAllBytes(spilledIndexFile.toPath()));
+
+			// Only the index files remain.
+			Assert.assertEquals(2, temporaryDirectory.toFile().list().length);
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testFacesXMLUtilParallelScan() throws IOException, URISyntaxException,
+		ParserConfigurationException, XPathException {
+
+		Set<File> facesJars = unmodifiableSet(getJar(LoadConstants.class), getJar(FacesContext.class),
+				getJar(ServletContext.class), getJar(Test.class));
+		Set<String> classNames = FacesXMLUtil.getClassNames(facesJars, null, 1);
+		Set<String> parallelClassNames = FacesXMLUtil.getClassNames(facesJars, null, 4);
+		Assert.assertEquals(new ArrayList<String>(classNames), new ArrayList<String>(parallelClassNames));
+
+		Map<String, String> annotatedClassNames = new HashMap<String, String>();
+		Map<String, String> descriptorMappings = new HashMap<String, String>();
+		classNames = FacesXMLUtil.getClassNames(facesJars, null, 4, true, Collections.emptyList(), null,
+				annotatedClassNames, descriptorMappings);
+
+		Map<String, String> lowMemoryAnnotatedClassNames = new HashMap<String, String>();
+		Map<String, String> lowMemoryDescriptorMappings = new HashMap<String, String>();
+		Set<String> lowMemoryClassNames = FacesXMLUtil.getClassNames(facesJars, null, 4, true,
+				Collections.emptyList(), null, lowMemoryAnnotatedClassNames, lowMemoryDescriptorMappings,
+				new BuildReport(), true);
+		Assert.assertEquals(new ArrayList<String>(classNames), new ArrayList<String>(lowMemoryClassNames));
+		Assert.assertEquals(annotatedClassNames, lowMemoryAnnotatedClassNames);
+		Assert.assertEquals(descriptorMappings, lowMemoryDescriptorMappings);
+	}
+
+	@Test
+	public final void testZipCentralDirectory() throws IOException, URISyntaxException {
+
+		for (File jar :
+				Arrays.asList(getJar(LoadConstants.class), getJar(FacesContext.class), getJar(Test.class))) {
+
+			ZipCentralDirectory zipCentralDirectory = ZipCentralDirectory.open(jar);
+			JarFile jarFile = new JarFile(jar);
+
+			try {
+
+				Enumeration<JarEntry> jarEntries = jarFile.entries();
+
+				for (int entry = 0; entry < zipCentralDirectory.getEntryCount(); entry++) {
+
+					JarEntry jarEntry = jarEntries.nextElement();
+					String name = zipCentralDirectory.getName(entry);
+					Assert.assertEquals(jarEntry.getName(), name);
+					Assert.assertTrue(zipCentralDirectory.nameStartsWith(entry, name.substring(0, name.length() / 2)
+							.getBytes(StandardCharsets.UTF_8)));
+					Assert.assertTrue(zipCentralDirectory.nameEndsWith(entry,
+							name.substring(name.length() / 2).getBytes(StandardCharsets.UTF_8)));
+					Assert.assertTrue(zipCentralDirectory.nameEquals(entry, name.getBytes(StandardCharsets.UTF_8)));
+
+					if (name.endsWith(".xml") || name.endsWith("LoadConstants.class")) {
+
+						InputStream inputStream = jarFile.getInputStream(jarEntry);
+						InputStream entryInputStream = zipCentralDirectory.getInputStream(entry, 64);
+
+						try {
+
+							byte[] bytes = ClassFileUtil.getBytes(inputStream);
+							Assert.assertArrayEquals(name, bytes, zipCentralDirectory.getBytes(entry));
+							Assert.assertArrayEquals(name, bytes, ClassFileUtil.getBytes(entryInputStream));
+						}
+						finally {
+
+							inputStream.close();
+							entryInputStream.close();
+						}
+					}
+				}
+
+				Assert.assertFalse(jarEntries.hasMoreElements());
+			}
+			finally {
+
+				jarFile.close();
+				zipCentralDirectory.close();
+			}
+		}
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			// A stored entry, data prepended to the archive and more entries than the 16-bit entry count can hold.
+			File jar = temporaryDirectory.resolve("zip64.jar").toFile();
+			byte[] taglib = "<facelet-taglib><tag><handler-class>a.B</handler-class></tag></facelet-taglib>".getBytes(
+					StandardCharsets.UTF_8);
+			FileOutputStream fileOutputStream = new FileOutputStream(jar);
+
+			try {
+
+				fileOutputStream.write(new byte[] { '#', '!', '/', 'b', 'i', 'n', '\n' });
+
+				JarOutputStream jarOutputStream = new JarOutputStream(new BufferedOutputStream(fileOutputStream));
+				JarEntry storedJarEntry = new JarEntry("META-INF/stored.taglib.xml");
+				storedJarEntry.setMethod(JarEntry.STORED);
+				storedJarEntry.setSize(taglib.length);
+
+				CRC32 crc32 = new CRC32();
+				crc32.update(taglib);
+				storedJarEntry.setCrc(crc32.getValue());
+				jarOutputStream.putNextEntry(storedJarEntry);
+				jarOutputStream.write(taglib);
+				jarOutputStream.closeEntry();
+
+				for (int i = 0; i < 70000; i++) {
+					jarOutputStream.putNextEntry(new JarEntry("a/C" + i + ".class"));
+					jarOutputStream.closeEntry();
+				}
+
+				jarOutputStream.putNextEntry(new JarEntry("META-INF/deflated.taglib.xml"));
+				jarOutputStream.write(taglib);
+				jarOutputStream.closeEntry();
+				jarOutputStream.close();
+			}
+			finally {
+				fileOutputStream.close();
+			}
+
+			ZipCentralDirectory zipCentralDirectory = ZipCentralDirectory.open(jar);
+
+			try {
+
+				Assert.assertEquals(70002, zipCentralDirectory.getEntryCount());
+				Assert.assertEquals("META-INF/stored.taglib.xml", zipCentralDirectory.getName(0));
+				Assert.assertArrayEquals(taglib, zipCentralDirectory.getBytes(0));
+				Assert.assertEquals("META-INF/deflated.taglib.xml", zipCentralDirectory.getName(70001));
+				Assert.assertArrayEquals(taglib, zipCentralDirectory.getBytes(70001));
+				Assert.assertArrayEquals(new byte[0], zipCentralDirectory.getBytes(1));
+
+				for (int entry : new int[] { 0, 1, 70001 }) {
+
+					InputStream inputStream = zipCentralDirectory.getInputStream(entry, 16);
+
+					try {
+						Assert.assertArrayEquals(zipCentralDirectory.getBytes(entry),
+							ClassFileUtil.getBytes(inputStream));
+					}
+					finally {
+						inputStream.close();
+					}
+				}
+			}
+			finally {
+				zipCentralDirectory.close();
+			}
+
+			File notAJar = temporaryDirectory.resolve("not-a.jar").toFile();
+			Files.write(notAJar.toPath(), taglib);
+
+			try {
+
+				ZipCentralDirectory.open(notAJar).close();
+				Assert.fail();
+			}
+			catch (ZipException e) {
+				// Expected.
+			}
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+
+		// Jars without descriptors are rejected without reading any entry unless annotations are scanned.
+		BuildReport buildReport = new BuildReport();
+		FacesXMLUtil.getClassNames(unmodifiableSet(getJar(Test.class)), null, 1, false, Collections.emptyList(), null,
+			null, null, buildReport);
+		Assert.assertEquals(0, buildReport.getCount(BuildReport.Count.BYTES_INFLATED));
+		Assert.assertTrue(buildReport.getCount(BuildReport.Count.ENTRIES_INSPECTED) > 0);
+	}
+
+	@Test
+	public final void testBuildReport() throws IOException, URISyntaxException {
+
+		Set<File> facesJars = unmodifiableSet(getJar(LoadConstants.class), getJar(FacesContext.class));
+		BuildReport buildReport = new BuildReport();
+		Set<String> classNames = FacesXMLUtil.getClassNames(facesJars, null, 2, false, Collections.emptyList(), null,
+				new HashMap<String, String>(), new HashMap<String, String>(), buildReport);
+		Assert.assertEquals(2, buildReport.getCount(BuildReport.Count.JARS));
+		Assert.assertEquals(0, buildReport.getCount(BuildReport.Count.CACHED_JARS));
+		Assert.assertTrue(buildReport.getCount(BuildReport.Count.ENTRIES_INSPECTED) > 0);
+		Assert.assertTrue(buildReport.getCount(BuildReport.Count.BYTES_INFLATED) > 0);
+		Assert.assertTrue(buildReport.getCount(BuildReport.Count.CANDIDATES) >= classNames.size());
+		Assert.assertTrue(buildReport.getDuration(BuildReport.Phase.JAR_OPEN) > 0);
+		Assert.assertTrue(buildReport.getDuration(BuildReport.Phase.XML_PARSE) > 0);
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			JarGeneratorUtil.generateImportJar(temporaryDirectory.toFile(), Collections.emptySet(), classNames,
+				JarGeneratorUtil.DEFAULT_DIGEST_ALGORITHM, null, false, Collections.emptyMap(), buildReport);
+			Assert.assertTrue(buildReport.getDuration(BuildReport.Phase.BYTECODE_GENERATION) > 0);
+			Assert.assertTrue(buildReport.getDuration(BuildReport.Phase.HASHING) > 0);
+			Assert.assertTrue(buildReport.getDuration(BuildReport.Phase.JAR_WRITE) > 0);
+
+			buildReport.setScanDuration(1000000000L);
+			buildReport.end();
+
+			File reportFile = temporaryDirectory.resolve("report").resolve("build-report.json").toFile();
+			buildReport.write(reportFile);
+
+			String json = new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8);
+			Assert.assertTrue(json, json.contains("\"upToDate\": false"));
+			Assert.assertTrue(json, json.contains("\"jars\": 2,"));
+			Assert.assertTrue(json, json.contains("\"hashing\": "));
+			Assert.assertTrue(json, json.contains("\"entriesPerSecond\": " +
+					buildReport.getCount(BuildReport.Count.ENTRIES_INSPECTED) + ","));
+			Assert.assertTrue(buildReport.getSummary(), buildReport.getSummary().startsWith("Generated import jar in "));
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testFacesJarScanCache() throws IOException, URISyntaxException, ParserConfigurationException,
+		XPathException {
+
+		Path temporaryDirectory = null;
+
+		try {
+
+			temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+			File facesJar = getJar(LoadConstants.class);
+			Set<File> facesJars = unmodifiableSet(facesJar, getJar(FacesContext.class));
+			File scanCacheFile = new File(temporaryDirectory.toFile(), "scan-cache.bin");
+			FacesJarScanCache facesJarScanCache = FacesJarScanCache.load(scanCacheFile, "", null);
+			Assert.assertNull(facesJarScanCache.get(facesJar));
+
+			Set<String> classNames = FacesXMLUtil.getClassNames(facesJars, null, 1, false,
+					Collections.singletonList(facesJarScanCache), null, null, null);
+			facesJarScanCache.save();
+
+			facesJarScanCache = FacesJarScanCache.load(scanCacheFile, "", null);
+			Assert.assertNotNull(facesJarScanCache.get(facesJar));
+
+			Set<String> cachedClassNames = FacesXMLUtil.getClassNames(facesJars, null, 1, false,
+					Collections.singletonList(facesJarScanCache), null, null, null);
+			Assert.assertEquals(new ArrayList<String>(classNames), new ArrayList<String>(cachedClassNames));
+
+			// A recorded checksum is reused until the stamp of the jar changes.
+			FacesJarScanResult facesJarScanResult = facesJarScanCache.get(facesJar);
+			FileStamp fileStamp = FileStamp.get(facesJar);
+			facesJarScanResult.setChecksum(fileStamp, "recorded");
+			Assert.assertEquals("recorded", facesJarScanResult.getChecksum(FileStamp.get(facesJar)));
+			Assert.assertEquals(ChecksumUtil.getChecksum(facesJar),
+				facesJarScanResult.getChecksum(new FileStamp(fileStamp.getSize(), fileStamp.getLastModified() + 1)));
+
+			// The entries of the jars that a build no longer looks up are dropped when the cache is saved.
+			Assert.assertNotNull(FacesJarScanCache.load(scanCacheFile, "", null).get(getJar(FacesContext.class)));
+			facesJarScanCache = FacesJarScanCache.load(scanCacheFile, "", null);
+			FacesXMLUtil.getClassNames(Collections.singleton(facesJar), null, 1, false,
+				Collections.singletonList(facesJarScanCache), null, null, null);
+			facesJarScanCache.save();
+
+			facesJarScanCache = FacesJarScanCache.load(scanCacheFile, "", null);
+			Assert.assertNotNull(facesJarScanCache.get(facesJar));
+			Assert.assertNull(facesJarScanCache.get(getJar(FacesContext.class)));
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testDaemonScanCache() throws IOException, URISyntaxException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+		DaemonScanCache daemonScanCache = DaemonScanCache.getInstance();
+		Assert.assertSame(daemonScanCache, DaemonScanCache.getInstance());
+
+		try {
+
+			daemonScanCache.clear();
+			daemonScanCache.setMaxSize(1);
+
+			File facesJar = new File(temporaryDirectory.toFile(), "alloy.jar");
+			Files.copy(getJar(LoadConstants.class).toPath(), facesJar.toPath());
+
+			File otherFacesJar = getJar(FacesContext.class);
+			Set<File> facesJars = unmodifiableSet(facesJar, otherFacesJar);
+			Set<String> classNames = FacesXMLUtil.getClassNames(facesJars, null, 1, false,
+					Collections.singletonList(daemonScanCache.getView("")), null, null, null);
+
+			// The least recently used result is only softly referenced once the maximum size is exceeded.
+			Assert.assertEquals(1, daemonScanCache.getSize());
+			Assert.assertEquals(1, daemonScanCache.getSoftSize());
+			Assert.assertEquals(2, daemonScanCache.getMisses());
+
+			// A later build reuses the results, even if the last modified time of an unchanged jar changed.
+			daemonScanCache.setMaxSize(DaemonScanCache.DEFAULT_MAX_SIZE);
+			Assert.assertTrue(facesJar.setLastModified(facesJar.lastModified() - 60000));
+
+			FacesJarScanResultCache facesJarScanResultCache = daemonScanCache.getView("");
+			Assert.assertEquals(new ArrayList<String>(classNames),
+				new ArrayList<String>(
+					FacesXMLUtil.getClassNames(facesJars, null, 1, false,
+						Collections.singletonList(facesJarScanResultCache), null, null, null)));
+			Assert.assertEquals(2, daemonScanCache.getHits());
+			Assert.assertEquals(2, daemonScanCache.getSize());
+			Assert.assertEquals(0, daemonScanCache.getSoftSize());
+
+			// Results scanned with a different configuration or from a changed jar are not reused.
+			Assert.assertNull(daemonScanCache.getView("other").get(facesJar));
+
+			try(FileOutputStream fileOutputStream = new FileOutputStream(facesJar, true)) {
+				fileOutputStream.write(0);
+			}
+
+			Assert.assertNull(facesJarScanResultCache.get(facesJar));
+			Assert.assertNotNull(facesJarScanResultCache.get(otherFacesJar));
+		}
+		finally {
+
+			daemonScanCache.clear();
+			daemonScanCache.setMaxSize(DaemonScanCache.DEFAULT_MAX_SIZE);
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testScanFacesJars() throws URISyntaxException {
+
+		DaemonScanCache daemonScanCache = DaemonScanCache.getInstance();
+
+		try {
+
+			daemonScanCache.clear();
+
+			// Scanning the union of the jars of several projects primes the cache for each of the projects.
+			File facesJar = getJar(LoadConstants.class);
+			File otherFacesJar = getJar(FacesContext.class);
+			BuildReport buildReport = new BuildReport();
+			FacesXMLUtil.scanFacesJars(unmodifiableSet(facesJar, otherFacesJar), null, 2, false,
+				Collections.singletonList(daemonScanCache.getView("")), false, false, buildReport, false);
+			Assert.assertEquals(2, buildReport.getCount(BuildReport.Count.JARS));
+			Assert.assertEquals(2, daemonScanCache.getSize());
+
+			buildReport = new BuildReport();
+			Assert.assertEquals(FacesXMLUtil.getClassNames(unmodifiableSet(otherFacesJar), null),
+				FacesXMLUtil.getClassNames(unmodifiableSet(otherFacesJar), null, 1, false,
+					Collections.singletonList(daemonScanCache.getView("")), null, null, null, buildReport));
+			Assert.assertEquals(1, buildReport.getCount(BuildReport.Count.CACHED_JARS));
+			Assert.assertEquals(0, buildReport.getCount(BuildReport.Count.ENTRIES_INSPECTED));
+		}
+		finally {
+			daemonScanCache.clear();
+		}
+	}
+
+	@Test
+	public final void testArtifactFilter() {
+
+		// Only provided artifacts are accepted by default.
+		ArtifactFilter artifactFilter = new ArtifactFilter(null, null, null);
+		Assert.assertTrue(artifactFilter.accept("com.liferay.faces", "com.liferay.faces.alloy", null, "provided"));
+		Assert.assertFalse(artifactFilter.accept("com.liferay.faces", "com.liferay.faces.alloy", null, "compile"));
+
+		artifactFilter = new ArtifactFilter(Arrays.asList("com.liferay.*", "javax.faces:javax.faces-api"),
+				Arrays.asList("com.liferay.portal:*", "com.liferay.faces:*:sources", "com.liferay.faces:a.b:"),
+				Arrays.asList("provided", "SYSTEM"));
+		Assert.assertTrue(artifactFilter.accept("com.liferay.faces", "com.liferay.faces.alloy", null, "provided"));
+		Assert.assertTrue(artifactFilter.accept("com.liferay.faces", "com.liferay.faces.alloy", "", "system"));
+		Assert.assertTrue(artifactFilter.accept("javax.faces", "javax.faces-api", "jdk8", "Provided"));
+		Assert.assertFalse(artifactFilter.accept("com.liferay.faces", "com.liferay.faces.alloy", null, "compile"));
+		Assert.assertFalse(artifactFilter.accept("com.liferay.faces", "com.liferay.faces.alloy", "sources",
+				"provided"));
+		Assert.assertFalse(artifactFilter.accept("com.liferay.portal", "com.liferay.portal.kernel", null,
+				"provided"));
+		Assert.assertFalse(artifactFilter.accept("com.liferay.faces", "a.b", null, "provided"));
+		Assert.assertTrue(artifactFilter.accept("com.liferay.faces", "a.b", "tests", "provided"));
+		Assert.assertFalse(artifactFilter.accept("com.liferayxfaces", "javax.faces-api", null, "provided"));
+		Assert.assertFalse(artifactFilter.accept("org.slf4j", "slf4j-api", null, "provided"));
+		Assert.assertFalse(artifactFilter.accept("javax.faces", "javax.faces-api.x", null, "provided"));
+
+		// Wildcards only match within a segment.
+		artifactFilter = new ArtifactFilter(Collections.singletonList("*:*faces*"), null, null);
+		Assert.assertTrue(artifactFilter.accept("org.glassfish", "javax.faces", null, "provided"));
+		Assert.assertFalse(artifactFilter.accept("org.faces", "api", null, "provided"));
+
+		try {
+
+			new ArtifactFilter(Collections.singletonList("a:b:c:d"), null, null);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public final void testArtifactWatcher() throws IOException, InterruptedException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+		ArtifactWatcher artifactWatcher = null;
+
+		try {
+
+			File facesJar = new File(temporaryDirectory.toFile(), "faces.jar");
+			Files.write(facesJar.toPath(), new byte[] { 0 });
+
+			File classesDirectory = new File(temporaryDirectory.toFile(), "classes");
+			File metaInfDirectory = new File(classesDirectory, "META-INF");
+			Assert.assertTrue(metaInfDirectory.mkdirs());
+			artifactWatcher = ArtifactWatcher.open(Arrays.asList(facesJar, classesDirectory));
+
+			// Changes of other files next to a jar are ignored, and a burst of changes is reported once.
+			Files.write(new File(temporaryDirectory.toFile(), "faces.jar.lastUpdated").toPath(), new byte[] { 0 });
+
+			for (int i = 0; i < 3; i++) {
+				Files.write(facesJar.toPath(), new byte[] { (byte) i });
+			}
+
+			Assert.assertEquals(Collections.singleton(facesJar), artifactWatcher.awaitChanges(100));
+			Assert.assertTrue(artifactWatcher.getFirstChangeNanoTime() <= System.nanoTime());
+
+			// Directory artifacts are watched recursively, including the directories that are created later.
+			Files.write(new File(metaInfDirectory, "faces-config.xml").toPath(), new byte[] { 0 });
+			Assert.assertEquals(Collections.singleton(classesDirectory), artifactWatcher.awaitChanges(100));
+
+			File packageDirectory = new File(classesDirectory, "com");
+			Assert.assertTrue(packageDirectory.mkdir());
+			Assert.assertEquals(Collections.singleton(classesDirectory), artifactWatcher.awaitChanges(100));
+			Files.write(new File(packageDirectory, "Component.class").toPath(), new byte[] { 0 });
+			Assert.assertEquals(Collections.singleton(classesDirectory), artifactWatcher.awaitChanges(100));
+		}
+		finally {
+
+			CloseableUtil.close(artifactWatcher);
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testNegativeScanCache() throws IOException, URISyntaxException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			File emptyJar = new File(temporaryDirectory.toFile(), "junit.jar");
+			Files.copy(getJar(Assert.class).toPath(), emptyJar.toPath());
+
+			File facesJar = getJar(LoadConstants.class);
+			Set<File> facesJars = unmodifiableSet(emptyJar, facesJar);
+			File cacheFile = new File(temporaryDirectory.toFile(), "negative-scan-cache.bin");
+			NegativeScanCache negativeScanCache = NegativeScanCache.load(cacheFile, "", null);
+			Set<String> classNames = FacesXMLUtil.getClassNames(facesJars, null, 1, false,
+					Collections.<FacesJarScanResultCache>singletonList(negativeScanCache), null, null, null);
+
+			// Only the jar without Faces content is recorded.
+			Assert.assertEquals(1, negativeScanCache.getSize());
+			Assert.assertEquals(0, negativeScanCache.getHits());
+			Assert.assertNull(negativeScanCache.get(facesJar));
+			negativeScanCache.save();
+
+			negativeScanCache = NegativeScanCache.load(cacheFile, "", null);
+			Assert.assertEquals(new ArrayList<String>(classNames),
+				new ArrayList<String>(
+					FacesXMLUtil.getClassNames(facesJars, null, 1, false,
+						Collections.<FacesJarScanResultCache>singletonList(negativeScanCache), null, null, null)));
+			Assert.assertEquals(1, negativeScanCache.getHits());
+
+			FacesJarScanResult facesJarScanResult = negativeScanCache.get(emptyJar);
+			Assert.assertTrue(facesJarScanResult.isComplete());
+			Assert.assertTrue(facesJarScanResult.getClassNames().isEmpty());
+
+			// A cache written with a different configuration or an entry of a touched jar is discarded.
+			Assert.assertEquals(0, NegativeScanCache.load(cacheFile, "other", null).getSize());
+			Assert.assertTrue(emptyJar.setLastModified(emptyJar.lastModified() - 60000));
+			Assert.assertNull(negativeScanCache.get(emptyJar));
+			Assert.assertEquals(0, negativeScanCache.getSize());
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testServletContainerInitializerUtilHandlesTypes() throws IOException, ServletException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			// The initializer, the handled interface and a base class implementing it are provided.
+			File providedJar = new File(temporaryDirectory.toFile(), "provided.jar");
+
+			try(JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(providedJar))) {
+
+				ClassWriter classWriter = new ClassWriter(0);
+				classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "com/example/Initializer", null,
+					"java/lang/Object", new String[] { "javax/servlet/ServletContainerInitializer" });
+
+				AnnotationVisitor annotationVisitor = classWriter.visitAnnotation(
+						"Ljavax/servlet/annotation/HandlesTypes;", true);
+				AnnotationVisitor arrayVisitor = annotationVisitor.visitArray("value");
+				arrayVisitor.visit(null, Type.getObjectType("com/example/api/Handled"));
+				arrayVisitor.visit(null, Type.getObjectType("com/example/api/Marker"));
+				arrayVisitor.visitEnd();
+				annotationVisitor.visitEnd();
+				classWriter.visitEnd();
+				jarOutputStream.putNextEntry(new JarEntry("com/example/Initializer.class"));
+				jarOutputStream.write(classWriter.toByteArray());
+				jarOutputStream.putNextEntry(new JarEntry("com/example/PlainInitializer.class"));
+				jarOutputStream.write(getClassBytes("com/example/PlainInitializer", Opcodes.ACC_PUBLIC,
+						"java/lang/Object", "javax/servlet/ServletContainerInitializer"));
+				jarOutputStream.putNextEntry(new JarEntry("com/example/api/Handled.class"));
+				jarOutputStream.write(getClassBytes("com/example/api/Handled",
+						Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "java/lang/Object"));
+				jarOutputStream.putNextEntry(new JarEntry("com/example/api/Base.class"));
+				jarOutputStream.write(getClassBytes("com/example/api/Base", Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT,
+						"java/lang/Object", "com/example/api/Handled"));
+				jarOutputStream.closeEntry();
+			}
+
+			File classesDirectory = new File(temporaryDirectory.toFile(), "classes");
+			File webDirectory = new File(classesDirectory, "com/example/web");
+			Assert.assertTrue(webDirectory.mkdirs());
+			Files.write(new File(webDirectory, "Indirect.class").toPath(),
+				getClassBytes("com/example/web/Indirect", Opcodes.ACC_PUBLIC, "com/example/api/Base"));
+			Files.write(new File(webDirectory, "Direct.class").toPath(),
+				getClassBytes("com/example/web/Direct", Opcodes.ACC_PUBLIC, "java/lang/Object",
+					"com/example/api/Handled"));
+			Files.write(new File(webDirectory, "Annotated.class").toPath(),
+				getAnnotatedClassBytes("com/example/web/Annotated", "Lcom/example/api/Marker;"));
+			Files.write(new File(webDirectory, "Unrelated.class").toPath(),
+				getClassBytes("com/example/web/Unrelated", Opcodes.ACC_PUBLIC, "java/lang/Object"));
+			Files.write(new File(webDirectory, "Indirect$Nested.class").toPath(),
+				getClassBytes("com/example/web/Indirect$Nested", Opcodes.ACC_PUBLIC, "com/example/web/Indirect"));
+
+			// Classes of runtime jars are packaged in WEB-INF/lib, while classes of test jars are not.
+			File runtimeJar = new File(temporaryDirectory.toFile(), "runtime.jar");
+			File testJar = new File(temporaryDirectory.toFile(), "test.jar");
+
+			for (File jar : Arrays.asList(runtimeJar, testJar)) {
+
+				try(JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jar))) {
+
+					String internalClassName = "com/example/lib/" + (jar.equals(runtimeJar) ? "Runtime" : "Test");
+					jarOutputStream.putNextEntry(new JarEntry(internalClassName + ".class"));
+					jarOutputStream.write(getClassBytes(internalClassName, Opcodes.ACC_PUBLIC, "com/example/api/Base"));
+					jarOutputStream.closeEntry();
+				}
+			}
+
+			List<File> webApplicationFiles = ServletContainerInitializerUtil.getWebApplicationFiles(classesDirectory,
+					Arrays.asList(newArtifact("provided", providedJar), newArtifact("runtime", runtimeJar),
+						newArtifact("test", testJar)));
+			Assert.assertEquals(Arrays.asList(classesDirectory, runtimeJar), webApplicationFiles);
+
+			Map<String, Set<String>> handledClassNames = ServletContainerInitializerUtil.getHandledClassNames(
+					unmodifiableSet("com.example.Initializer", "com.example.Missing", "com.example.PlainInitializer"),
+					webApplicationFiles, Collections.singletonList(providedJar));
+
+			// Initializers that are not found are omitted, and those without HandlesTypes handle no classes.
+			Map<String, Set<String>> expectedHandledClassNames = new LinkedHashMap<String, Set<String>>();
+			expectedHandledClassNames.put("com.example.Initializer",
+				unmodifiableSet("com.example.lib.Runtime", "com.example.web.Annotated", "com.example.web.Direct",
+					"com.example.web.Indirect", "com.example.web.Indirect$Nested"));
+			expectedHandledClassNames.put("com.example.PlainInitializer", Collections.<String>emptySet());
+			Assert.assertEquals(expectedHandledClassNames, handledClassNames);
+			Assert.assertEquals(new ArrayList<String>(expectedHandledClassNames.keySet()),
+				new ArrayList<String>(handledClassNames.keySet()));
+
+			byte[] indexBytes = CompositeServletContainerInitializer.toByteArray(handledClassNames);
+			Map<String, List<String>> index = CompositeServletContainerInitializer.read(new ByteArrayInputStream(
+						indexBytes));
+			Assert.assertEquals(Arrays.asList("com.example.lib.Runtime", "com.example.web.Annotated",
+					"com.example.web.Direct", "com.example.web.Indirect", "com.example.web.Indirect$Nested"),
+				index.get("com.example.Initializer"));
+			Assert.assertEquals(Collections.emptyList(), index.get("com.example.PlainInitializer"));
+
+			// Without an index in its jar, the composite initializer starts nothing.
+			new CompositeServletContainerInitializer().onStartup(null, null);
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testSessionScanCache() throws IOException, URISyntaxException {
+
+		MavenSession mavenSession = new MavenSession(null, new DefaultRepositorySystemSession(),
+				new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult());
+		SessionScanCache sessionScanCache = SessionScanCache.getInstance(mavenSession);
+		Assert.assertSame(sessionScanCache, SessionScanCache.getInstance(mavenSession));
+
+		File facesJar = getJar(LoadConstants.class);
+		Set<File> facesJars = unmodifiableSet(facesJar);
+		Map<File, String> artifactIds = Collections.singletonMap(facesJar, "com.liferay.faces:alloy:1.0.0");
+		List<FacesJarScanResultCache> facesJarScanResultCaches = Collections.singletonList(sessionScanCache.getView(
+					artifactIds, ""));
+		Set<String> classNames = FacesXMLUtil.getClassNames(facesJars, null, 1, false, facesJarScanResultCaches, null,
+				null, null);
+
+		// A second module of the same build reuses the scan result of the first module.
+		SessionScanCache.View sessionScanCacheView = SessionScanCache.getInstance(mavenSession).getView(artifactIds,
+				"");
+		facesJarScanResultCaches = Collections.singletonList(sessionScanCacheView);
+		Assert.assertEquals(new ArrayList<String>(classNames),
+			new ArrayList<String>(
+				FacesXMLUtil.getClassNames(facesJars, null, 1, false, facesJarScanResultCaches, null, null, null)));
+		Assert.assertEquals(1, sessionScanCacheView.getHits());
+		Assert.assertEquals(0, sessionScanCacheView.getMisses());
+		Assert.assertEquals(1, sessionScanCache.getHits());
+		Assert.assertEquals(1, sessionScanCache.getMisses());
+
+		// A session hit is written through to the scan cache of the module, which is never saved here.
+		FacesJarScanCache facesJarScanCache = FacesJarScanCache.load(new File(getJar(UtilsTest.class),
+					"missing-scan-cache.bin"), "", null);
+		FacesXMLUtil.getClassNames(facesJars, null, 1, false,
+			Arrays.<FacesJarScanResultCache>asList(sessionScanCacheView, facesJarScanCache), null, null, null);
+		Assert.assertEquals(2, sessionScanCacheView.getHits());
+		Assert.assertNotNull(facesJarScanCache.get(facesJar));
+
+		// Results scanned with a different configuration are not shared.
+		Assert.assertNull(sessionScanCache.getView(artifactIds, "other").get(facesJar));
+	}
+
 	@Test
 	public final void testImportedFacesPackagessClassUtil() throws IOException, LinkageError,
 		ReflectiveOperationException, SecurityException {
@@ -119,6 +1302,109 @@ public final class UtilsTest {
 		Assert.assertEquals(expectedImportedFacesPackages, modifiedImportedPackages);
 	}
 
+	@Test
+	public final void testImportedFacesPackagesByteCodeUtilPackageNames() throws IOException,
+		ReflectiveOperationException {
+
+		// None of these classes exist, so the generated class fails if it loads any of them.
+		Set<String> importedClassNames = new LinkedHashSet<String>();
+		int packageCount = (ImportedFacesPackagesByteCodeUtil.PACKAGE_NAMES_PER_METHOD * 2) + 1;
+
+		for (int i = 0; i < packageCount; i++) {
+
+			importedClassNames.add("com.example.p" + i + ".Missing");
+			importedClassNames.add("com.example.p" + i + ".Missing$Inner");
+		}
+
+		importedClassNames.add("Missing");
+
+		byte[] classBytes = ImportedFacesPackagesByteCodeUtil.getModifiedByteCode(importedClassNames);
+		String classBytesAsString = new String(classBytes, StandardCharsets.ISO_8859_1);
+		Assert.assertTrue(classBytesAsString.contains("com/example/p0/Missing"));
+		Assert.assertFalse(classBytesAsString.contains("com/example/p0/Missing$Inner"));
+
+		ModifiedImportFacesPackagesClassLoader modifiedImportFacesPackagesClassLoader =
+			new ModifiedImportFacesPackagesClassLoader(UtilsTest.class.getClassLoader());
+		Class<?> modifiedImportedFacesPackagesClass =
+			modifiedImportFacesPackagesClassLoader.reinitializeClassForCurrentClassLoader(ImportedFacesPackages.class,
+				classBytes);
+		Object modifiedImportedFacesPackages = modifiedImportedFacesPackagesClass.newInstance();
+		Set<String> importedPackages = (Set<String>) modifiedImportedFacesPackagesClass.getMethod(
+				"getImportedPackages").invoke(modifiedImportedFacesPackages);
+
+		// The packages are generated in sorted order, so they are not sorted at runtime.
+		Set<String> expectedImportedPackages = new TreeSet<String>();
+		expectedImportedPackages.add(ImportedFacesPackages.class.getPackage().getName());
+
+		for (int i = 0; i < packageCount; i++) {
+			expectedImportedPackages.add("com.example.p" + i);
+		}
+
+		Assert.assertEquals(new ArrayList<String>(expectedImportedPackages), new ArrayList<String>(importedPackages));
+
+		// The shared instance and the lookup see the generated packages.
+		Object sharedImportedFacesPackages = modifiedImportedFacesPackagesClass.getMethod("getInstance").invoke(null);
+		Assert.assertSame(sharedImportedFacesPackages,
+			modifiedImportedFacesPackagesClass.getMethod("getInstance").invoke(null));
+
+		Method isImportedMethod = modifiedImportedFacesPackagesClass.getMethod("isImported", CharSequence.class);
+
+		for (String expectedImportedPackage : expectedImportedPackages) {
+			Assert.assertTrue((Boolean) isImportedMethod.invoke(sharedImportedFacesPackages,
+					new StringBuilder(expectedImportedPackage)));
+		}
+
+		for (String packageName : Arrays.asList("", "com", "com.example", "com.example.p", "com.example.p0.x",
+					"com.example.p" + packageCount, "z")) {
+			Assert.assertFalse(packageName,
+				(Boolean) isImportedMethod.invoke(sharedImportedFacesPackages, packageName));
+		}
+
+		Assert.assertFalse((Boolean) isImportedMethod.invoke(sharedImportedFacesPackages, (Object) null));
+	}
+
+	@Test
+	public final void testPackageTrie() throws IOException {
+
+		PackageTrie packageTrie = new PackageTrie(Arrays.asList("com.example.b.Z", "com.example.a.A", "com.example.A",
+					"Missing"));
+		Assert.assertFalse(packageTrie.add("com.example.a.A"));
+		Assert.assertEquals(4, packageTrie.size());
+		Assert.assertTrue(packageTrie.contains("com.example.a.A"));
+		Assert.assertTrue(packageTrie.contains("Missing"));
+		Assert.assertFalse(packageTrie.contains("com.example.a"));
+		Assert.assertFalse(packageTrie.contains("com.example.a.A.B"));
+		Assert.assertFalse(packageTrie.contains(Integer.valueOf(1)));
+
+		// Packages are iterated in depth-first order of their segments, whatever the order of the classes.
+		Assert.assertEquals(Arrays.asList("Missing", "com.example.A", "com.example.a.A", "com.example.b.Z"),
+			new ArrayList<String>(packageTrie));
+		Assert.assertEquals(Arrays.asList("com.example", "com.example.a", "com.example.b"),
+			packageTrie.getPackageNames());
+		Assert.assertEquals(Arrays.asList("com.example.A", "com.example.a.A", "com.example.b.Z"),
+			packageTrie.getFirstClassNames());
+
+		PackageTrie otherPackageTrie = new PackageTrie(Arrays.asList("org.example.C", "com.example.b.Y",
+					"com.example.a.A"));
+		Set<String> expectedClassNames = new HashSet<String>(packageTrie);
+		expectedClassNames.addAll(otherPackageTrie);
+		Assert.assertTrue(packageTrie.addAll(otherPackageTrie));
+		Assert.assertFalse(packageTrie.addAll(otherPackageTrie));
+		Assert.assertFalse(packageTrie.addAll(packageTrie));
+		Assert.assertEquals(expectedClassNames, packageTrie);
+		Assert.assertEquals(6, packageTrie.size());
+
+		// Merged tries do not share their classes.
+		otherPackageTrie.add("org.example.D");
+		Assert.assertFalse(packageTrie.contains("org.example.D"));
+
+		Set<String> classNames = new LinkedHashSet<String>(packageTrie);
+		Assert.assertEquals(ImportedFacesPackagesByteCodeUtil.getPackageNames(classNames),
+			ImportedFacesPackagesByteCodeUtil.getPackageNames(packageTrie));
+		Assert.assertArrayEquals(ImportedFacesPackagesByteCodeUtil.getModifiedByteCode(classNames),
+			ImportedFacesPackagesByteCodeUtil.getModifiedByteCode(packageTrie));
+	}
+
 	@Test
 	public final void testJarGeneratorUtil() throws IOException, NoSuchAlgorithmException,
 		ReflectiveOperationException {
@@ -170,6 +1456,230 @@ public final class UtilsTest {
 		}
 	}
 
+	@Test
+	public final void testJarGeneratorUtilDigest() throws IOException, NoSuchAlgorithmException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			File outputDirectory = temporaryDirectory.toFile();
+			Set<String> servletContainerInitializers = unmodifiableSet(TestServletContainerInitializer.class.getName());
+			File staleImportJar = JarGeneratorUtil.generateImportJar(outputDirectory, servletContainerInitializers,
+					unmodifiableSet(TestClassA.class.getName()));
+
+			// A temporary jar left behind by a crashed build is deleted once it is stale, unlike a recent one that a
+			// concurrent build may still be writing.
+			File staleTemporaryJar = new File(outputDirectory,
+					JarGeneratorUtil.PLUGIN_ARTIFACT_ID + ".generated-stale.tmp");
+			Files.write(staleTemporaryJar.toPath(), new byte[] { 0 });
+			Assert.assertTrue(staleTemporaryJar.setLastModified(System.currentTimeMillis() - 3600000));
+
+			File recentTemporaryJar = new File(outputDirectory,
+					JarGeneratorUtil.PLUGIN_ARTIFACT_ID + ".generated-recent.tmp");
+			Files.write(recentTemporaryJar.toPath(), new byte[] { 0 });
+
+			File importJar = JarGeneratorUtil.generateImportJar(outputDirectory, servletContainerInitializers,
+					unmodifiableSet(TestClassA.class.getName(), TestClassB.class.getName()), "SHA-256", null, false,
+					Collections.emptyMap());
+			Assert.assertFalse(staleTemporaryJar.exists());
+			Assert.assertTrue(recentTemporaryJar.exists());
+			Assert.assertTrue(recentTemporaryJar.delete());
+
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			String expectedHash = DatatypeConverter.printHexBinary(messageDigest.digest(
+						Files.readAllBytes(importJar.toPath())));
+			Assert.assertEquals(JarGeneratorUtil.PLUGIN_ARTIFACT_ID + ".generated-" + expectedHash + ".jar",
+				importJar.getName());
+			Assert.assertFalse(staleImportJar.equals(importJar));
+			Assert.assertEquals(Collections.singletonList(importJar), Arrays.asList(outputDirectory.listFiles()));
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testJarGeneratorUtilFingerprint() throws IOException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			File outputDirectory = temporaryDirectory.toFile();
+			File providedFile = new File(outputDirectory, "provided.jar");
+			Files.write(providedFile.toPath(), new byte[] { 1, 2, 3 });
+
+			Set<File> providedFiles = Collections.singleton(providedFile);
+			Set<String> servletContainerInitializers = unmodifiableSet(TestServletContainerInitializer.class.getName());
+			Set<String> importedClasses = unmodifiableSet(TestClassA.class.getName(), TestClassB.class.getName());
+			String fingerprint = JarGeneratorUtil.getFingerprint("1.0.0", Collections.singleton(providedFile),
+					servletContainerInitializers, importedClasses, "");
+			Assert.assertEquals(fingerprint,
+				JarGeneratorUtil.getFingerprint("1.0.0", Collections.singleton(providedFile),
+					servletContainerInitializers, new HashSet<String>(importedClasses), ""));
+			Assert.assertNotEquals(fingerprint,
+				JarGeneratorUtil.getFingerprint("1.0.1", Collections.singleton(providedFile),
+					servletContainerInitializers, importedClasses, ""));
+			Assert.assertNotEquals(fingerprint,
+				JarGeneratorUtil.getFingerprint("1.0.0", Collections.singleton(providedFile),
+					servletContainerInitializers, unmodifiableSet(TestClassA.class.getName()), ""));
+
+			File fingerprintFile = new File(outputDirectory, "fingerprint/import-jar.fingerprint");
+			Assert.assertNull(JarGeneratorUtil.getUpToDateImportJar(fingerprintFile, fingerprint, providedFiles,
+					outputDirectory));
+
+			File importJar = JarGeneratorUtil.generateImportJar(outputDirectory, servletContainerInitializers,
+					importedClasses);
+			JarGeneratorUtil.writeFingerprint(fingerprintFile, fingerprint, importJar, providedFiles);
+			Assert.assertEquals(importJar,
+				JarGeneratorUtil.getUpToDateImportJar(fingerprintFile, fingerprint, providedFiles,
+					outputDirectory));
+			Assert.assertNull(JarGeneratorUtil.getUpToDateImportJar(fingerprintFile, "0", providedFiles,
+					outputDirectory));
+
+			// Without a fingerprint, the jar is up to date as long as the stamps of the provided files are unchanged.
+			Assert.assertEquals(importJar,
+				JarGeneratorUtil.getUpToDateImportJar(fingerprintFile, null, providedFiles, outputDirectory));
+			Assert.assertNull(JarGeneratorUtil.getUpToDateImportJar(fingerprintFile, null, Collections.emptySet(),
+					outputDirectory));
+
+			Files.write(providedFile.toPath(), new byte[] { 1, 2, 3, 4 });
+			Assert.assertNull(JarGeneratorUtil.getUpToDateImportJar(fingerprintFile, null, providedFiles,
+					outputDirectory));
+			Assert.assertNotEquals(fingerprint,
+				JarGeneratorUtil.getFingerprint("1.0.0", Collections.singleton(providedFile),
+					servletContainerInitializers, importedClasses, ""));
+
+			importJar.delete();
+			Assert.assertNull(JarGeneratorUtil.getUpToDateImportJar(fingerprintFile, fingerprint, providedFiles,
+					outputDirectory));
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testJarGeneratorUtilImportPackage() throws IOException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+
+		try {
+
+			Set<String> importedClasses = unmodifiableSet(TestClassB.class.getName(), TestClassA.class.getName(),
+					TestClassA.class.getName() + "$Inner", String.class.getName(),
+					ImportedFacesPackages.class.getName());
+			String expectedImportPackage = TestClassA.class.getPackage().getName() + ";resolution:=optional," +
+				TestClassB.class.getPackage().getName() + ";resolution:=optional";
+			Assert.assertEquals(expectedImportPackage, JarGeneratorUtil.getImportPackageHeader(importedClasses));
+			Assert.assertNull(JarGeneratorUtil.getImportPackageHeader(unmodifiableSet(String.class.getName())));
+
+			File importJar = JarGeneratorUtil.generateImportJar(temporaryDirectory.toFile(),
+					unmodifiableSet(TestServletContainerInitializer.class.getName()), importedClasses, "MD5", null,
+					true, Collections.emptyMap());
+			JarFile jarFile = new JarFile(importJar);
+
+			try {
+				Assert.assertEquals(TestServletContainerInitializer.class.getPackage().getName() +
+					";resolution:=optional," + expectedImportPackage,
+					jarFile.getManifest().getMainAttributes().getValue("Import-Package"));
+			}
+			finally {
+				jarFile.close();
+			}
+
+			File manifestFile = new File(temporaryDirectory.toFile(), "META-INF/MANIFEST.MF");
+			JarGeneratorUtil.writeImportPackageManifestFragment(manifestFile, expectedImportPackage);
+
+			Manifest manifest = new Manifest(new ByteArrayInputStream(Files.readAllBytes(manifestFile.toPath())));
+			Assert.assertEquals(expectedImportPackage, manifest.getMainAttributes().getValue("Import-Package"));
+
+			Assert.assertTrue(manifestFile.setLastModified(0));
+			JarGeneratorUtil.writeImportPackageManifestFragment(manifestFile, expectedImportPackage);
+			Assert.assertEquals(0, manifestFile.lastModified());
+		}
+		finally {
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public final void testJarGeneratorUtilReproducible() throws IOException {
+
+		Path temporaryDirectory = Files.createTempDirectory("com.liferay.faces.osgi.plugin-");
+		TimeZone defaultTimeZone = TimeZone.getDefault();
+
+		try {
+
+			Long outputTimestamp = JarGeneratorUtil.parseOutputTimestamp("2019-10-02T08:04:00Z");
+			Assert.assertEquals(Long.valueOf(1570003440000L), outputTimestamp);
+			Assert.assertEquals(outputTimestamp, JarGeneratorUtil.parseOutputTimestamp("1570003440"));
+			Assert.assertNull(JarGeneratorUtil.parseOutputTimestamp("0"));
+			Assert.assertNull(JarGeneratorUtil.parseOutputTimestamp(null));
+
+			File outputDirectory1 = new File(temporaryDirectory.toFile(), "1");
+			Set<String> importedClasses1 = new LinkedHashSet<String>(Arrays.asList(TestClassA.class.getName(),
+						TestClassB.class.getName()));
+			File importJar1 = JarGeneratorUtil.generateImportJar(outputDirectory1,
+					unmodifiableSet(TestServletContainerInitializer.class.getName()), importedClasses1, "SHA-256",
+					outputTimestamp, false, Collections.emptyMap());
+
+			TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+
+			File outputDirectory2 = new File(temporaryDirectory.toFile(), "2");
+			Set<String> importedClasses2 = new LinkedHashSet<String>(Arrays.asList(TestClassB.class.getName(),
+						TestClassA.class.getName()));
+			File importJar2 = JarGeneratorUtil.generateImportJar(outputDirectory2,
+					unmodifiableSet(TestServletContainerInitializer.class.getName()), importedClasses2, "SHA-256",
+					outputTimestamp, false, Collections.emptyMap());
+
+			Assert.assertEquals(importJar1.getName(), importJar2.getName());
+			Assert.assertArrayEquals(Files.readAllBytes(importJar1.toPath()), Files.readAllBytes(importJar2.toPath()));
+
+			JarFile jarFile = new JarFile(importJar2);
+
+			try {
+
+				Assert.assertEquals("1.0",
+					jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.MANIFEST_VERSION));
+
+				Enumeration<JarEntry> jarEntries = jarFile.entries();
+
+				while (jarEntries.hasMoreElements()) {
+
+					LocalDateTime entryTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(
+								jarEntries.nextElement().getTime()), ZoneId.systemDefault());
+					Assert.assertEquals(LocalDateTime.of(2019, 10, 2, 8, 4), entryTime);
+				}
+			}
+			finally {
+				jarFile.close();
+			}
+
+			// Daylight saving time starts in Berlin at 2019-03-31T01:00:00Z, so the offset at the timestamp differs
+			// from the offset at the stored local time.
+			Long daylightSavingTimestamp = JarGeneratorUtil.parseOutputTimestamp("2019-03-31T01:30:00Z");
+			TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+
+			File importJar3 = JarGeneratorUtil.generateImportJar(new File(temporaryDirectory.toFile(), "3"),
+					unmodifiableSet(TestServletContainerInitializer.class.getName()), importedClasses1, "SHA-256",
+					daylightSavingTimestamp, false, Collections.emptyMap());
+
+			TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+
+			File importJar4 = JarGeneratorUtil.generateImportJar(new File(temporaryDirectory.toFile(), "4"),
+					unmodifiableSet(TestServletContainerInitializer.class.getName()), importedClasses1, "SHA-256",
+					daylightSavingTimestamp, false, Collections.emptyMap());
+			Assert.assertArrayEquals(Files.readAllBytes(importJar3.toPath()), Files.readAllBytes(importJar4.toPath()));
+		}
+		finally {
+
+			TimeZone.setDefault(defaultTimeZone);
+			Files.walk(temporaryDirectory).map(Path::toFile).sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
 	private static final class ModifiedImportFacesPackagesClassLoader extends URLClassLoader {
 
 		private ModifiedImportFacesPackagesClassLoader(Path generatedJarPath) throws IOException {